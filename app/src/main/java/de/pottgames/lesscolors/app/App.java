@@ -17,15 +17,66 @@ package de.pottgames.lesscolors.app;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.beust.jcommander.JCommander;
 
+import de.pottgames.lesscolors.AlphaMode;
+import de.pottgames.lesscolors.AnimatedImage;
+import de.pottgames.lesscolors.AnimatedImageModifier;
 import de.pottgames.lesscolors.ColorSpace;
+import de.pottgames.lesscolors.DiffusionKernel;
 import de.pottgames.lesscolors.Image;
 import de.pottgames.lesscolors.ImageModifier;
+import de.pottgames.lesscolors.LookupTableCache;
+import de.pottgames.lesscolors.Metrics;
+import de.pottgames.lesscolors.MultiPaletteReducer;
+import de.pottgames.lesscolors.Palette;
+import de.pottgames.lesscolors.PaletteGenerator;
+import de.pottgames.lesscolors.PaletteLookupTable;
+import de.pottgames.lesscolors.PaletteMatcher;
+import de.pottgames.lesscolors.QuantizationMethod;
+import de.pottgames.lesscolors.RawImage;
+import de.pottgames.lesscolors.StreamingReducer;
+import de.pottgames.lesscolors.ThresholdMap;
 
 public class App {
+    private static final String LOOKUP_TABLE_EXACT       = "exact";
+    private static final String LOOKUP_TABLE_APPROXIMATE = "approximate";
+
+    private static final Map<String, AlphaMode>          ALPHA_MODES       = new HashMap<>();
+    private static final Map<String, QuantizationMethod> QUANTIZERS        = new HashMap<>();
+    private static final Map<String, DiffusionKernel>    DIFFUSION_KERNELS = new HashMap<>();
+    private static final Map<String, ThresholdMap>       THRESHOLD_MAPS    = new HashMap<>();
+
+    static {
+        App.ALPHA_MODES.put("ignore", AlphaMode.IGNORE);
+        App.ALPHA_MODES.put("preserve", AlphaMode.PRESERVE);
+        App.ALPHA_MODES.put("threshold", AlphaMode.THRESHOLD);
+        App.ALPHA_MODES.put("matte", AlphaMode.MATTE);
+        App.ALPHA_MODES.put("premultiply", AlphaMode.PREMULTIPLY);
+        App.QUANTIZERS.put("median-cut", QuantizationMethod.MEDIAN_CUT);
+        App.QUANTIZERS.put("octree", QuantizationMethod.OCTREE);
+        App.DIFFUSION_KERNELS.put("floyd-steinberg", DiffusionKernel.FLOYD_STEINBERG);
+        App.DIFFUSION_KERNELS.put("atkinson", DiffusionKernel.ATKINSON);
+        App.THRESHOLD_MAPS.put("bayer-2x2", ThresholdMap.BAYER_2X2);
+        App.THRESHOLD_MAPS.put("bayer-4x4", ThresholdMap.BAYER_4X4);
+        App.THRESHOLD_MAPS.put("bayer-8x8", ThresholdMap.BAYER_8X8);
+        App.THRESHOLD_MAPS.put("blue-noise", ThresholdMap.BLUE_NOISE_64X64);
+    }
+
 
     public static void main(String[] args) {
         final long startTime = System.nanoTime();
@@ -36,8 +87,29 @@ public class App {
             return;
         }
 
+        final Metrics metrics = arguments.stats ? new Metrics().addRegisteredListeners() : null;
+        Metrics.activate(metrics);
+
+        if (arguments.serve) {
+            if (arguments.port > 0) {
+                // listening only ends with the JVM, so the stats are printed on the way out
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> App.printStats(metrics)));
+                App.serve(arguments);
+            } else {
+                App.serve(arguments);
+                App.printStats(metrics);
+            }
+            return;
+        }
+
         try {
-            App.process(arguments);
+            if (arguments.inputDirectory != null) {
+                App.processBatch(arguments);
+            } else if (App.hasMultiplePalettes(arguments)) {
+                App.processWithPalettes(arguments);
+            } else {
+                App.process(arguments);
+            }
         } catch (final IOException e) {
             e.printStackTrace(System.err);
             System.err.println("An error occurred while processing the images.");
@@ -47,45 +119,424 @@ public class App {
         final long endTime = System.nanoTime();
         final long millis = (endTime - startTime) / 1000 / 1000;
         System.out.println("Successfully finished in " + millis + " ms.");
+        App.printStats(metrics);
+    }
+
+
+    private static void printStats(Metrics metrics) {
+        if (metrics != null) {
+            System.out.println(metrics.toJson());
+        }
     }
 
 
     public static void process(Arguments arguments) throws IOException {
         final ColorSpace colorSpace = ColorSpace.valueOf(arguments.colorSpace);
-        final Image palette = Image.fromFilePath(arguments.paletteImagePath, colorSpace);
-        final Image image = Image.fromFilePath(arguments.inputPath, colorSpace);
-        final ImageModifier modifier = new ImageModifier(image);
+        final Palette palette = App.loadPalette(arguments);
+        final PaletteMatcher matcher = App.createMatcher(palette, arguments);
         final File outputFile = new File(arguments.outputPath);
-        modifier.reduceColorsByPalette(palette);
-        modifier.getImage().saveToFile(outputFile, arguments.outputImageType);
+        if (App.canReduceRaw(arguments)) {
+            // the copy stays outside the heap and is reduced in place through its mapping
+            Files.copy(Paths.get(arguments.inputPath), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            try (RawImage rawImage = RawImage.open(outputFile.toPath(), true)) {
+                rawImage.setParallelism(arguments.threads).reduceColors(matcher);
+            }
+            return;
+        }
+        if (arguments.stream) {
+            new StreamingReducer(matcher).setStripHeight(arguments.stripHeight).setParallelism(arguments.threads).reduce(new File(arguments.inputPath),
+                    outputFile);
+            return;
+        }
+        if (arguments.animated) {
+            final AnimatedImage animation = AnimatedImage.fromFilePath(arguments.inputPath, colorSpace);
+            new AnimatedImageModifier(animation).setParallelism(arguments.threads).reduceColors(matcher);
+            animation.saveToFile(outputFile, arguments.outputImageType);
+            return;
+        }
+
+        final Image image = Image.fromFilePath(arguments.inputPath, colorSpace);
+        final ImageModifier modifier = App.createModifier(image, arguments).setParallelism(arguments.threads);
+        if (App.DIFFUSION_KERNELS.containsKey(arguments.dither)) {
+            modifier.ditherByErrorDiffusion(palette, App.DIFFUSION_KERNELS.get(arguments.dither));
+        } else if (App.THRESHOLD_MAPS.containsKey(arguments.dither)) {
+            modifier.ditherOrdered(palette, App.THRESHOLD_MAPS.get(arguments.dither), arguments.ditherStrength);
+        } else if (arguments.histogram) {
+            modifier.reduceColorsByHistogram(matcher);
+            System.out.println("Histogram: " + modifier.getHistogram());
+        } else {
+            modifier.reduceColors(matcher);
+        }
+        if (arguments.indexed) {
+            modifier.getImage().saveIndexedToFile(outputFile, arguments.outputImageType);
+        } else {
+            modifier.getImage().saveToFile(outputFile, arguments.outputImageType);
+        }
     }
 
 
-    private static boolean validateArguments(Arguments arguments) {
-        if (arguments.inputPath == null || arguments.inputPath.isEmpty()) {
-            System.err.println("Missing input image path argument.");
+    public static void processBatch(Arguments arguments) throws IOException {
+        final Palette palette = App.loadPalette(arguments);
+        final BatchProcessor processor = new BatchProcessor(arguments, App.createMatcher(palette, arguments));
+        System.out.println(processor.process());
+    }
+
+
+    /**
+     * Loads the palette image, or generates a palette from the input image or all images of the input directory if a color count is given.
+     */
+    static Palette loadPalette(Arguments arguments) throws IOException {
+        final ColorSpace colorSpace = ColorSpace.valueOf(arguments.colorSpace);
+        if (arguments.colors <= 0) {
+            return Palette.fromFilePath(arguments.paletteImagePaths.get(0), colorSpace).withTolerance(arguments.tolerance);
+        }
+
+        final PaletteGenerator generator = new PaletteGenerator(arguments.colors, colorSpace).setMethod(App.QUANTIZERS.get(arguments.quantizer))
+                .setParallelism(arguments.threads);
+        if (arguments.inputDirectory == null) {
+            generator.addImage(Image.fromFilePath(arguments.inputPath, colorSpace));
+        } else {
+            App.addImages(generator, BatchProcessor.collectInputs(Paths.get(arguments.inputDirectory), arguments.recursive), colorSpace, arguments.threads);
+        }
+        final Palette palette = generator.generate().withTolerance(arguments.tolerance);
+        if (arguments.paletteOutputPath != null) {
+            palette.toImage().saveToFile(new File(arguments.paletteOutputPath), App.getExtension(arguments.paletteOutputPath));
+        }
+        return palette;
+    }
+
+
+    private static void addImages(PaletteGenerator generator, List<Path> inputs, ColorSpace colorSpace, int threads) throws IOException {
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        for (final Path input : inputs) {
+            tasks.add(() -> {
+                generator.addImage(Image.fromFile(input.toFile(), colorSpace));
+                return null;
+            });
+        }
+        App.runConcurrently(tasks, threads);
+    }
+
+
+    /**
+     * Decodes the input image once and reduces it to each palette of the arguments, writing one output per palette into the output directory. Each thread
+     * loads a palette, reduces the shared source to it and writes the result, so at most one output image per thread is held in memory.
+     * <p>
+     * Outputs are named after the input and the palette file without its extension, so palettes that share a name are rejected before the input is decoded.
+     */
+    public static void processWithPalettes(Arguments arguments) throws IOException {
+        final ColorSpace colorSpace = ColorSpace.valueOf(arguments.colorSpace);
+        final Path outputDirectory = Files.createDirectories(Paths.get(arguments.outputDirectory));
+        final String inputName = App.getBaseName(Paths.get(arguments.inputPath));
+        final List<Path> palettePaths = App.getPalettePaths(arguments);
+        final List<Path> outputPaths = new ArrayList<>();
+        for (final Path palettePath : palettePaths) {
+            outputPaths.add(outputDirectory.resolve(inputName + "-" + App.getBaseName(palettePath) + "." + arguments.outputImageType));
+        }
+        App.requireDistinctOutputs(palettePaths, outputPaths);
+        final MultiPaletteReducer reducer = new MultiPaletteReducer(Image.fromFilePath(arguments.inputPath, colorSpace));
+
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < palettePaths.size(); i++) {
+            final Path palettePath = palettePaths.get(i);
+            final File outputFile = outputPaths.get(i).toFile();
+            tasks.add(() -> {
+                final Palette palette = Palette.fromFile(palettePath.toFile(), colorSpace).withTolerance(arguments.tolerance);
+                final Image image = reducer.reduce(App.createMatcher(palette, arguments));
+                if (arguments.indexed) {
+                    image.saveIndexedToFile(outputFile, arguments.outputImageType);
+                } else {
+                    image.saveToFile(outputFile, arguments.outputImageType);
+                }
+                return null;
+            });
+        }
+        App.runConcurrently(tasks, arguments.threads);
+        System.out.println("Reduced " + reducer.getDistinctColorCount() + " distinct colors to " + tasks.size() + " palettes.");
+    }
+
+
+    /**
+     * Whether both the input and the output are raw images and nothing but a plain reduction is asked for.
+     */
+    private static boolean canReduceRaw(Arguments arguments) {
+        return RawImage.hasRawExtension(arguments.inputPath) && RawImage.FORMAT_NAME.equalsIgnoreCase(arguments.outputImageType) && !arguments.stream
+                && !arguments.animated && !arguments.histogram && arguments.dither == null && App.ALPHA_MODES.get(arguments.alphaMode) == AlphaMode.IGNORE;
+    }
+
+
+    private static boolean hasMultiplePalettes(Arguments arguments) {
+        return arguments.paletteDirectory != null || arguments.paletteImagePaths.size() > 1;
+    }
+
+
+    private static List<Path> getPalettePaths(Arguments arguments) throws IOException {
+        final List<Path> palettePaths = new ArrayList<>();
+        for (final String palettePath : arguments.paletteImagePaths) {
+            palettePaths.add(Paths.get(palettePath));
+        }
+        if (arguments.paletteDirectory != null) {
+            palettePaths.addAll(BatchProcessor.collectInputs(Paths.get(arguments.paletteDirectory), false));
+        }
+        return palettePaths;
+    }
+
+
+    /**
+     * Fails if two inputs would be written to the same output file. Paths are compared ignoring case, since not every file system tells them apart.
+     */
+    static void requireDistinctOutputs(List<Path> inputs, List<Path> outputs) throws IOException {
+        final Map<String, Path> owners = new HashMap<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            final Path owner = owners.putIfAbsent(outputs.get(i).toString().toLowerCase(Locale.ROOT), inputs.get(i));
+            if (owner != null) {
+                throw new IOException(owner + " and " + inputs.get(i) + " would both be written to " + outputs.get(i));
+            }
+        }
+    }
+
+
+    private static String getBaseName(Path path) {
+        final String fileName = path.getFileName().toString();
+        final int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+
+    /**
+     * Runs the tasks on a fixed number of threads and returns once all of them are done. The first failure is rethrown.
+     */
+    private static void runConcurrently(List<Callable<Void>> tasks, int threads) throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (final Callable<Void> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing the images", e);
+        } catch (final ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    private static String getExtension(String path) {
+        final int dot = path.lastIndexOf('.');
+        return dot < 0 ? "png" : path.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+
+    public static void serve(Arguments arguments) {
+        final Server server = new Server(arguments);
+        try {
+            for (final String palettePath : arguments.paletteImagePaths) {
+                server.preload(palettePath, ColorSpace.valueOf(arguments.colorSpace));
+            }
+            if (arguments.port > 0) {
+                server.listen(arguments.port);
+            } else {
+                server.serve(System.in, System.out);
+            }
+        } catch (final IOException e) {
+            e.printStackTrace(System.err);
+            System.err.println("An error occurred while serving jobs.");
+        } finally {
+            server.shutdown();
+        }
+    }
+
+
+    /**
+     * Creates a modifier that handles transparent pixels as the arguments say.
+     */
+    static ImageModifier createModifier(Image image, Arguments arguments) {
+        return new ImageModifier(image).setAlphaMode(App.ALPHA_MODES.get(arguments.alphaMode)).setAlphaThreshold(arguments.alphaThreshold)
+                .setMatteColor(Integer.parseInt(arguments.matteColor, 16));
+    }
+
+
+    static PaletteMatcher createMatcher(Palette palette, Arguments arguments) throws IOException {
+        if (arguments.lookupTable == null && arguments.cacheDirectory == null) {
+            return palette;
+        }
+
+        // a cache directory without an explicit lookup table mode implies an exact table
+        final boolean approximate = App.LOOKUP_TABLE_APPROXIMATE.equals(arguments.lookupTable);
+        final int bits = approximate ? arguments.lookupTableBits : PaletteLookupTable.EXACT_BITS;
+        if (arguments.cacheDirectory != null) {
+            return new LookupTableCache(Paths.get(arguments.cacheDirectory)).setParallelism(arguments.threads).getOrBuild(palette, bits);
+        }
+        return new PaletteLookupTable(palette, bits, arguments.threads, null);
+    }
+
+
+    static boolean validateArguments(Arguments arguments) {
+        if (arguments.serve) {
+            if (arguments.port < 0 || arguments.port > 65535) {
+                System.err.println("Invalid port: " + arguments.port);
+                return false;
+            }
+            if (arguments.dither != null || arguments.stream || arguments.animated) {
+                System.err.println("Dithering, streaming and animated images are not supported in server mode.");
+                return false;
+            }
+        } else if (arguments.inputDirectory != null) {
+            if (arguments.outputDirectory == null || arguments.outputDirectory.isEmpty()) {
+                System.err.println("Missing output directory argument.");
+                return false;
+            }
+            if (!Files.isDirectory(Paths.get(arguments.inputDirectory))) {
+                System.err.println("Couldn't find directory: " + arguments.inputDirectory);
+                return false;
+            }
+            if (arguments.dither != null) {
+                System.err.println("Dithering is not supported when using an input directory.");
+                return false;
+            }
+            if (arguments.animated) {
+                System.err.println("Animated images are not supported when using an input directory.");
+                return false;
+            }
+            if (arguments.ioThreads < 1) {
+                System.err.println("Invalid number of io threads: " + arguments.ioThreads);
+                return false;
+            }
+        } else {
+            if (arguments.inputPath == null || arguments.inputPath.isEmpty()) {
+                System.err.println("Missing input image path argument.");
+                return false;
+            }
+            if (!App.hasMultiplePalettes(arguments) && (arguments.outputPath == null || arguments.outputPath.isEmpty())) {
+                System.err.println("Missing output image path argument.");
+                return false;
+            }
+            if (Files.notExists(Paths.get(arguments.inputPath))) {
+                System.err.println("Couldn't find file: " + arguments.inputPath);
+                return false;
+            }
+            if (arguments.stream && !"png".equalsIgnoreCase(arguments.outputImageType)) {
+                System.err.println("Streaming mode only writes png images: " + arguments.outputImageType);
+                return false;
+            }
+            if (arguments.stream && arguments.dither != null) {
+                System.err.println("Dithering is not supported in streaming mode.");
+                return false;
+            }
+            if (arguments.manifestPath != null) {
+                System.err.println("A manifest is only supported when using an input directory.");
+                return false;
+            }
+            if (arguments.stripHeight < 1) {
+                System.err.println("Invalid strip height: " + arguments.stripHeight);
+                return false;
+            }
+            if (arguments.stream && arguments.indexed) {
+                System.err.println("Indexed output is not supported in streaming mode.");
+                return false;
+            }
+            if (arguments.animated && (arguments.stream || arguments.dither != null || arguments.histogram || arguments.indexed)) {
+                System.err.println("Animated images can't be combined with streaming, dithering, the histogram reduction or indexed output.");
+                return false;
+            }
+        }
+        if (!App.ALPHA_MODES.containsKey(arguments.alphaMode)) {
+            System.err.println("Invalid alpha mode: " + arguments.alphaMode);
+            return false;
+        }
+        if (App.ALPHA_MODES.get(arguments.alphaMode) != AlphaMode.IGNORE && (arguments.stream || arguments.animated || arguments.dither != null)) {
+            System.err.println("Alpha modes can't be combined with streaming, animated images or dithering.");
+            return false;
+        }
+        if (arguments.alphaThreshold < 1 || arguments.alphaThreshold > 255) {
+            System.err.println("Invalid alpha threshold: " + arguments.alphaThreshold);
             return false;
         }
-        if (arguments.outputPath == null || arguments.outputPath.isEmpty()) {
-            System.err.println("Missing output image path argument.");
+        if (!arguments.matteColor.matches("[0-9a-fA-F]{6}")) {
+            System.err.println("Invalid matte color: " + arguments.matteColor);
             return false;
         }
-        if (arguments.paletteImagePath == null || arguments.paletteImagePath.isEmpty()) {
+        if (arguments.indexed && !"png".equalsIgnoreCase(arguments.outputImageType) && !"gif".equalsIgnoreCase(arguments.outputImageType)) {
+            System.err.println("Indexed output only supports png and gif images: " + arguments.outputImageType);
+            return false;
+        }
+        // in server mode each job names its palette
+        if (arguments.colors > 0) {
+            if (!arguments.paletteImagePaths.isEmpty() || arguments.paletteDirectory != null || arguments.serve) {
+                System.err.println("A generated palette can't be combined with a palette image or server mode.");
+                return false;
+            }
+            if (!App.QUANTIZERS.containsKey(arguments.quantizer)) {
+                System.err.println("Invalid quantizer: " + arguments.quantizer);
+                return false;
+            }
+        } else if (arguments.colors < 0) {
+            System.err.println("Invalid number of colors: " + arguments.colors);
+            return false;
+        } else if (!arguments.serve && arguments.paletteImagePaths.isEmpty() && arguments.paletteDirectory == null) {
             System.err.println("Missing palette image path argument.");
             return false;
         }
+        if (arguments.paletteOutputPath != null && arguments.colors <= 0) {
+            System.err.println("A palette output path requires a number of colors to generate.");
+            return false;
+        }
         if (ColorSpace.valueOf(arguments.colorSpace) == null) {
             System.err.println("Invalid color space: " + arguments.colorSpace);
             return false;
         }
-        if (Files.notExists(Paths.get(arguments.inputPath))) {
-            System.err.println("Couldn't find file: " + arguments.inputPath);
+        if (arguments.threads < 1) {
+            System.err.println("Invalid number of threads: " + arguments.threads);
+            return false;
+        }
+        if (arguments.dither != null && !App.DIFFUSION_KERNELS.containsKey(arguments.dither) && !App.THRESHOLD_MAPS.containsKey(arguments.dither)) {
+            System.err.println("Invalid dithering method: " + arguments.dither);
+            return false;
+        }
+        if (!(arguments.ditherStrength >= 0f)) {
+            System.err.println("Invalid dither strength: " + arguments.ditherStrength);
+            return false;
+        }
+        if (arguments.lookupTable != null && !App.LOOKUP_TABLE_EXACT.equals(arguments.lookupTable)
+                && !App.LOOKUP_TABLE_APPROXIMATE.equals(arguments.lookupTable)) {
+            System.err.println("Invalid lookup table mode: " + arguments.lookupTable);
             return false;
         }
-        if (Files.notExists(Paths.get(arguments.paletteImagePath))) {
-            System.err.println("Couldn't find file: " + arguments.paletteImagePath);
+        if (!(arguments.tolerance >= 0f)) {
+            System.err.println("Invalid tolerance: " + arguments.tolerance);
             return false;
         }
+        if (arguments.lookupTableBits < 1 || arguments.lookupTableBits > PaletteLookupTable.EXACT_BITS) {
+            System.err.println("Invalid lookup table bits: " + arguments.lookupTableBits);
+            return false;
+        }
+        for (final String palettePath : arguments.paletteImagePaths) {
+            if (Files.notExists(Paths.get(palettePath))) {
+                System.err.println("Couldn't find file: " + palettePath);
+                return false;
+            }
+        }
+        if (arguments.paletteDirectory != null && !Files.isDirectory(Paths.get(arguments.paletteDirectory))) {
+            System.err.println("Couldn't find directory: " + arguments.paletteDirectory);
+            return false;
+        }
+        if (App.hasMultiplePalettes(arguments)) {
+            if (arguments.serve || arguments.inputDirectory != null || arguments.outputDirectory == null) {
+                System.err.println("Multiple palettes need a single input image and an output directory.");
+                return false;
+            }
+            if (arguments.stream || arguments.animated || arguments.dither != null || arguments.histogram
+                    || App.ALPHA_MODES.get(arguments.alphaMode) != AlphaMode.IGNORE) {
+                System.err.println("Multiple palettes can't be combined with streaming, animated images, dithering, the histogram reduction or alpha modes.");
+                return false;
+            }
+        }
 
         return true;
     }
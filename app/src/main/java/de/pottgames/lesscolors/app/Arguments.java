@@ -14,6 +14,9 @@
 
 package de.pottgames.lesscolors.app;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.beust.jcommander.Parameter;
 
 import de.pottgames.lesscolors.ColorSpace;
@@ -25,13 +28,95 @@ public class Arguments {
     @Parameter(names = { "-output", "--output" }, description = "The output image path")
     public String outputPath;
 
+    @Parameter(names = { "-input-dir", "--input-dir" }, description = "Directory of input images to process in one batch")
+    public String inputDirectory;
+
+    @Parameter(names = { "-output-dir", "--output-dir" }, description = "Directory the processed images of a batch are written to")
+    public String outputDirectory;
+
+    @Parameter(names = { "-recursive", "--recursive" }, description = "Include sub-directories of the input directory")
+    public boolean recursive = false;
+
+    @Parameter(names = { "-manifest", "--manifest" }, description = "File that records the processed inputs, so that later runs skip unchanged ones")
+    public String manifestPath;
+
     @Parameter(names = { "-output-type", "--output-type" }, description = "File format of the output image")
     public String outputImageType = "png";
 
-    @Parameter(names = { "-palette", "--palette", "-lut", "--lut" }, description = "Path to the color palette image")
-    public String paletteImagePath;
+    @Parameter(names = { "-palette", "--palette", "-lut", "--lut" }, description = "Path to the color palette image, repeat to write one output per palette")
+    public List<String> paletteImagePaths = new ArrayList<>();
+
+    @Parameter(names = { "-palette-dir", "--palette-dir" }, description = "Directory of palette images, one output is written per palette")
+    public String paletteDirectory;
+
+    @Parameter(names = { "-colors", "--colors" }, description = "Generate a palette with this many colors from the input images instead")
+    public int colors = 0;
+
+    @Parameter(names = { "-quantizer", "--quantizer" }, description = "Initial palette of a generated palette: median-cut or octree")
+    public String quantizer = "median-cut";
+
+    @Parameter(names = { "-palette-output", "--palette-output" }, description = "Save the generated palette as an image to this path")
+    public String paletteOutputPath;
 
     @Parameter(names = { "-color-space", "--color-space", "-colorspace", "--colorspace" }, description = "The colorspace to be used for the images")
     public String colorSpace = ColorSpace.OKLAB.toString();
 
+    @Parameter(names = { "-tolerance", "--tolerance" }, description = "CIEDE2000 difference by which LAB matches may miss the closest color, 0 is exact")
+    public float tolerance = 0f;
+
+    @Parameter(names = { "-lookup-table", "--lookup-table" }, description = "Precompute a lookup table for the palette, either \"exact\" or \"approximate\"")
+    public String lookupTable;
+
+    @Parameter(names = { "-lookup-table-bits", "--lookup-table-bits" }, description = "Bits per color channel of an approximate lookup table (1-8)")
+    public int lookupTableBits = 6;
+
+    @Parameter(names = { "-cache-dir", "--cache-dir" }, description = "Directory in which lookup tables are cached across runs")
+    public String cacheDirectory;
+
+    @Parameter(names = { "-alpha", "--alpha" }, description = "How transparent pixels are reduced: ignore, preserve, threshold, matte or premultiply")
+    public String alphaMode = "ignore";
+
+    @Parameter(names = { "-alpha-threshold", "--alpha-threshold" }, description = "Alpha from which on pixels become opaque in threshold mode (1-255)")
+    public int alphaThreshold = 128;
+
+    @Parameter(names = { "-matte", "--matte" }, description = "Background color in matte mode as RRGGBB hex code")
+    public String matteColor = "ffffff";
+
+    @Parameter(names = { "-indexed", "--indexed" }, description = "Write an indexed color image with 1, 2, 4 or 8 bits per pixel, PNG and GIF output only")
+    public boolean indexed = false;
+
+    @Parameter(names = { "-histogram", "--histogram" }, description = "Match each distinct color of the image only once")
+    public boolean histogram = false;
+
+    @Parameter(names = { "-dither", "--dither" }, description = "Dithering method: floyd-steinberg, atkinson, bayer-2x2, bayer-4x4, bayer-8x8 or blue-noise")
+    public String dither;
+
+    @Parameter(names = { "-dither-strength", "--dither-strength" },
+            description = "Strength of ordered dithering, 1 is the typical distance between palette colors")
+    public float ditherStrength = 1f;
+
+    @Parameter(names = { "-animated", "--animated" }, description = "Read, reduce and write all frames of an animated image, like a GIF")
+    public boolean animated = false;
+
+    @Parameter(names = { "-stream", "--stream" }, description = "Decode, reduce and write the image in strips of rows to bound memory use, PNG output only")
+    public boolean stream = false;
+
+    @Parameter(names = { "-strip-height", "--strip-height" }, description = "Number of rows per strip in streaming mode")
+    public int stripHeight = 256;
+
+    @Parameter(names = { "-serve", "--serve" }, description = "Keep running and process jobs read from standard input or a local socket")
+    public boolean serve = false;
+
+    @Parameter(names = { "-port", "--port" }, description = "Local port to accept jobs on in server mode, standard input is used if not set")
+    public int port = 0;
+
+    @Parameter(names = { "-stats", "--stats" }, description = "Print the duration of each processing stage and other counters as JSON when finished")
+    public boolean stats = false;
+
+    @Parameter(names = { "-threads", "--threads" }, description = "Number of threads used to process the image")
+    public int threads = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(names = { "-io-threads", "--io-threads" }, description = "Number of threads that read and write images in batch mode, each")
+    public int ioThreads = 2;
+
 }
@@ -0,0 +1,245 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors.app;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.pottgames.lesscolors.PaletteMatcher;
+
+/**
+ * Remembers the inputs a batch run has processed, so that later runs only process the inputs that changed. The manifest file starts with a hash of the
+ * settings, i.e. the palette colors and every option that affects the output. It then holds one tab separated line per input with its path relative to the
+ * input directory, its size, its modification time and a SHA-256 hash of its content.
+ * <p>
+ * An input is up to date if its output exists and its size and content hash match the manifest. The hash is only computed if the modification time changed,
+ * so unchanged inputs aren't read at all. A manifest written with different settings is discarded as a whole.
+ */
+public class BatchManifest {
+    private static final String HEADER      = "# lesscolors batch manifest 1";
+    private static final String SETTINGS    = "settings";
+    private static final int    BUFFER_SIZE = 1 << 16;
+
+    private final Path                     file;
+    private final String                   settingsHash;
+    private final Map<String, Fingerprint> previous = new ConcurrentHashMap<>();
+    private final Map<String, Fingerprint> current  = new ConcurrentHashMap<>();
+
+
+    /**
+     * Loads the manifest file, if it exists and was written with the same settings.
+     *
+     * @param file The manifest file.
+     * @param settings A description of the palette and all options that affect the output.
+     *
+     * @throws IOException If the manifest file exists but can't be read.
+     */
+    public BatchManifest(Path file, String settings) throws IOException {
+        this.file = file;
+        this.settingsHash = BatchManifest.toHex(BatchManifest.sha256().digest(settings.getBytes(StandardCharsets.UTF_8)));
+        if (Files.isRegularFile(file)) {
+            this.read();
+        }
+    }
+
+
+    private void read() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(this.file, StandardCharsets.UTF_8)) {
+            if (!BatchManifest.HEADER.equals(reader.readLine()) || !(BatchManifest.SETTINGS + "\t" + this.settingsHash).equals(reader.readLine())) {
+                return;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split("\t", -1);
+                if (fields.length == 4) {
+                    try {
+                        this.previous.put(fields[0], new Fingerprint(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]));
+                    } catch (final NumberFormatException e) {
+                        // a damaged line only costs reprocessing that input
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Checks whether an input is unchanged since it was processed with the same settings and its output still exists. Up to date inputs are kept in the
+     * manifest. Otherwise the fingerprint of the input is returned, so that its content is hashed at most once. Call this before the input is decoded, so
+     * that changes made while it is processed are noticed by the next run.
+     *
+     * @param key The path of the input relative to the input directory.
+     * @param input The input file.
+     * @param output The output file.
+     *
+     * @return null if the input doesn't have to be processed, otherwise the fingerprint to pass to {@link #record(String, Fingerprint)} once the output is
+     *         written
+     *
+     * @throws IOException If the input can't be read.
+     */
+    public Fingerprint check(String key, Path input, Path output) throws IOException {
+        final BasicFileAttributes attributes = Files.readAttributes(input, BasicFileAttributes.class);
+        final long size = attributes.size();
+        final long lastModified = attributes.lastModifiedTime().toMillis();
+        final Fingerprint recorded = this.previous.get(key);
+        if (recorded == null || recorded.size != size || !Files.exists(output)) {
+            return new Fingerprint(size, lastModified, BatchManifest.hash(input));
+        }
+        if (recorded.lastModified == lastModified) {
+            this.current.put(key, recorded);
+            return null;
+        }
+
+        final String hash = BatchManifest.hash(input);
+        if (!recorded.hash.equals(hash)) {
+            return new Fingerprint(size, lastModified, hash);
+        }
+        // remember the new modification time, so that the next run doesn't hash the input again
+        this.current.put(key, new Fingerprint(size, lastModified, hash));
+        return null;
+    }
+
+
+    /**
+     * Records that an input has been processed.
+     *
+     * @param key The path of the input relative to the input directory.
+     * @param fingerprint The fingerprint of the input taken before it was processed.
+     */
+    public void record(String key, Fingerprint fingerprint) {
+        // the file format can't hold these characters, such inputs are simply processed every time
+        if (key.indexOf('\t') < 0 && key.indexOf('\n') < 0 && key.indexOf('\r') < 0) {
+            this.current.put(key, fingerprint);
+        }
+    }
+
+
+    /**
+     * Writes all inputs that were up to date or processed since this manifest was loaded. Inputs that failed or no longer exist are dropped. The file is
+     * replaced atomically, so an interrupted run never leaves a damaged manifest behind.
+     *
+     * @throws IOException If the manifest can't be written.
+     */
+    public void save() throws IOException {
+        final Path directory = this.file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        final Path tempFile = Files.createTempFile(directory, this.file.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                writer.write(BatchManifest.HEADER);
+                writer.newLine();
+                writer.write(BatchManifest.SETTINGS + "\t" + this.settingsHash);
+                writer.newLine();
+                for (final Map.Entry<String, Fingerprint> entry : new TreeMap<>(this.current).entrySet()) {
+                    final Fingerprint fingerprint = entry.getValue();
+                    writer.write(entry.getKey() + "\t" + fingerprint.size + "\t" + fingerprint.lastModified + "\t" + fingerprint.hash);
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(tempFile, this.file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, this.file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+
+    /**
+     * Returns a hash of the colors of a palette, for use in the settings of a manifest.
+     *
+     * @param matcher The palette.
+     *
+     * @return The hash in hexadecimal.
+     */
+    public static String hashPalette(PaletteMatcher matcher) {
+        final ByteBuffer buffer = ByteBuffer.allocate(matcher.size() * 4);
+        for (int i = 0; i < matcher.size(); i++) {
+            buffer.putInt(matcher.getArgb(i));
+        }
+        return BatchManifest.toHex(BatchManifest.sha256().digest(buffer.array()));
+    }
+
+
+    /**
+     * Hashes the content of a file, reading it through a channel into a reused direct buffer.
+     */
+    static String hash(Path file) throws IOException {
+        final MessageDigest digest = BatchManifest.sha256();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BatchManifest.BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return BatchManifest.toHex(digest.digest());
+    }
+
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+
+    private static String toHex(byte[] bytes) {
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            builder.append(Character.forDigit(b >>> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * The size, modification time and content hash of an input.
+     */
+    public static final class Fingerprint {
+        private final long   size;
+        private final long   lastModified;
+        private final String hash;
+
+
+        private Fingerprint(long size, long lastModified, String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+
+    }
+
+}
@@ -0,0 +1,387 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors.app;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import de.pottgames.lesscolors.ColorSpace;
+import de.pottgames.lesscolors.Image;
+import de.pottgames.lesscolors.ImageModifier;
+import de.pottgames.lesscolors.PaletteMatcher;
+import de.pottgames.lesscolors.RawImage;
+
+/**
+ * Reduces the colors of all images inside a directory. The work is organized as a pipeline of three stages that run concurrently: reader threads decode the
+ * input files, worker threads reduce the colors and writer threads encode the results. The stages are connected by bounded queues, so only a limited number of
+ * decoded images is held in memory at any time, no matter how many files the directory contains.
+ * <p>
+ * With a {@link BatchManifest}, inputs that haven't changed since a previous run with the same settings are skipped by the reader threads.
+ */
+public class BatchProcessor {
+    private static final Job POISON = new Job(null, null, null);
+
+    private final Path           inputDirectory;
+    private final Path           outputDirectory;
+    private final boolean        recursive;
+    private final ColorSpace     colorSpace;
+    private final PaletteMatcher matcher;
+    private final String         outputImageType;
+    private final int            ioThreads;
+    private final int            workerThreads;
+    private final boolean        histogram;
+    private final Arguments      arguments;
+    private final boolean        indexed;
+    private final BatchManifest  manifest;
+    private final AtomicInteger  processed = new AtomicInteger();
+    private final AtomicInteger  failed    = new AtomicInteger();
+    private final AtomicInteger  skipped   = new AtomicInteger();
+    private final AtomicLong     bytesRead = new AtomicLong();
+
+
+    public BatchProcessor(Arguments arguments, PaletteMatcher matcher) throws IOException {
+        this.inputDirectory = Paths.get(arguments.inputDirectory);
+        this.outputDirectory = Paths.get(arguments.outputDirectory);
+        this.recursive = arguments.recursive;
+        this.colorSpace = ColorSpace.valueOf(arguments.colorSpace);
+        this.matcher = matcher;
+        this.outputImageType = arguments.outputImageType;
+        this.ioThreads = arguments.ioThreads;
+        this.workerThreads = arguments.threads;
+        this.histogram = arguments.histogram;
+        this.arguments = arguments;
+        this.indexed = arguments.indexed;
+        final String settings = BatchProcessor.describeSettings(arguments, matcher);
+        this.manifest = arguments.manifestPath == null ? null : new BatchManifest(Paths.get(arguments.manifestPath), settings);
+    }
+
+
+    /**
+     * Describes the palette and every option that affects the output images.
+     */
+    private static String describeSettings(Arguments arguments, PaletteMatcher matcher) {
+        return String.join("\n", "palette=" + BatchManifest.hashPalette(matcher), "colorSpace=" + arguments.colorSpace, "tolerance=" + arguments.tolerance,
+                "outputType=" + arguments.outputImageType, "lookupTable=" + arguments.lookupTable, "lookupTableBits=" + arguments.lookupTableBits,
+                "histogram=" + arguments.histogram, "indexed=" + arguments.indexed, "colors=" + arguments.colors,
+                "quantizer=" + arguments.quantizer, "alpha=" + arguments.alphaMode, "alphaThreshold=" + arguments.alphaThreshold,
+                "matte=" + arguments.matteColor.toLowerCase(Locale.ROOT));
+    }
+
+
+    /**
+     * Processes all images of the input directory and blocks until they are written.
+     *
+     * @return The summary of the run.
+     *
+     * @throws IOException If the input directory can't be listed, two inputs would be written to the same output file or the manifest can't be written.
+     */
+    public Summary process() throws IOException {
+        final long startTime = System.nanoTime();
+        final List<Path> inputs = this.collectInputs();
+        final List<Path> outputs = new ArrayList<>();
+        for (final Path input : inputs) {
+            outputs.add(this.getOutputPath(input));
+        }
+        App.requireDistinctOutputs(inputs, outputs);
+
+        final BlockingQueue<Job> pending = new LinkedBlockingQueue<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            final String key = this.inputDirectory.relativize(inputs.get(i)).toString().replace(File.separatorChar, '/');
+            pending.add(new Job(inputs.get(i), outputs.get(i), key));
+        }
+        for (int i = 0; i < this.ioThreads; i++) {
+            pending.add(BatchProcessor.POISON);
+        }
+        final BlockingQueue<Job> decoded = new ArrayBlockingQueue<>(this.workerThreads * 2);
+        final BlockingQueue<Job> reduced = new ArrayBlockingQueue<>(this.ioThreads * 2);
+
+        final Stage readers = new Stage("reader", this.ioThreads, pending, decoded, this.workerThreads, this::decode);
+        final Stage workers = new Stage("worker", this.workerThreads, decoded, reduced, this.ioThreads, this::reduce);
+        final Stage writers = new Stage("writer", this.ioThreads, reduced, null, 0, this::encode);
+        readers.start();
+        workers.start();
+        writers.start();
+        readers.join();
+        workers.join();
+        writers.join();
+
+        if (this.manifest != null) {
+            this.manifest.save();
+        }
+        return new Summary(this.processed.get(), this.failed.get(), this.skipped.get(), this.bytesRead.get(), System.nanoTime() - startTime);
+    }
+
+
+    private List<Path> collectInputs() throws IOException {
+        return BatchProcessor.collectInputs(this.inputDirectory, this.recursive);
+    }
+
+
+    /**
+     * Lists the files of a directory that have a suffix ImageIO can read or the raw image suffix, sorted by path.
+     */
+    static List<Path> collectInputs(Path inputDirectory, boolean recursive) throws IOException {
+        final Set<String> suffixes = new HashSet<>();
+        for (final String suffix : ImageIO.getReaderFileSuffixes()) {
+            suffixes.add(suffix.toLowerCase(Locale.ROOT));
+        }
+        suffixes.add(RawImage.FORMAT_NAME);
+
+        try (Stream<Path> files = Files.walk(inputDirectory, recursive ? Integer.MAX_VALUE : 1)) {
+            return files.filter(Files::isRegularFile).filter(file -> suffixes.contains(BatchProcessor.getExtension(file))).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+
+    private Path getOutputPath(Path input) {
+        final Path relative = this.inputDirectory.relativize(input);
+        final String fileName = relative.getFileName().toString();
+        final int dot = fileName.lastIndexOf('.');
+        final String outputName = (dot > 0 ? fileName.substring(0, dot) : fileName) + "." + this.outputImageType;
+        return this.outputDirectory.resolve(relative).resolveSibling(outputName);
+    }
+
+
+    private static String getExtension(Path file) {
+        final String fileName = file.getFileName().toString();
+        final int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+
+    private void decode(Job job) throws IOException {
+        if (this.manifest != null) {
+            job.fingerprint = this.manifest.check(job.key, job.input, job.output);
+            if (job.fingerprint == null) {
+                job.skipped = true;
+                this.skipped.incrementAndGet();
+                return;
+            }
+        }
+        this.bytesRead.addAndGet(Files.size(job.input));
+        job.image = Image.fromFile(job.input.toFile(), this.colorSpace);
+    }
+
+
+    private void reduce(Job job) {
+        final ImageModifier modifier = App.createModifier(job.image, this.arguments);
+        if (this.histogram) {
+            modifier.reduceColorsByHistogram(this.matcher);
+        } else {
+            modifier.reduceColors(this.matcher);
+        }
+    }
+
+
+    private void encode(Job job) throws IOException {
+        final Path parent = job.output.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        if (this.indexed) {
+            job.image.saveIndexedToFile(job.output.toFile(), this.outputImageType);
+        } else {
+            job.image.saveToFile(job.output.toFile(), this.outputImageType);
+        }
+        job.image = null;
+        if (this.manifest != null) {
+            this.manifest.record(job.key, job.fingerprint);
+        }
+        this.processed.incrementAndGet();
+    }
+
+
+    private static class Job {
+        private final Path                input;
+        private final Path                output;
+        private final String              key;
+        private Image                     image;
+        private BatchManifest.Fingerprint fingerprint;
+        private boolean                   skipped;
+
+
+        private Job(Path input, Path output, String key) {
+            this.input = input;
+            this.output = output;
+            this.key = key;
+        }
+
+    }
+
+
+    @FunctionalInterface
+    private interface Action {
+        void run(Job job) throws IOException;
+    }
+
+
+    /**
+     * A group of threads that take jobs from one queue, run an action on them and hand them to the next queue. The last thread to finish tells the consumers of
+     * the next queue to stop.
+     */
+    private class Stage {
+        private final Thread[]           threads;
+        private final BlockingQueue<Job> input;
+        private final BlockingQueue<Job> output;
+        private final int                consumers;
+        private final Action             action;
+        private final AtomicInteger      running;
+
+
+        private Stage(String name, int threadCount, BlockingQueue<Job> input, BlockingQueue<Job> output, int consumers, Action action) {
+            this.threads = new Thread[threadCount];
+            this.input = input;
+            this.output = output;
+            this.consumers = consumers;
+            this.action = action;
+            this.running = new AtomicInteger(threadCount);
+            for (int i = 0; i < threadCount; i++) {
+                this.threads[i] = new Thread(this::work, "lesscolors-" + name + "-" + i);
+            }
+        }
+
+
+        private void start() {
+            Arrays.stream(this.threads).forEach(Thread::start);
+        }
+
+
+        private void join() {
+            try {
+                for (final Thread thread : this.threads) {
+                    thread.join();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+
+        private void work() {
+            try {
+                while (true) {
+                    final Job job = this.input.take();
+                    if (job == BatchProcessor.POISON) {
+                        break;
+                    }
+                    try {
+                        this.action.run(job);
+                        if (this.output != null && !job.skipped) {
+                            this.output.put(job);
+                        }
+                    } catch (final IOException | RuntimeException | Error e) {
+                        // an error like running out of memory on one huge image shouldn't stop the other jobs
+                        job.image = null;
+                        BatchProcessor.this.failed.incrementAndGet();
+                        System.err.println("Failed to process " + job.input + ": " + e);
+                    }
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                this.finish();
+            }
+        }
+
+
+        /**
+         * Tells the consumers of the next queue to stop once every thread of this stage has finished, even if a thread ended abnormally. Otherwise the
+         * consumers would wait for jobs forever.
+         */
+        private void finish() {
+            if (this.running.decrementAndGet() != 0) {
+                return;
+            }
+            final boolean interrupted = Thread.interrupted();
+            try {
+                for (int i = 0; i < this.consumers; i++) {
+                    this.output.put(BatchProcessor.POISON);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+    }
+
+
+    /**
+     * The outcome of a batch run.
+     */
+    public static class Summary {
+        private final int  processed;
+        private final int  failed;
+        private final int  skipped;
+        private final long bytesRead;
+        private final long nanos;
+
+
+        private Summary(int processed, int failed, int skipped, long bytesRead, long nanos) {
+            this.processed = processed;
+            this.failed = failed;
+            this.skipped = skipped;
+            this.bytesRead = bytesRead;
+            this.nanos = nanos;
+        }
+
+
+        public int getProcessed() {
+            return this.processed;
+        }
+
+
+        public int getFailed() {
+            return this.failed;
+        }
+
+
+        public int getSkipped() {
+            return this.skipped;
+        }
+
+
+        @Override
+        public String toString() {
+            final double seconds = Math.max(this.nanos, 1L) / 1e9;
+            return String.format(Locale.ROOT, "Processed %d images (%d failed, %d up to date) in %d ms: %.2f images/s, %.2f MB/s.", this.processed,
+                    this.failed, this.skipped, this.nanos / 1000 / 1000, this.processed / seconds, this.bytesRead / 1024d / 1024d / seconds);
+        }
+
+    }
+
+}
@@ -0,0 +1,256 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors.app;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.pottgames.lesscolors.ColorSpace;
+import de.pottgames.lesscolors.Image;
+import de.pottgames.lesscolors.ImageModifier;
+import de.pottgames.lesscolors.Palette;
+import de.pottgames.lesscolors.PaletteMatcher;
+
+/**
+ * Keeps the JVM and the palettes warm and processes jobs as they come in, either from standard input or from clients connecting to a local socket.
+ * <p>
+ * Each job is a single line of tab separated fields: the input image path, the palette image path, the output image path and optionally the color space,
+ * which defaults to the one given on the command line. The output format is taken from the file extension of the output path. The images are reduced with
+ * the options of the command line, including the histogram reduction and indexed output, dithering, streaming and animated images aren't supported. Palettes
+ * are loaded on first use and kept for later jobs. Jobs run concurrently on a fixed number of workers, and reading further jobs blocks while all workers are busy and the queue
+ * is full. Every job is answered with a line in the order the jobs finish:
+ *
+ * <pre>
+ * OK &lt;tab&gt; input path &lt;tab&gt; output path &lt;tab&gt; milliseconds from reading the job to finishing it
+ * ERROR &lt;tab&gt; input path &lt;tab&gt; message
+ * </pre>
+ *
+ * Empty lines and lines starting with # are ignored, the line QUIT ends the session.
+ */
+public class Server {
+    private static final String QUIT                   = "QUIT";
+    private static final String DEFAULT_FORMAT         = "png";
+    private static final int    QUEUED_JOBS_PER_WORKER = 4;
+
+    private final Arguments                   arguments;
+    private final ColorSpace                  defaultColorSpace;
+    private final Map<String, PaletteMatcher> matchers = new ConcurrentHashMap<>();
+    private final ExecutorService             workers;
+    private final Semaphore                   slots;
+
+
+    public Server(Arguments arguments) {
+        this.arguments = arguments;
+        this.defaultColorSpace = ColorSpace.valueOf(arguments.colorSpace);
+        this.workers = Executors.newFixedThreadPool(arguments.threads, Server.namedThreads("lesscolors-worker"));
+        this.slots = new Semaphore(arguments.threads * (1 + Server.QUEUED_JOBS_PER_WORKER));
+    }
+
+
+    /**
+     * Loads a palette ahead of the first job that uses it.
+     *
+     * @param palettePath The path of the palette image.
+     * @param colorSpace The color space of the palette.
+     *
+     * @throws IOException If the palette can't be loaded.
+     */
+    public void preload(String palettePath, ColorSpace colorSpace) throws IOException {
+        try {
+            this.getMatcher(palettePath, colorSpace);
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+
+    /**
+     * Reads jobs from the input stream and writes the results to the output stream until the input ends or a client sends QUIT. Returns once all jobs of the
+     * session are done.
+     *
+     * @param input The stream jobs are read from.
+     * @param output The stream results are written to.
+     *
+     * @throws IOException If reading from the input fails.
+     */
+    public void serve(InputStream input, OutputStream output) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        final PrintWriter writer = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), true);
+        final Phaser session = new Phaser(1);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (Server.QUIT.equals(line)) {
+                    break;
+                }
+                this.submit(line, writer, session);
+            }
+        } finally {
+            session.arriveAndAwaitAdvance();
+        }
+    }
+
+
+    /**
+     * Accepts clients on the loopback interface and serves each of them on its own thread until the server socket is closed. All clients share the workers.
+     * Doesn't return unless the port can't be opened or accepting a client fails, so the server usually runs until the JVM is stopped.
+     *
+     * @param port The port to listen on.
+     *
+     * @throws IOException If the port can't be opened.
+     */
+    public void listen(int port) throws IOException {
+        final ThreadFactory connectionThreads = Server.namedThreads("lesscolors-connection");
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println("Listening on " + serverSocket.getLocalSocketAddress());
+            while (true) {
+                final Socket socket = serverSocket.accept();
+                connectionThreads.newThread(() -> {
+                    try (Socket client = socket) {
+                        this.serve(client.getInputStream(), client.getOutputStream());
+                    } catch (final IOException e) {
+                        System.err.println("Connection failed: " + e);
+                    }
+                }).start();
+            }
+        }
+    }
+
+
+    /**
+     * Stops the workers after the jobs that were already submitted.
+     */
+    public void shutdown() {
+        this.workers.shutdown();
+        try {
+            this.workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private void submit(String line, PrintWriter writer, Phaser session) {
+        final long startTime = System.nanoTime();
+        final String[] fields = line.split("\t");
+        if (fields.length < 3 || fields.length > 4) {
+            Server.respond(writer, "ERROR\t" + fields[0] + "\texpected input, palette, output and optionally color space, separated by tabs");
+            return;
+        }
+
+        try {
+            this.slots.acquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Server.respond(writer, "ERROR\t" + fields[0] + "\tinterrupted");
+            return;
+        }
+        session.register();
+        this.workers.execute(() -> {
+            try {
+                final ColorSpace colorSpace = fields.length == 4 ? ColorSpace.valueOf(fields[3].trim().toUpperCase(Locale.ROOT)) : this.defaultColorSpace;
+                this.process(fields[0], fields[1], fields[2], colorSpace);
+                final double millis = (System.nanoTime() - startTime) / 1e6;
+                Server.respond(writer, String.format(Locale.ROOT, "OK\t%s\t%s\t%.2f", fields[0], fields[2], millis));
+            } catch (final IOException | RuntimeException e) {
+                final Throwable cause = e instanceof UncheckedIOException ? e.getCause() : e;
+                Server.respond(writer, "ERROR\t" + fields[0] + "\t" + cause);
+            } finally {
+                this.slots.release();
+                session.arriveAndDeregister();
+            }
+        });
+    }
+
+
+    private void process(String inputPath, String palettePath, String outputPath, ColorSpace colorSpace) throws IOException {
+        final PaletteMatcher matcher = this.getMatcher(palettePath, colorSpace);
+        final Image image = Image.fromFilePath(inputPath, colorSpace);
+        final ImageModifier modifier = App.createModifier(image, this.arguments);
+        if (this.arguments.histogram) {
+            modifier.reduceColorsByHistogram(matcher);
+        } else {
+            modifier.reduceColors(matcher);
+        }
+        final File outputFile = new File(outputPath);
+        if (this.arguments.indexed) {
+            image.saveIndexedToFile(outputFile, Server.getFormat(outputFile));
+        } else {
+            image.saveToFile(outputFile, Server.getFormat(outputFile));
+        }
+    }
+
+
+    private PaletteMatcher getMatcher(String palettePath, ColorSpace colorSpace) {
+        final String key = colorSpace + ":" + new File(palettePath).getAbsolutePath();
+        return this.matchers.computeIfAbsent(key, unused -> {
+            try {
+                return App.createMatcher(Palette.fromFilePath(palettePath, colorSpace).withTolerance(this.arguments.tolerance), this.arguments);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+
+    private static String getFormat(File file) {
+        final String name = file.getName();
+        final int dot = name.lastIndexOf('.');
+        return dot < 0 ? Server.DEFAULT_FORMAT : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+
+    private static void respond(PrintWriter writer, String response) {
+        synchronized (writer) {
+            writer.println(response);
+        }
+    }
+
+
+    private static ThreadFactory namedThreads(String prefix) {
+        final AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, prefix + "-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
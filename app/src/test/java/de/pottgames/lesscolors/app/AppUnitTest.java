@@ -0,0 +1,99 @@
+package de.pottgames.lesscolors.app;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.pottgames.lesscolors.ColorSpace;
+import de.pottgames.lesscolors.Image;
+
+public class AppUnitTest {
+    @TempDir
+    Path directory;
+
+
+    @Test
+    public void testOneOutputPerPalette() throws IOException {
+        final Arguments arguments = this.createArguments();
+        arguments.paletteImagePaths.add(this.createImage("first.png", 0xFFFF0000));
+        arguments.paletteDirectory = this.directory.resolve("palettes").toString();
+        this.createImage("palettes/second.png", 0xFF00FF00);
+        this.createImage("palettes/third.gif", 0xFF0000FF);
+
+        App.processWithPalettes(arguments);
+        Assertions.assertEquals(0xFFFF0000, this.readArgb("output/input-first.png"));
+        Assertions.assertEquals(0xFF00FF00, this.readArgb("output/input-second.png"));
+        Assertions.assertEquals(0xFF0000FF, this.readArgb("output/input-third.png"));
+    }
+
+
+    @Test
+    public void testPalettesWithTheSameNameAreRejected() throws IOException {
+        final Arguments arguments = this.createArguments();
+        arguments.paletteDirectory = this.directory.resolve("palettes").toString();
+        this.createImage("palettes/shared.png", 0xFFFF0000);
+        this.createImage("palettes/Shared.gif", 0xFF00FF00);
+
+        Assertions.assertThrows(IOException.class, () -> App.processWithPalettes(arguments));
+        Assertions.assertFalse(Files.exists(this.directory.resolve("output/input-shared.png")));
+    }
+
+
+    @Test
+    public void testPalettesFromDifferentFoldersWithTheSameNameAreRejected() throws IOException {
+        final Arguments arguments = this.createArguments();
+        arguments.paletteImagePaths.add(this.createImage("a/palette.png", 0xFFFF0000));
+        arguments.paletteImagePaths.add(this.createImage("b/palette.png", 0xFF00FF00));
+
+        Assertions.assertThrows(IOException.class, () -> App.processWithPalettes(arguments));
+        Assertions.assertFalse(Files.exists(this.directory.resolve("output/input-palette.png")));
+    }
+
+
+    @Test
+    public void testAnimatedImagesRejectIndexedOutput() throws IOException {
+        final Arguments arguments = this.createArguments();
+        arguments.paletteImagePaths.add(this.createImage("palette.png", 0xFFFF0000));
+        arguments.outputPath = this.directory.resolve("output.gif").toString();
+        arguments.outputImageType = "gif";
+        arguments.animated = true;
+        Assertions.assertTrue(App.validateArguments(arguments));
+
+        arguments.indexed = true;
+        Assertions.assertFalse(App.validateArguments(arguments));
+    }
+
+
+    private Arguments createArguments() throws IOException {
+        final Arguments arguments = new Arguments();
+        arguments.inputPath = this.createImage("input.png", 0xFF808080);
+        arguments.outputDirectory = this.directory.resolve("output").toString();
+        arguments.threads = 2;
+        return arguments;
+    }
+
+
+    private String createImage(String name, int argb) throws IOException {
+        final Image image = new Image(4, 4, ColorSpace.OKLAB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setArgb(argb, x, y);
+            }
+        }
+        final Path file = this.directory.resolve(name);
+        Files.createDirectories(file.getParent());
+        final String fileName = file.getFileName().toString();
+        image.saveToFile(file.toFile(), fileName.substring(fileName.lastIndexOf('.') + 1));
+        return file.toString();
+    }
+
+
+    private int readArgb(String name) throws IOException {
+        return Image.fromFile(this.directory.resolve(name).toFile(), ColorSpace.OKLAB).getArgb(0, 0);
+    }
+
+}
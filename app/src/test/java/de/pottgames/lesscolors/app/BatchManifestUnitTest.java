@@ -0,0 +1,174 @@
+package de.pottgames.lesscolors.app;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BatchManifestUnitTest {
+    private static final String SETTINGS = "palette=1";
+
+    @TempDir
+    Path directory;
+
+
+    @Test
+    public void testUnchangedInputIsSkipped() throws IOException {
+        final Path input = this.write("a.png", "content");
+        final Path output = this.write("a-out.png", "output");
+        this.process("a.png", input, output);
+
+        final BatchManifest manifest = new BatchManifest(this.manifestFile(), BatchManifestUnitTest.SETTINGS);
+        Assertions.assertNull(manifest.check("a.png", input, output));
+        Assertions.assertNotNull(manifest.check("b.png", input, output));
+    }
+
+
+    @Test
+    public void testDifferentSettingsDiscardManifest() throws IOException {
+        final Path input = this.write("a.png", "content");
+        final Path output = this.write("a-out.png", "output");
+        this.process("a.png", input, output);
+
+        Assertions.assertNotNull(new BatchManifest(this.manifestFile(), "palette=2").check("a.png", input, output));
+    }
+
+
+    @Test
+    public void testModificationTimeOnlyChange() throws IOException {
+        final Path input = this.write("a.png", "content");
+        final Path output = this.write("a-out.png", "output");
+        this.process("a.png", input, output);
+        final FileTime touched = FileTime.fromMillis(Files.getLastModifiedTime(input).toMillis() + 60_000L);
+        Files.setLastModifiedTime(input, touched);
+
+        final BatchManifest manifest = new BatchManifest(this.manifestFile(), BatchManifestUnitTest.SETTINGS);
+        Assertions.assertNull(manifest.check("a.png", input, output));
+        manifest.save();
+        // the new modification time is recorded
+        Assertions.assertTrue(this.readLines().get(2).contains("\t" + touched.toMillis() + "\t"));
+    }
+
+
+    @Test
+    public void testContentChangeWithSameSize() throws IOException {
+        final Path input = this.write("a.png", "content");
+        final Path output = this.write("a-out.png", "output");
+        this.process("a.png", input, output);
+        final FileTime lastModified = Files.getLastModifiedTime(input);
+        this.write("a.png", "CONTENT");
+        Files.setLastModifiedTime(input, FileTime.fromMillis(lastModified.toMillis() + 60_000L));
+
+        Assertions.assertNotNull(new BatchManifest(this.manifestFile(), BatchManifestUnitTest.SETTINGS).check("a.png", input, output));
+    }
+
+
+    @Test
+    public void testSizeChange() throws IOException {
+        final Path input = this.write("a.png", "content");
+        final Path output = this.write("a-out.png", "output");
+        this.process("a.png", input, output);
+        final FileTime lastModified = Files.getLastModifiedTime(input);
+        this.write("a.png", "more content");
+        // the size alone must be enough to notice the change
+        Files.setLastModifiedTime(input, lastModified);
+
+        Assertions.assertNotNull(new BatchManifest(this.manifestFile(), BatchManifestUnitTest.SETTINGS).check("a.png", input, output));
+    }
+
+
+    @Test
+    public void testMissingOutput() throws IOException {
+        final Path input = this.write("a.png", "content");
+        final Path output = this.write("a-out.png", "output");
+        this.process("a.png", input, output);
+        Files.delete(output);
+
+        Assertions.assertNotNull(new BatchManifest(this.manifestFile(), BatchManifestUnitTest.SETTINGS).check("a.png", input, output));
+    }
+
+
+    @Test
+    public void testDamagedLinesAreIgnored() throws IOException {
+        final Path first = this.write("a.png", "first");
+        final Path second = this.write("b.png", "second");
+        final Path output = this.write("out.png", "output");
+        this.processBoth(first, second, output);
+
+        final List<String> lines = this.readLines();
+        lines.set(2, lines.get(2).replaceFirst("\t[0-9]+\t", "\tdamaged\t"));
+        lines.add("c.png\t1\t2");
+        Files.write(this.manifestFile(), lines, StandardCharsets.UTF_8);
+
+        final BatchManifest loaded = new BatchManifest(this.manifestFile(), BatchManifestUnitTest.SETTINGS);
+        Assertions.assertNotNull(loaded.check("a.png", first, output));
+        Assertions.assertNull(loaded.check("b.png", second, output));
+    }
+
+
+    @Test
+    public void testSaveReplacesManifest() throws IOException {
+        final Path first = this.write("a.png", "first");
+        final Path second = this.write("b.png", "second");
+        final Path output = this.write("out.png", "output");
+        this.processBoth(first, second, output);
+
+        // only inputs that were checked or recorded since loading are written again
+        final BatchManifest manifest = new BatchManifest(this.manifestFile(), BatchManifestUnitTest.SETTINGS);
+        Assertions.assertNull(manifest.check("b.png", second, output));
+        manifest.save();
+        final List<String> lines = this.readLines();
+        Assertions.assertEquals(3, lines.size());
+        Assertions.assertTrue(lines.get(2).startsWith("b.png\t"));
+
+        try (Stream<Path> files = Files.list(this.directory)) {
+            final List<String> names = files.map(file -> file.getFileName().toString()).collect(Collectors.toList());
+            Assertions.assertFalse(names.stream().anyMatch(name -> name.endsWith(".tmp")), names.toString());
+        }
+    }
+
+
+    /**
+     * Loads the manifest, records the input as processed and saves the manifest again.
+     */
+    private void process(String key, Path input, Path output) throws IOException {
+        final BatchManifest manifest = new BatchManifest(this.manifestFile(), BatchManifestUnitTest.SETTINGS);
+        final BatchManifest.Fingerprint fingerprint = manifest.check(key, input, output);
+        Assertions.assertNotNull(fingerprint);
+        manifest.record(key, fingerprint);
+        manifest.save();
+    }
+
+
+    private void processBoth(Path first, Path second, Path output) throws IOException {
+        final BatchManifest manifest = new BatchManifest(this.manifestFile(), BatchManifestUnitTest.SETTINGS);
+        manifest.record("a.png", manifest.check("a.png", first, output));
+        manifest.record("b.png", manifest.check("b.png", second, output));
+        manifest.save();
+        Assertions.assertEquals(4, this.readLines().size());
+    }
+
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(this.directory.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    private Path manifestFile() {
+        return this.directory.resolve("manifest.txt");
+    }
+
+
+    private List<String> readLines() throws IOException {
+        return Files.readAllLines(this.manifestFile(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,174 @@
+package de.pottgames.lesscolors.app;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.pottgames.lesscolors.ColorSpace;
+import de.pottgames.lesscolors.Image;
+import de.pottgames.lesscolors.Palette;
+import de.pottgames.lesscolors.PaletteMatcher;
+
+public class BatchProcessorUnitTest {
+    private static final int[] PALETTE_COLORS = { 0xFF000000, 0xFFFFFFFF, 0xFFFF0000 };
+
+    @TempDir
+    Path directory;
+
+
+    @Test
+    public void testProcessesAllInputs() throws IOException {
+        this.createInput("input/a.png");
+        this.createInput("input/b.gif");
+        this.createInput("input/nested/c.png");
+        final Arguments arguments = this.createArguments();
+        arguments.recursive = true;
+
+        final BatchProcessor.Summary summary = BatchProcessorUnitTest.process(arguments);
+        Assertions.assertEquals(3, summary.getProcessed());
+        Assertions.assertEquals(0, summary.getFailed());
+        Assertions.assertEquals(0, summary.getSkipped());
+        this.assertOnlyPaletteColors("output/a.png");
+        this.assertOnlyPaletteColors("output/b.png");
+        this.assertOnlyPaletteColors("output/nested/c.png");
+    }
+
+
+    @Test
+    public void testSubDirectoriesNeedRecursive() throws IOException {
+        this.createInput("input/a.png");
+        this.createInput("input/nested/c.png");
+
+        final BatchProcessor.Summary summary = BatchProcessorUnitTest.process(this.createArguments());
+        Assertions.assertEquals(1, summary.getProcessed());
+        Assertions.assertFalse(Files.exists(this.directory.resolve("output/nested/c.png")));
+    }
+
+
+    @Test
+    public void testUnreadableInputIsCounted() throws IOException {
+        this.createInput("input/a.png");
+        Files.write(this.directory.resolve("input/b.png"), "not an image".getBytes(StandardCharsets.UTF_8));
+
+        final BatchProcessor.Summary summary = BatchProcessorUnitTest.process(this.createArguments());
+        Assertions.assertEquals(1, summary.getProcessed());
+        Assertions.assertEquals(1, summary.getFailed());
+        this.assertOnlyPaletteColors("output/a.png");
+    }
+
+
+    @Test
+    public void testManifestSkipsUnchangedInputs() throws IOException {
+        this.createInput("input/a.png");
+        this.createInput("input/b.png");
+        final Arguments arguments = this.createArguments();
+        arguments.manifestPath = this.directory.resolve("manifest.txt").toString();
+
+        Assertions.assertEquals(2, BatchProcessorUnitTest.process(arguments).getProcessed());
+        final BatchProcessor.Summary summary = BatchProcessorUnitTest.process(arguments);
+        Assertions.assertEquals(0, summary.getProcessed());
+        Assertions.assertEquals(2, summary.getSkipped());
+
+        Files.delete(this.directory.resolve("output/b.png"));
+        final BatchProcessor.Summary rerun = BatchProcessorUnitTest.process(arguments);
+        Assertions.assertEquals(1, rerun.getProcessed());
+        Assertions.assertEquals(1, rerun.getSkipped());
+        this.assertOnlyPaletteColors("output/b.png");
+    }
+
+
+    @Test
+    public void testCollidingOutputsAreRejected() throws IOException {
+        this.createInput("input/a.png");
+        this.createInput("input/a.gif");
+
+        final IOException exception = Assertions.assertThrows(IOException.class, () -> BatchProcessorUnitTest.process(this.createArguments()));
+        Assertions.assertTrue(exception.getMessage().contains("a.gif"));
+        Assertions.assertTrue(exception.getMessage().contains("a.png"));
+        Assertions.assertFalse(Files.exists(this.directory.resolve("output/a.png")));
+    }
+
+
+    @Test
+    public void testErrorsAreCountedAndDoNotStallThePipeline() throws IOException {
+        for (int i = 0; i < 8; i++) {
+            this.createInput("input/" + i + ".png");
+        }
+        final Arguments arguments = this.createArguments();
+        final PaletteMatcher matcher = new PaletteMatcher() {
+            @Override
+            public int findClosestIndex(int argb) {
+                throw new AssertionError("broken matcher");
+            }
+
+
+            @Override
+            public int getArgb(int index) {
+                return BatchProcessorUnitTest.PALETTE_COLORS[index];
+            }
+
+
+            @Override
+            public int size() {
+                return BatchProcessorUnitTest.PALETTE_COLORS.length;
+            }
+        };
+
+        final BatchProcessor.Summary summary = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(30),
+                () -> new BatchProcessor(arguments, matcher).process());
+        Assertions.assertEquals(0, summary.getProcessed());
+        Assertions.assertEquals(8, summary.getFailed());
+    }
+
+
+    private static BatchProcessor.Summary process(Arguments arguments) throws IOException {
+        final Palette palette = new Palette(BatchProcessorUnitTest.PALETTE_COLORS, ColorSpace.valueOf(arguments.colorSpace));
+        return new BatchProcessor(arguments, palette).process();
+    }
+
+
+    private Arguments createArguments() {
+        final Arguments arguments = new Arguments();
+        arguments.inputDirectory = this.directory.resolve("input").toString();
+        arguments.outputDirectory = this.directory.resolve("output").toString();
+        arguments.threads = 2;
+        return arguments;
+    }
+
+
+    private void createInput(String name) throws IOException {
+        final Image image = new Image(16, 16, ColorSpace.OKLAB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setArgb(0xFF000000 | x * 16 << 16 | y * 16 << 8 | (x + y) * 8, x, y);
+            }
+        }
+        final Path file = this.directory.resolve(name);
+        Files.createDirectories(file.getParent());
+        final String fileName = file.getFileName().toString();
+        image.saveToFile(file.toFile(), fileName.substring(fileName.lastIndexOf('.') + 1));
+    }
+
+
+    private void assertOnlyPaletteColors(String name) throws IOException {
+        final Set<Integer> colors = new HashSet<>();
+        for (final int argb : BatchProcessorUnitTest.PALETTE_COLORS) {
+            colors.add(argb);
+        }
+        final Image image = Image.fromFile(this.directory.resolve(name).toFile(), ColorSpace.OKLAB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                Assertions.assertTrue(colors.contains(image.getArgb(x, y)));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+package de.pottgames.lesscolors.app;
+
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.pottgames.lesscolors.ColorSpace;
+import de.pottgames.lesscolors.Image;
+
+public class ServerUnitTest {
+    private static final int[] PALETTE_COLORS = { 0xFF000000, 0xFFFFFFFF, 0xFFFF0000 };
+
+    @TempDir
+    Path directory;
+
+
+    @Test
+    public void testOkAndErrorResponses() throws IOException {
+        final String input = this.createInput("input.png");
+        final String palette = this.createPalette("palette.png");
+        final String output = this.directory.resolve("output.png").toString();
+        final String missing = this.directory.resolve("missing.png").toString();
+
+        final List<String> responses = this.serve(input + "\t" + palette + "\t" + output, missing + "\t" + palette + "\t" + output + ".png");
+        Assertions.assertEquals(2, responses.size());
+        final String[] ok = ServerUnitTest.find(responses, "OK").split("\t");
+        Assertions.assertEquals(4, ok.length);
+        Assertions.assertEquals(input, ok[1]);
+        Assertions.assertEquals(output, ok[2]);
+        Assertions.assertTrue(Double.parseDouble(ok[3]) >= 0.0);
+        ServerUnitTest.assertOnlyPaletteColors(output);
+
+        final String[] error = ServerUnitTest.find(responses, "ERROR").split("\t");
+        Assertions.assertEquals(3, error.length);
+        Assertions.assertEquals(missing, error[1]);
+    }
+
+
+    @Test
+    public void testMalformedLines() throws IOException {
+        final String input = this.createInput("input.png");
+        final String palette = this.createPalette("palette.png");
+        final String output = this.directory.resolve("output.png").toString();
+
+        final List<String> responses = this.serve("", "# a comment", input + "\t" + palette, input + "\t" + palette + "\t" + output + "\tOKLAB\textra",
+                input + "\t" + palette + "\t" + output + "\tNOT_A_COLOR_SPACE");
+        Assertions.assertEquals(3, responses.size());
+        for (final String response : responses) {
+            Assertions.assertTrue(response.startsWith("ERROR\t" + input + "\t"), response);
+        }
+        Assertions.assertFalse(new File(output).exists());
+    }
+
+
+    @Test
+    public void testQuitWaitsForRunningJobs() throws IOException {
+        final String input = this.createInput("input.png");
+        final String palette = this.createPalette("palette.png");
+        final String[] lines = new String[10];
+        for (int i = 0; i < 8; i++) {
+            lines[i] = input + "\t" + palette + "\t" + this.directory.resolve("output" + i + ".png");
+        }
+        lines[8] = "QUIT";
+        lines[9] = input + "\t" + palette + "\t" + this.directory.resolve("ignored.png");
+
+        // serve only returns once every job before QUIT is answered and written
+        final List<String> responses = this.serve(lines);
+        Assertions.assertEquals(8, responses.size());
+        for (int i = 0; i < 8; i++) {
+            Assertions.assertTrue(responses.get(i).startsWith("OK\t"), responses.get(i));
+            ServerUnitTest.assertOnlyPaletteColors(this.directory.resolve("output" + i + ".png").toString());
+        }
+        Assertions.assertFalse(Files.exists(this.directory.resolve("ignored.png")));
+    }
+
+
+    @Test
+    public void testPalettesAreReused() throws IOException {
+        final String input = this.createInput("input.png");
+        final String palette = this.createPalette("palette.png");
+        final Arguments arguments = ServerUnitTest.createArguments();
+        final Server server = new Server(arguments);
+        try {
+            server.preload(palette, ColorSpace.OKLAB);
+            Files.delete(new File(palette).toPath());
+
+            // the preloaded palette doesn't need the file anymore, the same palette in another color space does
+            final String output = this.directory.resolve("output.png").toString();
+            final List<String> responses = ServerUnitTest.serve(server, input + "\t" + palette + "\t" + output,
+                    input + "\t" + palette + "\t" + output + ".png\tRGB");
+            Assertions.assertEquals(2, responses.size());
+            Assertions.assertTrue(ServerUnitTest.find(responses, "OK").contains("\t" + output + "\t"));
+            Assertions.assertNotNull(ServerUnitTest.find(responses, "ERROR"));
+            ServerUnitTest.assertOnlyPaletteColors(output);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+
+    @Test
+    public void testHistogramAndIndexedOutput() throws IOException {
+        final String input = this.createInput("input.png");
+        final String palette = this.createPalette("palette.png");
+        final Arguments arguments = ServerUnitTest.createArguments();
+        arguments.histogram = true;
+        arguments.indexed = true;
+        final Server server = new Server(arguments);
+        try {
+            final String output = this.directory.resolve("output.png").toString();
+            final List<String> responses = ServerUnitTest.serve(server, input + "\t" + palette + "\t" + output);
+            Assertions.assertTrue(responses.get(0).startsWith("OK\t"), responses.get(0));
+            Assertions.assertTrue(ImageIO.read(new File(output)).getColorModel() instanceof IndexColorModel);
+            ServerUnitTest.assertOnlyPaletteColors(output);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+
+    @Test
+    public void testUnsupportedOptionsAreRejected() {
+        final Arguments arguments = ServerUnitTest.createArguments();
+        arguments.serve = true;
+        Assertions.assertTrue(App.validateArguments(arguments));
+        arguments.dither = "floyd-steinberg";
+        Assertions.assertFalse(App.validateArguments(arguments));
+        arguments.dither = null;
+        arguments.stream = true;
+        Assertions.assertFalse(App.validateArguments(arguments));
+        arguments.stream = false;
+        arguments.animated = true;
+        Assertions.assertFalse(App.validateArguments(arguments));
+    }
+
+
+    private List<String> serve(String... lines) throws IOException {
+        final Server server = new Server(ServerUnitTest.createArguments());
+        try {
+            return ServerUnitTest.serve(server, lines);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+
+    private static List<String> serve(Server server, String... lines) throws IOException {
+        final byte[] input = (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        server.serve(new ByteArrayInputStream(input), output);
+        final String text = new String(output.toByteArray(), StandardCharsets.UTF_8);
+        return text.isEmpty() ? Collections.emptyList() : Arrays.asList(text.split("\r?\n"));
+    }
+
+
+    private static Arguments createArguments() {
+        final Arguments arguments = new Arguments();
+        arguments.threads = 2;
+        return arguments;
+    }
+
+
+    private static String find(List<String> responses, String status) {
+        for (final String response : responses) {
+            if (response.startsWith(status + "\t")) {
+                return response;
+            }
+        }
+        return null;
+    }
+
+
+    private String createInput(String name) throws IOException {
+        final Image image = new Image(16, 16, ColorSpace.OKLAB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setArgb(0xFF000000 | x * 16 << 16 | y * 16 << 8 | (x + y) * 8, x, y);
+            }
+        }
+        final File file = this.directory.resolve(name).toFile();
+        image.saveToFile(file, "png");
+        return file.toString();
+    }
+
+
+    private String createPalette(String name) throws IOException {
+        final Image image = new Image(ServerUnitTest.PALETTE_COLORS.length, 1, ColorSpace.OKLAB);
+        for (int x = 0; x < ServerUnitTest.PALETTE_COLORS.length; x++) {
+            image.setArgb(ServerUnitTest.PALETTE_COLORS[x], x, 0);
+        }
+        final File file = this.directory.resolve(name).toFile();
+        image.saveToFile(file, "png");
+        return file.toString();
+    }
+
+
+    private static void assertOnlyPaletteColors(String path) throws IOException {
+        final Set<Integer> colors = new HashSet<>();
+        for (final int argb : ServerUnitTest.PALETTE_COLORS) {
+            colors.add(argb);
+        }
+        final Image image = Image.fromFilePath(path, ColorSpace.OKLAB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                Assertions.assertTrue(colors.contains(image.getArgb(x, y)));
+            }
+        }
+    }
+
+}
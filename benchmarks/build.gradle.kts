@@ -0,0 +1,28 @@
+plugins {
+    id("java")
+    id("me.champeau.jmh") version "0.7.1"
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    jmh(project(":lib"))
+}
+
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(8))
+    }
+}
+
+tasks.withType<JavaCompile> {
+    options.encoding = "UTF-8"
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    profilers.set(listOf("gc"))
+    jvmArgs.set(listOf("-Dlesscolors.media=${rootProject.projectDir.resolve("media").absolutePath}"))
+}
@@ -0,0 +1,134 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.pottgames.lesscolors.Color;
+import de.pottgames.lesscolors.ColorMath;
+import de.pottgames.lesscolors.ColorSpace;
+import de.pottgames.lesscolors.ConversionCache;
+
+/**
+ * Measures the creation of colors and the color distance functions, both through {@link Color} and through the {@link ColorMath} kernels.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColorBenchmark {
+    private static final int SAMPLES = 1024;
+
+    private final int[]           argbs         = new int[ColorBenchmark.SAMPLES];
+    private final Color[]         rgb           = new Color[ColorBenchmark.SAMPLES];
+    private final Color[]         lab           = new Color[ColorBenchmark.SAMPLES];
+    private final Color[]         oklab         = new Color[ColorBenchmark.SAMPLES];
+    private final Color[]         xyz           = new Color[ColorBenchmark.SAMPLES];
+    private final float[]         labComponents = new float[ColorBenchmark.SAMPLES * 3];
+    private final float[]         converted     = new float[3];
+    private final ConversionCache cache         = new ConversionCache(ColorBenchmark.SAMPLES);
+    private int                   cursor        = 0;
+
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42L);
+        for (int i = 0; i < ColorBenchmark.SAMPLES; i++) {
+            this.argbs[i] = random.nextInt();
+            this.rgb[i] = Color.fromARGBInt(this.argbs[i]);
+            this.lab[i] = this.rgb[i].toColorSpace(ColorSpace.LAB);
+            this.oklab[i] = this.rgb[i].toColorSpace(ColorSpace.OKLAB);
+            this.xyz[i] = this.rgb[i].toColorSpace(ColorSpace.XYZ);
+            ColorMath.argbToComponents(this.argbs[i], ColorSpace.LAB, this.labComponents, i * 3);
+        }
+    }
+
+
+    private int next() {
+        this.cursor = this.cursor + 1 & ColorBenchmark.SAMPLES - 1;
+        return this.cursor;
+    }
+
+
+    @Benchmark
+    public Color fromARGBInt() {
+        return Color.fromARGBInt(this.argbs[this.next()]);
+    }
+
+
+    @Benchmark
+    public Color cachedLabConversion() {
+        return this.cache.getColor(this.argbs[this.next()], ColorSpace.LAB);
+    }
+
+
+    @Benchmark
+    public float rgbDistance() {
+        final int i = this.next();
+        return Color.rgbDistance(this.rgb[i], this.rgb[ColorBenchmark.SAMPLES - 1 - i]);
+    }
+
+
+    @Benchmark
+    public float labDistance() {
+        final int i = this.next();
+        return Color.labDistance(this.lab[i], this.lab[ColorBenchmark.SAMPLES - 1 - i]);
+    }
+
+
+    @Benchmark
+    public float oklabDistance() {
+        final int i = this.next();
+        return Color.oklabDistance(this.oklab[i], this.oklab[ColorBenchmark.SAMPLES - 1 - i]);
+    }
+
+
+    @Benchmark
+    public float xyzDistance() {
+        final int i = this.next();
+        return Color.xyzDistance(this.xyz[i], this.xyz[ColorBenchmark.SAMPLES - 1 - i]);
+    }
+
+
+    @Benchmark
+    public float ciede2000Kernel() {
+        final int i = this.next() * 3;
+        final int j = (ColorBenchmark.SAMPLES - 1) * 3 - i;
+        final float[] lab = this.labComponents;
+        return ColorMath.ciede2000(lab[i], lab[i + 1], lab[i + 2], lab[j], lab[j + 1], lab[j + 2]);
+    }
+
+
+    @Benchmark
+    public float[] labConversionKernel() {
+        ColorMath.argbToComponents(this.argbs[this.next()], ColorSpace.LAB, this.converted, 0);
+        return this.converted;
+    }
+
+}
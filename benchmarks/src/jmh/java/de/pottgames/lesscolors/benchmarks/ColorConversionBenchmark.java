@@ -0,0 +1,69 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.pottgames.lesscolors.Color;
+import de.pottgames.lesscolors.ColorSpace;
+
+/**
+ * Measures the conversion of sRGB colors into each color space.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColorConversionBenchmark {
+    private static final int SAMPLES = 1024;
+
+    @Param({ "RGB", "LAB", "OKLAB", "XYZ" })
+    public ColorSpace colorSpace;
+
+    private final Color[] colors = new Color[ColorConversionBenchmark.SAMPLES];
+    private int           cursor = 0;
+
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42L);
+        for (int i = 0; i < ColorConversionBenchmark.SAMPLES; i++) {
+            this.colors[i] = Color.fromARGBInt(random.nextInt());
+        }
+    }
+
+
+    @Benchmark
+    public Color toColorSpace() {
+        this.cursor = this.cursor + 1 & ColorConversionBenchmark.SAMPLES - 1;
+        return this.colors[this.cursor].toColorSpace(this.colorSpace);
+    }
+
+}
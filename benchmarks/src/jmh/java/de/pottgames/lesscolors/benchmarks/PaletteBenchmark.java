@@ -0,0 +1,96 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.pottgames.lesscolors.Color;
+import de.pottgames.lesscolors.ColorSpace;
+import de.pottgames.lesscolors.Image;
+import de.pottgames.lesscolors.Palette;
+
+/**
+ * Measures nearest color queries against palettes of different sizes, both as a linear scan over a palette image and through a {@link Palette}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaletteBenchmark {
+    private static final int SAMPLES = 1024;
+
+    @Param({ "8", "32", "256" })
+    public int paletteSize;
+
+    @Param({ "LAB", "OKLAB" })
+    public ColorSpace colorSpace;
+
+    private final Color[] colors  = new Color[PaletteBenchmark.SAMPLES];
+    private final int[]   argbs   = new int[PaletteBenchmark.SAMPLES];
+    private final float[] scratch = new float[3];
+    private Image         paletteImage;
+    private Palette       palette;
+    private int           cursor  = 0;
+
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42L);
+        this.paletteImage = new Image(this.paletteSize, 1, this.colorSpace);
+        for (int x = 0; x < this.paletteSize; x++) {
+            this.paletteImage.setArgb(random.nextInt() | 0xFF000000, x, 0);
+        }
+        this.palette = Palette.fromImage(this.paletteImage);
+
+        for (int i = 0; i < PaletteBenchmark.SAMPLES; i++) {
+            this.argbs[i] = random.nextInt();
+            this.colors[i] = Color.fromARGBInt(this.argbs[i]).toColorSpace(this.colorSpace);
+        }
+    }
+
+
+    private int next() {
+        this.cursor = this.cursor + 1 & PaletteBenchmark.SAMPLES - 1;
+        return this.cursor;
+    }
+
+
+    @Benchmark
+    public Color imageFindClosestColor() {
+        return this.paletteImage.findClosestColor(this.colors[this.next()]);
+    }
+
+
+    @Benchmark
+    public int paletteFindClosestIndex() {
+        return this.palette.findClosestIndex(this.argbs[this.next()], this.scratch);
+    }
+
+}
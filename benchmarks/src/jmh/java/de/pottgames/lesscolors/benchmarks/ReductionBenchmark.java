@@ -0,0 +1,91 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.pottgames.lesscolors.ColorSpace;
+import de.pottgames.lesscolors.Image;
+import de.pottgames.lesscolors.ImageModifier;
+import de.pottgames.lesscolors.Palette;
+
+/**
+ * Measures the reduction of the images bundled in the media directory to the SLSO8 palette. The media directory is passed in by the build via the
+ * "lesscolors.media" system property.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ReductionBenchmark {
+    private static final String PALETTE = "slso8.png";
+
+    @Param({ "art_by_cainos.png", "widopeakwindowswall.jpg", "josue-michel-OMl0o6TSQXU-unsplash.jpg" })
+    public String imageName;
+
+    @Param({ "LAB", "OKLAB" })
+    public ColorSpace colorSpace;
+
+    private BufferedImage source;
+    private Palette       palette;
+    private Image         image;
+
+
+    @Setup
+    public void setup() throws IOException {
+        final File mediaDirectory = new File(System.getProperty("lesscolors.media", "media"));
+        this.source = ImageIO.read(new File(mediaDirectory, this.imageName));
+        this.palette = Palette.fromFile(new File(mediaDirectory, ReductionBenchmark.PALETTE), this.colorSpace);
+    }
+
+
+    @Setup(Level.Invocation)
+    public void copySource() {
+        this.image = Image.fromBufferedImage(this.source, this.colorSpace);
+    }
+
+
+    @Benchmark
+    public Image reduceColorsByPalette() {
+        return new ImageModifier(this.image).reduceColorsByPalette(this.palette).getImage();
+    }
+
+
+    @Benchmark
+    public Image reduceColorsByHistogram() {
+        return new ImageModifier(this.image).reduceColorsByHistogram(this.palette).getImage();
+    }
+
+}
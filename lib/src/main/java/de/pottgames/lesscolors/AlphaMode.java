@@ -0,0 +1,45 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+/**
+ * The ways {@link ImageModifier} handles the alpha channel when it reduces the colors of an image. Palette colors are always matched by their color alone,
+ * the modes differ in which color is matched and which alpha the result gets. All modes except {@link #IGNORE} leave fully transparent pixels unmatched.
+ */
+public enum AlphaMode {
+    /**
+     * Matches every pixel by its color, no matter its alpha, and replaces it with the palette color including the alpha of the palette color. Fully
+     * transparent pixels usually end up opaque. This is the default.
+     */
+    IGNORE,
+    /**
+     * Matches visible pixels by their color and keeps their alpha. Fully transparent pixels are left as they are.
+     */
+    PRESERVE,
+    /**
+     * Makes pixels with an alpha below the threshold fully transparent and the others opaque, which suits palettes without partial transparency.
+     */
+    THRESHOLD,
+    /**
+     * Blends each pixel over the matte color and matches the opaque result. The image is opaque afterwards.
+     */
+    MATTE,
+    /**
+     * Matches the color multiplied by its alpha, which is the color the pixel adds when it is drawn, and keeps the alpha. Fully transparent pixels are left
+     * as they are.
+     */
+    PREMULTIPLY;
+
+}
@@ -0,0 +1,345 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * The AnimatedImage class holds all frames of an image file, like the frames of an animated GIF, while {@link Image#fromFile(File, ColorSpace)} only reads
+ * the first one. Frames are read and written with the ImageIO reader and writer of the format. For GIF files the position, delay and disposal of each frame
+ * and the loop count are kept, other formats only keep the pixels.
+ * <p>
+ * Frames are stored as they are in the file, so a frame of a GIF may cover only part of the animation and rely on the previous frames showing through its
+ * transparent pixels.
+ */
+public class AnimatedImage {
+    /**
+     * The loop count of animations that repeat endlessly.
+     */
+    public static final int LOOP_FOREVER = 0;
+    /**
+     * The loop count of animations without a loop extension, which most viewers play once.
+     */
+    public static final int NO_LOOP      = -1;
+
+    private static final String GIF = "gif";
+
+    private final int         width;
+    private final int         height;
+    private final List<Frame> frames    = new ArrayList<>();
+    private int               loopCount = AnimatedImage.NO_LOOP;
+
+
+    /**
+     * Loads all frames of an image from a file path and converts them to the specified color space.
+     *
+     * @param path The file path of the image to load.
+     * @param colorSpace The desired color space for the loaded frames.
+     *
+     * @return An AnimatedImage object holding all frames of the image.
+     *
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public static AnimatedImage fromFilePath(String path, ColorSpace colorSpace) throws IOException {
+        Objects.requireNonNull(path);
+
+        return AnimatedImage.fromFile(new File(path), colorSpace);
+    }
+
+
+    /**
+     * Loads all frames of an image from a File object and converts them to the specified color space.
+     *
+     * @param file The File object representing the image file to load.
+     * @param colorSpace The desired color space for the loaded frames.
+     *
+     * @return An AnimatedImage object holding all frames of the image.
+     *
+     * @throws IOException If an error occurs while reading the file.
+     * @throws IllegalArgumentException If the file does not exist.
+     */
+    public static AnimatedImage fromFile(File file, ColorSpace colorSpace) throws IOException {
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(colorSpace);
+        if (!file.exists()) {
+            throw new IllegalArgumentException("file doesn't exist: " + file.getAbsolutePath());
+        }
+
+        try (ImageInputStream stream = ImageIO.createImageInputStream(file)) {
+            if (stream == null) {
+                throw new IOException("can't read file: " + file.getAbsolutePath());
+            }
+            final Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                throw new IOException("unsupported image format: " + file.getAbsolutePath());
+            }
+            final ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, false, false);
+                return AnimatedImage.read(reader, colorSpace);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+
+    private static AnimatedImage read(ImageReader reader, ColorSpace colorSpace) throws IOException {
+        final boolean gif = AnimatedImage.GIF.equalsIgnoreCase(reader.getFormatName());
+        final List<Frame> frames = new ArrayList<>();
+        int loopCount = AnimatedImage.NO_LOOP;
+        final int frameCount = reader.getNumImages(true);
+        for (int i = 0; i < frameCount; i++) {
+            final long startTime = Metrics.startTimer();
+            final BufferedImage source = reader.read(i);
+            Metrics.stopTimer(ProcessingStage.DECODE, startTime, (long) source.getWidth() * source.getHeight());
+
+            final Image image = Image.fromBufferedImage(source, colorSpace);
+            if (gif) {
+                final IIOMetadata metadata = reader.getImageMetadata(i);
+                frames.add(GifMetadata.readFrame(image, metadata));
+                if (i == 0) {
+                    loopCount = GifMetadata.readLoopCount(metadata);
+                }
+            } else {
+                frames.add(new Frame(image));
+            }
+        }
+
+        int width = 0;
+        int height = 0;
+        for (final Frame frame : frames) {
+            width = Math.max(width, frame.getLeft() + frame.getImage().getWidth());
+            height = Math.max(height, frame.getTop() + frame.getImage().getHeight());
+        }
+        final int[] screenSize = gif ? GifMetadata.readScreenSize(reader.getStreamMetadata()) : null;
+        if (screenSize != null) {
+            width = Math.max(width, screenSize[0]);
+            height = Math.max(height, screenSize[1]);
+        }
+
+        final AnimatedImage animation = new AnimatedImage(width, height);
+        frames.forEach(animation::addFrame);
+        animation.setLoopCount(loopCount);
+        return animation;
+    }
+
+
+    /**
+     * Creates an animation without frames.
+     *
+     * @param width The width of the animation.
+     * @param height The height of the animation.
+     */
+    public AnimatedImage(int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("invalid size: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+
+    /**
+     * Appends a frame to the animation.
+     *
+     * @param frame The frame, which must lie within the bounds of the animation.
+     *
+     * @return This AnimatedImage instance.
+     */
+    public AnimatedImage addFrame(Frame frame) {
+        Objects.requireNonNull(frame);
+        if (frame.getLeft() + frame.getImage().getWidth() > this.width || frame.getTop() + frame.getImage().getHeight() > this.height) {
+            throw new IllegalArgumentException("frame exceeds the bounds of the animation");
+        }
+        this.frames.add(frame);
+        return this;
+    }
+
+
+    /**
+     * Returns the frame at the specified position.
+     *
+     * @param index The position of the frame.
+     *
+     * @return the frame
+     */
+    public Frame getFrame(int index) {
+        return this.frames.get(index);
+    }
+
+
+    /**
+     * Returns all frames in the order they are shown.
+     *
+     * @return an unmodifiable list of the frames
+     */
+    public List<Frame> getFrames() {
+        return Collections.unmodifiableList(this.frames);
+    }
+
+
+    /**
+     * Returns the number of frames.
+     *
+     * @return the number of frames
+     */
+    public int getFrameCount() {
+        return this.frames.size();
+    }
+
+
+    /**
+     * Returns the width of the animation.
+     *
+     * @return The width of the animation.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+
+    /**
+     * Returns the height of the animation.
+     *
+     * @return The height of the animation.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+
+    /**
+     * Returns how often the animation is repeated.
+     *
+     * @return the loop count, {@link #LOOP_FOREVER} or {@link #NO_LOOP}
+     */
+    public int getLoopCount() {
+        return this.loopCount;
+    }
+
+
+    /**
+     * Sets how often the animation is repeated. Only GIF files store the loop count.
+     *
+     * @param loopCount The loop count from 1 to 65535, {@link #LOOP_FOREVER} or {@link #NO_LOOP}.
+     *
+     * @return This AnimatedImage instance.
+     */
+    public AnimatedImage setLoopCount(int loopCount) {
+        if (loopCount < AnimatedImage.NO_LOOP || loopCount > 0xFFFF) {
+            throw new IllegalArgumentException("invalid loop count: " + loopCount);
+        }
+        this.loopCount = loopCount;
+        return this;
+    }
+
+
+    /**
+     * Saves all frames to a file with the specified image type. GIF frames are written as indexed images, see {@link Image#toIndexedBufferedImage()}, so each
+     * frame must have at most 256 colors. Formats whose writer can't write sequences, like PNG, only accept animations with a single frame.
+     *
+     * @param file The file to which the frames should be saved.
+     * @param imageType The format of the file (e.g., "GIF").
+     *
+     * @throws IOException If an error occurs while saving the frames, or if the format can't store them.
+     */
+    public void saveToFile(File file, String imageType) throws IOException {
+        Objects.requireNonNull(file);
+        if (this.frames.isEmpty()) {
+            throw new IllegalStateException("the animation has no frames");
+        }
+
+        final long startTime = Metrics.startTimer();
+        final Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(imageType);
+        if (!writers.hasNext()) {
+            throw new IOException("unsupported image format: " + imageType);
+        }
+        final ImageWriter writer = writers.next();
+        final boolean gif = AnimatedImage.GIF.equals(imageType.toLowerCase(Locale.ROOT));
+        if (!gif && this.frames.size() > 1 && !writer.canWriteSequence()) {
+            writer.dispose();
+            throw new IOException("the " + imageType + " format can't store multiple frames");
+        }
+
+        if (file.exists() && !file.delete()) {
+            throw new IOException("can't overwrite file: " + file.getAbsolutePath());
+        }
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(file)) {
+            if (stream == null) {
+                throw new IOException("can't write file: " + file.getAbsolutePath());
+            }
+            writer.setOutput(stream);
+            final ImageWriteParam param = writer.getDefaultWriteParam();
+            if (gif) {
+                this.writeGif(writer, param);
+            } else if (this.frames.size() == 1) {
+                writer.write(this.frames.get(0).getImage().toBufferedImage());
+            } else {
+                writer.prepareWriteSequence(null);
+                for (final Frame frame : this.frames) {
+                    writer.writeToSequence(new IIOImage(frame.getImage().toBufferedImage(), null, null), param);
+                }
+                writer.endWriteSequence();
+            }
+        } finally {
+            writer.dispose();
+        }
+        Metrics.stopTimer(ProcessingStage.ENCODE, startTime, this.getPixelCount());
+    }
+
+
+    private void writeGif(ImageWriter writer, ImageWriteParam param) throws IOException {
+        writer.prepareWriteSequence(GifMetadata.createStreamMetadata(writer, param, this.width, this.height));
+        for (int i = 0; i < this.frames.size(); i++) {
+            final Frame frame = this.frames.get(i);
+            final BufferedImage image = frame.getImage().toIndexedBufferedImage();
+            // the loop extension belongs to the first frame
+            final IIOMetadata metadata = GifMetadata.createFrameMetadata(writer, param, image, frame, i == 0 ? this.loopCount : AnimatedImage.NO_LOOP);
+            writer.writeToSequence(new IIOImage(image, null, metadata), param);
+        }
+        writer.endWriteSequence();
+    }
+
+
+    /**
+     * Returns the number of pixels of all frames.
+     */
+    long getPixelCount() {
+        long pixels = 0L;
+        for (final Frame frame : this.frames) {
+            pixels += (long) frame.getImage().getWidth() * frame.getImage().getHeight();
+        }
+        return pixels;
+    }
+
+}
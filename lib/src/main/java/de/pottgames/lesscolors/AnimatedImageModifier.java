@@ -0,0 +1,263 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The AnimatedImageModifier class reduces the colors of all frames of an {@link AnimatedImage} at once. Consecutive frames of an animation are usually
+ * almost identical, so the work is shared between them:
+ * <ul>
+ * <li>each distinct color is matched against the palette only once for the whole animation</li>
+ * <li>rows that are identical to the same row of the previous frame, at the same position, are not matched again but copied from the reduced previous
+ * frame</li>
+ * </ul>
+ * Fully transparent pixels stay transparent, because GIF frames rely on them to let the previous frames show through. They are all set to the same color,
+ * 0x00000000, so that an indexed frame needs only one transparent color.
+ * <p>
+ * By default all work runs on the calling thread. With {@link #setParallelism(int)} or {@link #setExecutor(ExecutorService)} the frames are processed
+ * concurrently.
+ */
+public class AnimatedImageModifier {
+    /**
+     * The number of distinct colors from which on they are matched concurrently.
+     */
+    private static final int PARALLEL_RESOLVE_THRESHOLD = 4096;
+    private static final int TRANSPARENT                = 0;
+
+    private final AnimatedImage animation;
+    private int                 parallelism = 1;
+    private ExecutorService     executor;
+    private long                reusedRows;
+
+
+    /**
+     * Constructs an AnimatedImageModifier with the specified animation.
+     *
+     * @param animation The animation to be modified.
+     */
+    public AnimatedImageModifier(AnimatedImage animation) {
+        this.animation = Objects.requireNonNull(animation);
+    }
+
+
+    /**
+     * Reduces the number of colors in all frames by replacing each pixel's color with the palette color the matcher considers closest.
+     *
+     * @param matcher The matcher that finds the closest palette color.
+     *
+     * @return This AnimatedImageModifier instance after reducing colors.
+     */
+    public AnimatedImageModifier reduceColors(PaletteMatcher matcher) {
+        if (matcher.size() == 0) {
+            throw new IllegalArgumentException("palette must contain at least one color");
+        }
+
+        final long startTime = Metrics.startTimer();
+        final List<Frame> frames = this.animation.getFrames();
+        final int frameCount = frames.size();
+
+        // 1. find the rows that repeat the previous frame, before any frame is modified
+        final boolean[][] repeated = new boolean[frameCount][];
+        RowBands.process(frameCount, this.parallelism, this.executor, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                repeated[i] = AnimatedImageModifier.findRepeatedRows(frames, i);
+            }
+        });
+        // a row is copied from the last frame in the chain of repeats that actually has to be matched
+        final int[][] sourceFrames = new int[frameCount][];
+        long reused = 0L;
+        for (int i = 0; i < frameCount; i++) {
+            sourceFrames[i] = new int[frames.get(i).getImage().getHeight()];
+            for (int y = 0; y < sourceFrames[i].length; y++) {
+                sourceFrames[i][y] = repeated[i][y] ? sourceFrames[i - 1][y] : i;
+                reused += repeated[i][y] ? 1 : 0;
+            }
+        }
+
+        // 2. collect and match the distinct colors of all rows that aren't copied
+        final ArgbIntMap[] frameColors = new ArgbIntMap[frameCount];
+        RowBands.process(frameCount, this.parallelism, this.executor, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                frameColors[i] = AnimatedImageModifier.collectColors(frames.get(i).getImage(), repeated[i]);
+            }
+        });
+        final ArgbIntMap distinct = new ArgbIntMap(frameColors.length == 0 ? 0 : frameColors[0].size());
+        for (final ArgbIntMap colors : frameColors) {
+            for (final int argb : colors.keys()) {
+                distinct.put(argb, 0);
+            }
+        }
+        final int[] colors = distinct.keys();
+        final int[] replacements = new int[colors.length];
+        final RowBands.Task resolve = (from, to) -> {
+            final float[] scratch = new float[3];
+            for (int i = from; i < to; i++) {
+                replacements[i] = matcher.getArgb(matcher.findClosestIndex(colors[i], scratch));
+            }
+        };
+        if (colors.length >= AnimatedImageModifier.PARALLEL_RESOLVE_THRESHOLD) {
+            RowBands.process(colors.length, this.parallelism, this.executor, resolve);
+        } else {
+            resolve.process(0, colors.length);
+        }
+        final ArgbIntMap mapping = new ArgbIntMap(colors.length);
+        for (int i = 0; i < colors.length; i++) {
+            mapping.put(colors[i], replacements[i]);
+        }
+
+        // 3. replace the matched rows, then copy the repeated ones from the frames they were matched in
+        RowBands.process(frameCount, this.parallelism, this.executor, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                AnimatedImageModifier.replaceRows(frames.get(i).getImage(), repeated[i], mapping);
+            }
+        });
+        RowBands.process(frameCount, this.parallelism, this.executor, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                AnimatedImageModifier.copyRows(frames, i, sourceFrames[i]);
+            }
+        });
+
+        this.reusedRows = reused;
+        final long pixelCount = this.animation.getPixelCount();
+        Metrics.countCacheHits(pixelCount - colors.length);
+        Metrics.countCacheMisses(colors.length);
+        Metrics.stopTimer(ProcessingStage.MATCH, startTime, pixelCount);
+        return this;
+    }
+
+
+    private static boolean[] findRepeatedRows(List<Frame> frames, int index) {
+        final Frame frame = frames.get(index);
+        final int[] pixels = frame.getImage().getPixels();
+        final int width = frame.getImage().getWidth();
+        final boolean[] repeated = new boolean[frame.getImage().getHeight()];
+        if (index == 0 || !frame.hasSameBounds(frames.get(index - 1))) {
+            return repeated;
+        }
+
+        final int[] previousPixels = frames.get(index - 1).getImage().getPixels();
+        for (int y = 0; y < repeated.length; y++) {
+            final int rowStart = y * width;
+            boolean equal = true;
+            for (int x = rowStart; x < rowStart + width && equal; x++) {
+                equal = pixels[x] == previousPixels[x];
+            }
+            repeated[y] = equal;
+        }
+        return repeated;
+    }
+
+
+    private static ArgbIntMap collectColors(Image image, boolean[] repeated) {
+        final int[] pixels = image.getPixels();
+        final int width = image.getWidth();
+        final ArgbIntMap colors = new ArgbIntMap(256);
+        int lastArgb = AnimatedImageModifier.TRANSPARENT;
+        for (int y = 0; y < repeated.length; y++) {
+            if (repeated[y]) {
+                continue;
+            }
+            for (int x = y * width; x < (y + 1) * width; x++) {
+                final int argb = pixels[x];
+                if (argb != lastArgb && argb >>> 24 != 0) {
+                    colors.put(argb, 0);
+                    lastArgb = argb;
+                }
+            }
+        }
+        return colors;
+    }
+
+
+    private static void replaceRows(Image image, boolean[] repeated, ArgbIntMap mapping) {
+        final int[] pixels = image.getPixels();
+        final int width = image.getWidth();
+        for (int y = 0; y < repeated.length; y++) {
+            if (repeated[y]) {
+                continue;
+            }
+            for (int x = y * width; x < (y + 1) * width; x++) {
+                final int argb = pixels[x];
+                pixels[x] = argb >>> 24 == 0 ? AnimatedImageModifier.TRANSPARENT : mapping.get(argb, argb);
+            }
+        }
+    }
+
+
+    private static void copyRows(List<Frame> frames, int index, int[] sourceFrames) {
+        final Image image = frames.get(index).getImage();
+        final int width = image.getWidth();
+        for (int y = 0; y < sourceFrames.length; y++) {
+            if (sourceFrames[y] != index) {
+                System.arraycopy(frames.get(sourceFrames[y]).getImage().getPixels(), y * width, image.getPixels(), y * width, width);
+            }
+        }
+    }
+
+
+    /**
+     * Sets the number of threads used by the modifications. Unless an executor is set, a fork-join pool with this many threads is created for each step of a
+     * modification. The default is 1, which processes the frames on the calling thread.
+     *
+     * @param parallelism The number of threads, at least 1.
+     *
+     * @return This AnimatedImageModifier instance.
+     */
+    public AnimatedImageModifier setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+
+    /**
+     * Sets the executor the modifications run on. The executor is not shut down by this class. The parallelism determines into how many groups the frames
+     * are split. Pass null to go back to using a fork-join pool.
+     *
+     * @param executor The executor or null.
+     *
+     * @return This AnimatedImageModifier instance.
+     */
+    public AnimatedImageModifier setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+
+    /**
+     * Returns the number of rows the last reduction copied from the previous frame instead of matching them again.
+     *
+     * @return the number of reused rows
+     */
+    public long getReusedRowCount() {
+        return this.reusedRows;
+    }
+
+
+    /**
+     * Returns the modified animation.
+     *
+     * @return The modified AnimatedImage object.
+     */
+    public AnimatedImage getAnimatedImage() {
+        return this.animation;
+    }
+
+}
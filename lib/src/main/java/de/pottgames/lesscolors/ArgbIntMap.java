@@ -0,0 +1,204 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+/**
+ * A hash map from ARGB colors to int values that stores keys and values in primitive arrays, using open addressing with linear probing. Every int is a
+ * valid key, the key 0 (transparent black) is kept outside of the table because 0 marks free slots.
+ * <p>
+ * The map is not thread-safe, but once it is no longer modified it may be read from any number of threads.
+ */
+final class ArgbIntMap {
+    private static final int   MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR  = 0.5f;
+
+    private int[]   keys;
+    private int[]   values;
+    private int     mask;
+    private int     size;
+    private boolean hasZeroKey;
+    private int     zeroValue;
+
+
+    /**
+     * Creates a map that holds the specified number of entries without growing.
+     *
+     * @param expectedSize The expected number of entries.
+     */
+    ArgbIntMap(int expectedSize) {
+        this.allocate(ArgbIntMap.capacityFor(expectedSize));
+    }
+
+
+    /**
+     * Returns the value of the specified key.
+     *
+     * @param key The key.
+     * @param defaultValue The value returned if the key is not in the map.
+     *
+     * @return The value of the key or the default value.
+     */
+    int get(int key, int defaultValue) {
+        if (key == 0) {
+            return this.hasZeroKey ? this.zeroValue : defaultValue;
+        }
+
+        for (int slot = ArgbIntMap.hash(key) & this.mask;; slot = slot + 1 & this.mask) {
+            final int current = this.keys[slot];
+            if (current == key) {
+                return this.values[slot];
+            }
+            if (current == 0) {
+                return defaultValue;
+            }
+        }
+    }
+
+
+    /**
+     * Associates the value with the key, replacing any previous value.
+     *
+     * @param key The key.
+     * @param value The value.
+     */
+    void put(int key, int value) {
+        if (key == 0) {
+            this.size += this.hasZeroKey ? 0 : 1;
+            this.hasZeroKey = true;
+            this.zeroValue = value;
+            return;
+        }
+
+        final int slot = this.findSlot(key);
+        if (this.keys[slot] == 0) {
+            this.insert(slot, key, value);
+        } else {
+            this.values[slot] = value;
+        }
+    }
+
+
+    /**
+     * Adds to the value of the key. Keys that are not in the map start at 0.
+     *
+     * @param key The key.
+     * @param delta The amount to add.
+     */
+    void add(int key, int delta) {
+        if (key == 0) {
+            this.size += this.hasZeroKey ? 0 : 1;
+            this.zeroValue = this.hasZeroKey ? this.zeroValue + delta : delta;
+            this.hasZeroKey = true;
+            return;
+        }
+
+        final int slot = this.findSlot(key);
+        if (this.keys[slot] == 0) {
+            this.insert(slot, key, delta);
+        } else {
+            this.values[slot] += delta;
+        }
+    }
+
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    int size() {
+        return this.size;
+    }
+
+
+    /**
+     * Returns all keys in no particular order.
+     *
+     * @return A new array holding the keys.
+     */
+    int[] keys() {
+        final int[] result = new int[this.size];
+        int count = 0;
+        if (this.hasZeroKey) {
+            result[count++] = 0;
+        }
+        for (final int key : this.keys) {
+            if (key != 0) {
+                result[count++] = key;
+            }
+        }
+        return result;
+    }
+
+
+    private int findSlot(int key) {
+        int slot = ArgbIntMap.hash(key) & this.mask;
+        while (this.keys[slot] != 0 && this.keys[slot] != key) {
+            slot = slot + 1 & this.mask;
+        }
+        return slot;
+    }
+
+
+    private void insert(int slot, int key, int value) {
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        this.size++;
+        if (this.size > this.keys.length * ArgbIntMap.LOAD_FACTOR) {
+            this.rehash();
+        }
+    }
+
+
+    private void rehash() {
+        final int[] oldKeys = this.keys;
+        final int[] oldValues = this.values;
+        this.allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            final int key = oldKeys[i];
+            if (key != 0) {
+                final int slot = this.findSlot(key);
+                this.keys[slot] = key;
+                this.values[slot] = oldValues[i];
+            }
+        }
+    }
+
+
+    private void allocate(int capacity) {
+        this.keys = new int[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+
+    private static int capacityFor(int expectedSize) {
+        final long needed = (long) Math.ceil(Math.max(expectedSize, 1) / ArgbIntMap.LOAD_FACTOR) + 1;
+        if (needed > 1 << 30) {
+            return 1 << 30;
+        }
+        return Math.max(ArgbIntMap.MIN_CAPACITY, Integer.highestOneBit((int) needed - 1) << 1);
+    }
+
+
+    /**
+     * Spreads the bits of the color so that similar colors don't end up in neighboring slots.
+     */
+    private static int hash(int key) {
+        final int hash = key * 0x9E3779B9;
+        return hash ^ hash >>> 16;
+    }
+
+}
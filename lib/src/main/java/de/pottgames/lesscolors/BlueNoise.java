@@ -0,0 +1,131 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.util.Random;
+
+/**
+ * Generates blue noise threshold tiles with the void-and-cluster method by Robert Ulichney. Pixels are ranked one by one, always picking the pixel in the
+ * largest gap between the already ranked pixels, which spreads the pixels of each threshold level evenly over the tile. The tile wraps around at its edges.
+ */
+final class BlueNoise {
+    private static final double SIGMA         = 1.5;
+    private static final double INITIAL_SHARE = 0.1;
+    private static final long   SEED          = 0x4C657373436F6CL;
+
+
+    private BlueNoise() {
+    }
+
+
+    /**
+     * Ranks the pixels of a square tile.
+     *
+     * @param size The width and height of the tile.
+     *
+     * @return The rank of each pixel, row by row, a permutation of 0 to size * size - 1.
+     */
+    static int[] generateRanks(int size) {
+        final int count = size * size;
+        final float[] kernel = BlueNoise.gaussianKernel(size);
+
+        // start with a random pattern and move its densest points into its largest gaps until it is evenly spread
+        final boolean[] pattern = new boolean[count];
+        final float[] energy = new float[count];
+        final Random random = new Random(BlueNoise.SEED);
+        final int initialPoints = Math.max(1, (int) (count * BlueNoise.INITIAL_SHARE));
+        for (int placed = 0; placed < initialPoints;) {
+            final int pixel = random.nextInt(count);
+            if (!pattern[pixel]) {
+                BlueNoise.set(pattern, energy, kernel, size, pixel, true);
+                placed++;
+            }
+        }
+        for (int iteration = 0; iteration < count; iteration++) {
+            final int cluster = BlueNoise.find(pattern, energy, true);
+            BlueNoise.set(pattern, energy, kernel, size, cluster, false);
+            final int gap = BlueNoise.find(pattern, energy, false);
+            BlueNoise.set(pattern, energy, kernel, size, gap, true);
+            if (gap == cluster) {
+                break;
+            }
+        }
+
+        final int[] ranks = new int[count];
+
+        // the points of the initial pattern are ranked by removing the densest one until none are left
+        final boolean[] removal = pattern.clone();
+        final float[] removalEnergy = energy.clone();
+        for (int rank = initialPoints - 1; rank >= 0; rank--) {
+            final int cluster = BlueNoise.find(removal, removalEnergy, true);
+            BlueNoise.set(removal, removalEnergy, kernel, size, cluster, false);
+            ranks[cluster] = rank;
+        }
+
+        // all other pixels are ranked by filling the largest gap until the tile is full
+        for (int rank = initialPoints; rank < count; rank++) {
+            final int gap = BlueNoise.find(pattern, energy, false);
+            BlueNoise.set(pattern, energy, kernel, size, gap, true);
+            ranks[gap] = rank;
+        }
+
+        return ranks;
+    }
+
+
+    /**
+     * Returns the pixel with the highest energy among the set pixels, or with the lowest energy among the unset pixels.
+     */
+    private static int find(boolean[] pattern, float[] energy, boolean densest) {
+        int result = -1;
+        for (int i = 0; i < pattern.length; i++) {
+            if (pattern[i] == densest && (result < 0 || (densest ? energy[i] > energy[result] : energy[i] < energy[result]))) {
+                result = i;
+            }
+        }
+        return result;
+    }
+
+
+    private static void set(boolean[] pattern, float[] energy, float[] kernel, int size, int pixel, boolean value) {
+        pattern[pixel] = value;
+        final float sign = value ? 1f : -1f;
+        final int px = pixel % size;
+        final int py = pixel / size;
+        for (int y = 0; y < size; y++) {
+            final int dy = Math.floorMod(y - py, size);
+            for (int x = 0; x < size; x++) {
+                energy[y * size + x] += sign * kernel[dy * size + Math.floorMod(x - px, size)];
+            }
+        }
+    }
+
+
+    /**
+     * Returns the Gaussian weight of every offset within the tile, taking the shorter way around the edges.
+     */
+    private static float[] gaussianKernel(int size) {
+        final float[] kernel = new float[size * size];
+        for (int dy = 0; dy < size; dy++) {
+            for (int dx = 0; dx < size; dx++) {
+                final int wrappedX = Math.min(dx, size - dx);
+                final int wrappedY = Math.min(dy, size - dy);
+                kernel[dy * size + dx] = (float) Math.exp(-(wrappedX * wrappedX + wrappedY * wrappedY) / (2.0 * BlueNoise.SIGMA * BlueNoise.SIGMA));
+            }
+        }
+        return kernel;
+    }
+
+}
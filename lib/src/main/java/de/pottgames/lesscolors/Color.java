@@ -144,6 +144,32 @@ public class Color {
     }
 
 
+    /**
+     * Returns the three color components of this color in its own color space, e.g. r, g, b for RGB or L, a, b for LAB. Alpha is not included.
+     *
+     * @return a new array holding the three color components
+     */
+    float[] getComponents() {
+        if (this.color instanceof RGB) {
+            final RGB rgb = (RGB) this.color;
+            return new float[] { rgb.getR(), rgb.getG(), rgb.getB() };
+        }
+        if (this.color instanceof Oklab) {
+            final Oklab oklab = (Oklab) this.color;
+            return new float[] { oklab.getL(), oklab.getA(), oklab.getB() };
+        }
+        if (this.color instanceof LAB) {
+            final LAB lab = (LAB) this.color;
+            return new float[] { lab.getL(), lab.getA(), lab.getB() };
+        }
+        if (this.color instanceof XYZ) {
+            final XYZ xyz = (XYZ) this.color;
+            return new float[] { xyz.getX(), xyz.getY(), xyz.getZ() };
+        }
+        throw new IllegalStateException("Unsupported color model: " + this.color);
+    }
+
+
     /**
      * Calculates the color distance between this color and another color using the color space of this color.
      *
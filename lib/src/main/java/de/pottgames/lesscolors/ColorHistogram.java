@@ -0,0 +1,120 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The ColorHistogram class counts how often each distinct ARGB color appears in an image. Images often contain far fewer distinct colors than pixels, so
+ * matching each distinct color once and remapping the pixels afterwards saves most of the palette searches, see
+ * {@link ImageModifier#reduceColorsByHistogram(PaletteMatcher)}.
+ */
+public final class ColorHistogram {
+    private final ArgbIntMap counts;
+    private final long       pixelCount;
+
+
+    /**
+     * Counts the colors of an image.
+     *
+     * @param image The image to count the colors of.
+     *
+     * @return The histogram of the image.
+     */
+    public static ColorHistogram of(Image image) {
+        Objects.requireNonNull(image);
+
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final ArgbIntMap counts = new ArgbIntMap(256);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                counts.add(image.getArgb(x, y), 1);
+            }
+        }
+        return new ColorHistogram(counts, (long) width * height);
+    }
+
+
+    private ColorHistogram(ArgbIntMap counts, long pixelCount) {
+        this.counts = counts;
+        this.pixelCount = pixelCount;
+    }
+
+
+    /**
+     * Returns how often a color appears in the image.
+     *
+     * @param argb The color in ARGB format.
+     *
+     * @return The number of pixels with this color.
+     */
+    public int getCount(int argb) {
+        return this.counts.get(argb, 0);
+    }
+
+
+    /**
+     * Returns the distinct colors of the image in no particular order.
+     *
+     * @return A new array holding the distinct colors in ARGB format.
+     */
+    public int[] getColors() {
+        return this.counts.keys();
+    }
+
+
+    /**
+     * Returns the number of distinct colors in the image.
+     *
+     * @return the number of distinct colors
+     */
+    public int getUniqueColorCount() {
+        return this.counts.size();
+    }
+
+
+    /**
+     * Returns the number of pixels in the image.
+     *
+     * @return the number of pixels
+     */
+    public long getPixelCount() {
+        return this.pixelCount;
+    }
+
+
+    /**
+     * Returns the share of pixels whose color already appeared earlier in the image. When the colors are matched by the histogram, this is the share of
+     * pixels that is resolved by a single map lookup instead of a palette search.
+     *
+     * @return The hit ratio between 0 and 1.
+     */
+    public double getHitRatio() {
+        if (this.pixelCount == 0) {
+            return 0.0;
+        }
+        return (double) (this.pixelCount - this.counts.size()) / this.pixelCount;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d pixels, %d unique colors, hit ratio %.2f%%", this.pixelCount, this.getUniqueColorCount(),
+                this.getHitRatio() * 100.0);
+    }
+
+}
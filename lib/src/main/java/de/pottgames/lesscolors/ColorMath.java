@@ -0,0 +1,424 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+/**
+ * Allocation-free color conversion and color distance kernels that work on primitive components. They mirror the conversions and distance functions of
+ * {@link Color}, which delegate to colormath, but neither box nor allocate, so they can be called for every pixel of an image. Results agree with colormath
+ * to within 2e-2 for CIEDE2000 and 1e-4 for the other conversions and distances, not bit for bit.
+ * <p>
+ * Components are always written as three floats per color: r, g, b in the range 0 to 1 for RGB, X, Y, Z for XYZ (D65), L, a, b for LAB (D65) and L, a, b for
+ * Oklab. Alpha is never part of the components.
+ */
+public final class ColorMath {
+    static final double         WHITE_X     = 0.3127 / 0.3290;
+    static final double         WHITE_Z     = (1.0 - 0.3127 - 0.3290) / 0.3290;
+    private static final double LAB_EPSILON = 216.0 / 24389.0;
+    private static final double LAB_KAPPA   = 24389.0 / 27.0;
+    private static final double POW_25_7    = 6103515625.0;
+
+    private static final float[] SRGB_TO_LINEAR = new float[256];
+
+    static {
+        for (int i = 0; i < ColorMath.SRGB_TO_LINEAR.length; i++) {
+            ColorMath.SRGB_TO_LINEAR[i] = (float) ColorMath.srgbToLinear(i / 255.0);
+        }
+    }
+
+
+    private ColorMath() {
+    }
+
+
+    /**
+     * Converts an 8-bit sRGB channel value to linear light.
+     *
+     * @param channel The channel value (0-255).
+     *
+     * @return The linear channel value (0.0-1.0).
+     */
+    public static float srgbToLinear(int channel) {
+        return ColorMath.SRGB_TO_LINEAR[channel & 0xFF];
+    }
+
+
+    /**
+     * Converts a gamma encoded sRGB channel value to linear light.
+     *
+     * @param channel The channel value (0.0-1.0).
+     *
+     * @return The linear channel value.
+     */
+    public static double srgbToLinear(double channel) {
+        return channel <= 0.04045 ? channel / 12.92 : Math.pow((channel + 0.055) / 1.055, 2.4);
+    }
+
+
+    /**
+     * Converts an ARGB color to the components of the specified color space.
+     *
+     * @param argb The ARGB color.
+     * @param colorSpace The target color space.
+     * @param destination The array the three components are written to.
+     * @param offset The index of the first component in the destination array.
+     */
+    public static void argbToComponents(int argb, ColorSpace colorSpace, float[] destination, int offset) {
+        switch (colorSpace) {
+            case RGB:
+                destination[offset] = (argb >>> 16 & 0xFF) / 255f;
+                destination[offset + 1] = (argb >>> 8 & 0xFF) / 255f;
+                destination[offset + 2] = (argb & 0xFF) / 255f;
+                return;
+            case XYZ:
+                ColorMath.linearRgbToXyz(ColorMath.srgbToLinear(argb >>> 16), ColorMath.srgbToLinear(argb >>> 8), ColorMath.srgbToLinear(argb), destination,
+                        offset);
+                return;
+            case LAB:
+                ColorMath.linearRgbToXyz(ColorMath.srgbToLinear(argb >>> 16), ColorMath.srgbToLinear(argb >>> 8), ColorMath.srgbToLinear(argb), destination,
+                        offset);
+                ColorMath.xyzToLab(destination[offset], destination[offset + 1], destination[offset + 2], destination, offset);
+                return;
+            case OKLAB:
+                ColorMath.linearRgbToOklab(ColorMath.srgbToLinear(argb >>> 16), ColorMath.srgbToLinear(argb >>> 8), ColorMath.srgbToLinear(argb), destination,
+                        offset);
+                return;
+        }
+        throw new IllegalArgumentException("Invalid ColorSpace: " + colorSpace);
+    }
+
+
+    /**
+     * Converts linear sRGB to CIE XYZ (D65).
+     *
+     * @param r The linear red component.
+     * @param g The linear green component.
+     * @param b The linear blue component.
+     * @param destination The array X, Y and Z are written to.
+     * @param offset The index of X in the destination array.
+     */
+    public static void linearRgbToXyz(float r, float g, float b, float[] destination, int offset) {
+        destination[offset] = 0.4123908f * r + 0.3575843f * g + 0.1804808f * b;
+        destination[offset + 1] = 0.2126390f * r + 0.7151687f * g + 0.0721923f * b;
+        destination[offset + 2] = 0.0193308f * r + 0.1191948f * g + 0.9505322f * b;
+    }
+
+
+    /**
+     * Converts CIE XYZ (D65) to CIE LAB (D65).
+     *
+     * @param x The X component.
+     * @param y The Y component.
+     * @param z The Z component.
+     * @param destination The array L, a and b are written to.
+     * @param offset The index of L in the destination array.
+     */
+    public static void xyzToLab(float x, float y, float z, float[] destination, int offset) {
+        final double fx = ColorMath.labF(x / ColorMath.WHITE_X);
+        final double fy = ColorMath.labF(y);
+        final double fz = ColorMath.labF(z / ColorMath.WHITE_Z);
+        destination[offset] = (float) (116.0 * fy - 16.0);
+        destination[offset + 1] = (float) (500.0 * (fx - fy));
+        destination[offset + 2] = (float) (200.0 * (fy - fz));
+    }
+
+
+    private static double labF(double t) {
+        return t > ColorMath.LAB_EPSILON ? Math.cbrt(t) : (ColorMath.LAB_KAPPA * t + 16.0) / 116.0;
+    }
+
+
+    /**
+     * Converts linear sRGB to Oklab.
+     *
+     * @param r The linear red component.
+     * @param g The linear green component.
+     * @param b The linear blue component.
+     * @param destination The array L, a and b are written to.
+     * @param offset The index of L in the destination array.
+     */
+    public static void linearRgbToOklab(float r, float g, float b, float[] destination, int offset) {
+        final double l = Math.cbrt(0.4122214708 * r + 0.5363325363 * g + 0.0514459929 * b);
+        final double m = Math.cbrt(0.2119034982 * r + 0.6806995451 * g + 0.1073969566 * b);
+        final double s = Math.cbrt(0.0883024619 * r + 0.2817188376 * g + 0.6299787005 * b);
+        destination[offset] = (float) (0.2104542553 * l + 0.7936177850 * m - 0.0040720468 * s);
+        destination[offset + 1] = (float) (1.9779984951 * l - 2.4285922050 * m + 0.4505937099 * s);
+        destination[offset + 2] = (float) (0.0259040371 * l + 0.7827717662 * m - 0.8086757660 * s);
+    }
+
+
+    /**
+     * Converts the components of the specified color space back to an opaque ARGB color, the inverse of
+     * {@link #argbToComponents(int, ColorSpace, float[], int)}. Components outside of the sRGB gamut are clamped.
+     *
+     * @param colorSpace The color space of the components.
+     * @param c1 The first component.
+     * @param c2 The second component.
+     * @param c3 The third component.
+     *
+     * @return The ARGB color.
+     */
+    public static int componentsToArgb(ColorSpace colorSpace, float c1, float c2, float c3) {
+        switch (colorSpace) {
+            case RGB:
+                return 0xFF000000 | ColorMath.toChannel(c1) << 16 | ColorMath.toChannel(c2) << 8 | ColorMath.toChannel(c3);
+            case XYZ:
+                return ColorMath.xyzToArgb(c1, c2, c3);
+            case LAB:
+                return ColorMath.labToArgb(c1, c2, c3);
+            case OKLAB:
+                return ColorMath.oklabToArgb(c1, c2, c3);
+        }
+        throw new IllegalArgumentException("Invalid ColorSpace: " + colorSpace);
+    }
+
+
+    private static int labToArgb(double lightness, double a, double b) {
+        final double fy = (lightness + 16.0) / 116.0;
+        final double x = ColorMath.WHITE_X * ColorMath.labFInverse(fy + a / 500.0);
+        final double y = ColorMath.labFInverse(fy);
+        final double z = ColorMath.WHITE_Z * ColorMath.labFInverse(fy - b / 200.0);
+        return ColorMath.xyzToArgb(x, y, z);
+    }
+
+
+    private static int oklabToArgb(double lightness, double a, double b) {
+        final double l = ColorMath.cube(lightness + 0.3963377774 * a + 0.2158037573 * b);
+        final double m = ColorMath.cube(lightness - 0.1055613458 * a - 0.0638541728 * b);
+        final double s = ColorMath.cube(lightness - 0.0894841775 * a - 1.2914855480 * b);
+        return ColorMath.linearRgbToArgb(4.0767416621 * l - 3.3077115913 * m + 0.2309699292 * s, -1.2684380046 * l + 2.6097574011 * m - 0.3413193965 * s,
+                -0.0041960863 * l - 0.7034186147 * m + 1.7076147010 * s);
+    }
+
+
+    private static int xyzToArgb(double x, double y, double z) {
+        return ColorMath.linearRgbToArgb(3.2409699 * x - 1.5373832 * y - 0.4986108 * z, -0.9692436 * x + 1.8759675 * y + 0.0415551 * z,
+                0.0556301 * x - 0.2039770 * y + 1.0569715 * z);
+    }
+
+
+    private static int linearRgbToArgb(double r, double g, double b) {
+        return 0xFF000000 | ColorMath.toChannel(ColorMath.linearToSrgb(r)) << 16 | ColorMath.toChannel(ColorMath.linearToSrgb(g)) << 8
+                | ColorMath.toChannel(ColorMath.linearToSrgb(b));
+    }
+
+
+    private static double linearToSrgb(double channel) {
+        return channel <= 0.0031308 ? channel * 12.92 : 1.055 * Math.pow(channel, 1.0 / 2.4) - 0.055;
+    }
+
+
+    private static int toChannel(double value) {
+        return (int) Math.round(Math.max(0.0, Math.min(1.0, value)) * 255.0);
+    }
+
+
+    private static double labFInverse(double f) {
+        final double cube = f * f * f;
+        return cube > ColorMath.LAB_EPSILON ? cube : (116.0 * f - 16.0) / ColorMath.LAB_KAPPA;
+    }
+
+
+    private static double cube(double value) {
+        return value * value * value;
+    }
+
+
+    /**
+     * Calculates the distance between two colors given by their components in the specified color space. This is the Euclidean distance for RGB, OKLAB and
+     * XYZ and CIEDE2000 for LAB, just like {@link Color#distance(Color, ColorSpace)}.
+     *
+     * @param colorSpace The color space of the components.
+     * @param c1 The first component of the first color.
+     * @param c2 The second component of the first color.
+     * @param c3 The third component of the first color.
+     * @param d1 The first component of the second color.
+     * @param d2 The second component of the second color.
+     * @param d3 The third component of the second color.
+     *
+     * @return The color distance.
+     */
+    public static float distance(ColorSpace colorSpace, float c1, float c2, float c3, float d1, float d2, float d3) {
+        if (colorSpace == ColorSpace.LAB) {
+            return ColorMath.ciede2000(c1, c2, c3, d1, d2, d3);
+        }
+        return ColorMath.euclideanDistance(c1, c2, c3, d1, d2, d3);
+    }
+
+
+    /**
+     * Calculates the Euclidean distance between two colors.
+     *
+     * @param c1 The first component of the first color.
+     * @param c2 The second component of the first color.
+     * @param c3 The third component of the first color.
+     * @param d1 The first component of the second color.
+     * @param d2 The second component of the second color.
+     * @param d3 The third component of the second color.
+     *
+     * @return The Euclidean distance.
+     */
+    public static float euclideanDistance(float c1, float c2, float c3, float d1, float d2, float d3) {
+        return (float) Math.sqrt(ColorMath.squaredDistance(c1, c2, c3, d1, d2, d3));
+    }
+
+
+    /**
+     * Calculates the squared Euclidean distance between two colors. Cheaper than {@link #euclideanDistance} and ranks colors the same way.
+     *
+     * @param c1 The first component of the first color.
+     * @param c2 The second component of the first color.
+     * @param c3 The third component of the first color.
+     * @param d1 The first component of the second color.
+     * @param d2 The second component of the second color.
+     * @param d3 The third component of the second color.
+     *
+     * @return The squared Euclidean distance.
+     */
+    public static float squaredDistance(float c1, float c2, float c3, float d1, float d2, float d3) {
+        final float delta1 = c1 - d1;
+        final float delta2 = c2 - d2;
+        final float delta3 = c3 - d3;
+        return delta1 * delta1 + delta2 * delta2 + delta3 * delta3;
+    }
+
+
+    /**
+     * Calculates the CIEDE2000 color difference between two LAB colors.
+     *
+     * @param lightness1 The L component of the first color.
+     * @param a1 The a component of the first color.
+     * @param b1 The b component of the first color.
+     * @param lightness2 The L component of the second color.
+     * @param a2 The a component of the second color.
+     * @param b2 The b component of the second color.
+     *
+     * @return The CIEDE2000 color difference.
+     */
+    public static float ciede2000(float lightness1, float a1, float b1, float lightness2, float a2, float b2) {
+        final double chroma1 = Math.sqrt((double) a1 * a1 + (double) b1 * b1);
+        final double chroma2 = Math.sqrt((double) a2 * a2 + (double) b2 * b2);
+        final double meanChroma7 = ColorMath.pow7((chroma1 + chroma2) / 2.0);
+        final double g = 0.5 * (1.0 - Math.sqrt(meanChroma7 / (meanChroma7 + ColorMath.POW_25_7)));
+        final double aPrime1 = (1.0 + g) * a1;
+        final double aPrime2 = (1.0 + g) * a2;
+        final double chromaPrime1 = Math.sqrt(aPrime1 * aPrime1 + (double) b1 * b1);
+        final double chromaPrime2 = Math.sqrt(aPrime2 * aPrime2 + (double) b2 * b2);
+        final double huePrime1 = ColorMath.hueDegrees(b1, aPrime1);
+        final double huePrime2 = ColorMath.hueDegrees(b2, aPrime2);
+
+        final double deltaLightness = lightness2 - lightness1;
+        final double deltaChroma = chromaPrime2 - chromaPrime1;
+        final double chromaProduct = chromaPrime1 * chromaPrime2;
+        double deltaHue = 0.0;
+        if (chromaProduct != 0.0) {
+            deltaHue = huePrime2 - huePrime1;
+            if (deltaHue > 180.0) {
+                deltaHue -= 360.0;
+            } else if (deltaHue < -180.0) {
+                deltaHue += 360.0;
+            }
+        }
+        final double deltaBigHue = 2.0 * Math.sqrt(chromaProduct) * Math.sin(Math.toRadians(deltaHue / 2.0));
+
+        final double meanLightness = (lightness1 + lightness2) / 2.0;
+        final double meanChromaPrime = (chromaPrime1 + chromaPrime2) / 2.0;
+        double meanHue = huePrime1 + huePrime2;
+        if (chromaProduct != 0.0) {
+            if (Math.abs(huePrime1 - huePrime2) <= 180.0) {
+                meanHue /= 2.0;
+            } else if (meanHue < 360.0) {
+                meanHue = (meanHue + 360.0) / 2.0;
+            } else {
+                meanHue = (meanHue - 360.0) / 2.0;
+            }
+        }
+
+        final double t = 1.0 - 0.17 * Math.cos(Math.toRadians(meanHue - 30.0)) + 0.24 * Math.cos(Math.toRadians(2.0 * meanHue))
+                + 0.32 * Math.cos(Math.toRadians(3.0 * meanHue + 6.0)) - 0.20 * Math.cos(Math.toRadians(4.0 * meanHue - 63.0));
+        final double hueOffset = (meanHue - 275.0) / 25.0;
+        final double deltaTheta = 30.0 * Math.exp(-hueOffset * hueOffset);
+        final double meanChromaPrime7 = ColorMath.pow7(meanChromaPrime);
+        final double rotationChroma = 2.0 * Math.sqrt(meanChromaPrime7 / (meanChromaPrime7 + ColorMath.POW_25_7));
+        final double weightLightness = ColorMath.ciede2000LightnessWeight(meanLightness);
+        final double weightChroma = 1.0 + 0.045 * meanChromaPrime;
+        final double weightHue = 1.0 + 0.015 * meanChromaPrime * t;
+        final double rotation = -Math.sin(Math.toRadians(2.0 * deltaTheta)) * rotationChroma;
+
+        final double lightnessTerm = deltaLightness / weightLightness;
+        final double chromaTerm = deltaChroma / weightChroma;
+        final double hueTerm = deltaBigHue / weightHue;
+        return (float) Math.sqrt(lightnessTerm * lightnessTerm + chromaTerm * chromaTerm + hueTerm * hueTerm + rotation * chromaTerm * hueTerm);
+    }
+
+
+    /**
+     * Returns a lower bound of {@link #ciede2000(float, float, float, float, float, float)} that skips the hue terms and thus all trigonometry. The rotation
+     * term R<sub>T</sub> is never larger than sqrt(3) in magnitude, so the chroma and hue terms together are at least a quarter of the squared chroma term,
+     * whatever the hue difference is.
+     *
+     * @param lightness1 The L component of the first color.
+     * @param a1 The a component of the first color.
+     * @param b1 The b component of the first color.
+     * @param lightness2 The L component of the second color.
+     * @param a2 The a component of the second color.
+     * @param b2 The b component of the second color.
+     *
+     * @return A value that is not larger than the CIEDE2000 color difference, apart from rounding errors.
+     */
+    public static double ciede2000LowerBound(float lightness1, float a1, float b1, float lightness2, float a2, float b2) {
+        final double chroma1 = Math.sqrt((double) a1 * a1 + (double) b1 * b1);
+        final double chroma2 = Math.sqrt((double) a2 * a2 + (double) b2 * b2);
+        final double meanChroma7 = ColorMath.pow7((chroma1 + chroma2) / 2.0);
+        final double g = 0.5 * (1.0 - Math.sqrt(meanChroma7 / (meanChroma7 + ColorMath.POW_25_7)));
+        final double aPrime1 = (1.0 + g) * a1;
+        final double aPrime2 = (1.0 + g) * a2;
+        final double chromaPrime1 = Math.sqrt(aPrime1 * aPrime1 + (double) b1 * b1);
+        final double chromaPrime2 = Math.sqrt(aPrime2 * aPrime2 + (double) b2 * b2);
+
+        final double lightnessTerm = (lightness2 - lightness1) / ColorMath.ciede2000LightnessWeight((lightness1 + lightness2) / 2.0);
+        final double chromaTerm = (chromaPrime2 - chromaPrime1) / (1.0 + 0.045 * (chromaPrime1 + chromaPrime2) / 2.0);
+        return Math.sqrt(lightnessTerm * lightnessTerm + 0.25 * chromaTerm * chromaTerm);
+    }
+
+
+    /**
+     * Returns the CIEDE2000 lightness weight S<sub>L</sub> for the mean lightness of two colors. It only grows with the distance of the mean lightness from 50.
+     * Since the remaining terms of CIEDE2000 can't become negative, |dL| / S<sub>L</sub> is a lower bound of the color difference.
+     *
+     * @param meanLightness The mean L component of two colors.
+     *
+     * @return The lightness weight.
+     */
+    public static double ciede2000LightnessWeight(double meanLightness) {
+        final double lightnessOffset = (meanLightness - 50.0) * (meanLightness - 50.0);
+        return 1.0 + 0.015 * lightnessOffset / Math.sqrt(20.0 + lightnessOffset);
+    }
+
+
+    private static double hueDegrees(double b, double aPrime) {
+        if (b == 0.0 && aPrime == 0.0) {
+            return 0.0;
+        }
+        final double hue = Math.toDegrees(Math.atan2(b, aPrime));
+        return hue < 0.0 ? hue + 360.0 : hue;
+    }
+
+
+    private static double pow7(double value) {
+        final double square = value * value;
+        return square * square * square * value;
+    }
+
+}
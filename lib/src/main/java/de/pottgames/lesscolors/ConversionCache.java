@@ -0,0 +1,269 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe cache of color conversions. It maps an ARGB color and a {@link ColorSpace} to the converted {@link Color} and its components, so
+ * that converting the same colors over and over, e.g. across the images of a batch, only pays for the conversion once. One cache can be shared by any
+ * number of {@link Image} instances and threads.
+ * <p>
+ * The cache is set-associative: each color can only be stored in one of a few slots of its set. When all slots of a set are taken, one is evicted with the
+ * CLOCK policy, which approximates least recently used eviction without reordering anything on a hit. The sets are guarded by a fixed number of striped
+ * locks, so threads only contend if they access sets of the same stripe at the same time.
+ */
+public final class ConversionCache {
+    private static final int WAYS    = 8;
+    private static final int STRIPES = 64;
+
+    private final int       capacity;
+    private final int       setMask;
+    private final long[]    keys;
+    private final Color[]   colors;
+    private final float[]   components;
+    private final boolean[] referenced;
+    private final int[]     hands;
+    private final Object[]  locks;
+    private final LongAdder hits      = new LongAdder();
+    private final LongAdder misses    = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+
+    /**
+     * Creates a cache that holds at least the specified number of conversions. The capacity is rounded up to a power of two, and to at least 8.
+     *
+     * @param capacity The minimum number of conversions the cache holds.
+     */
+    public ConversionCache(int capacity) {
+        if (capacity < 1 || capacity > 1 << 28) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^28: " + capacity);
+        }
+
+        final int sets = Math.max(1, Integer.highestOneBit((capacity - 1) / ConversionCache.WAYS) << 1);
+        this.capacity = sets * ConversionCache.WAYS;
+        this.setMask = sets - 1;
+        this.keys = new long[this.capacity];
+        this.colors = new Color[this.capacity];
+        this.components = new float[this.capacity * 3];
+        this.referenced = new boolean[this.capacity];
+        this.hands = new int[sets];
+        this.locks = new Object[Math.min(sets, ConversionCache.STRIPES)];
+        for (int i = 0; i < this.locks.length; i++) {
+            this.locks[i] = new Object();
+        }
+    }
+
+
+    /**
+     * Returns the ARGB color converted to the specified color space, like {@code Color.fromARGBInt(argb).toColorSpace(colorSpace)}.
+     *
+     * @param argb The color in ARGB format.
+     * @param colorSpace The color space to convert to.
+     *
+     * @return The converted color.
+     */
+    public Color getColor(int argb, ColorSpace colorSpace) {
+        final long key = ConversionCache.key(argb, colorSpace);
+        final int set = this.setOf(key);
+        synchronized (this.lockOf(set)) {
+            final int slot = this.find(set, key);
+            if (slot >= 0) {
+                this.hits.increment();
+                Metrics.countCacheHits(1);
+                return this.colors[slot];
+            }
+        }
+
+        this.misses.increment();
+        Metrics.countCacheMisses(1);
+        return this.insert(set, key, Color.fromARGBInt(argb).toColorSpace(colorSpace));
+    }
+
+
+    /**
+     * Copies the components of the ARGB color converted to the specified color space into the destination array. The components are the ones of
+     * {@link #getColor(int, ColorSpace)}, e.g. L, a, b for LAB. This doesn't allocate if the conversion is cached.
+     *
+     * @param argb The color in ARGB format.
+     * @param colorSpace The color space to convert to.
+     * @param destination The array the three components are written to.
+     * @param offset The index of the first component in the destination array.
+     */
+    public void getComponents(int argb, ColorSpace colorSpace, float[] destination, int offset) {
+        final long key = ConversionCache.key(argb, colorSpace);
+        final int set = this.setOf(key);
+        synchronized (this.lockOf(set)) {
+            final int slot = this.find(set, key);
+            if (slot >= 0) {
+                this.hits.increment();
+                Metrics.countCacheHits(1);
+                System.arraycopy(this.components, slot * 3, destination, offset, 3);
+                return;
+            }
+        }
+
+        this.misses.increment();
+        Metrics.countCacheMisses(1);
+        final Color color = this.insert(set, key, Color.fromARGBInt(argb).toColorSpace(colorSpace));
+        System.arraycopy(color.getComponents(), 0, destination, offset, 3);
+    }
+
+
+    /**
+     * Removes all conversions from the cache. The counters are not reset.
+     */
+    public void clear() {
+        for (int set = 0; set <= this.setMask; set++) {
+            synchronized (this.lockOf(set)) {
+                final int first = set * ConversionCache.WAYS;
+                for (int slot = first; slot < first + ConversionCache.WAYS; slot++) {
+                    this.keys[slot] = 0L;
+                    this.colors[slot] = null;
+                    this.referenced[slot] = false;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Returns the maximum number of conversions the cache holds.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+
+    /**
+     * Returns how often a conversion was found in the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+
+    /**
+     * Returns how often a conversion had to be computed.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+
+    /**
+     * Returns how often a conversion was evicted to make room for another one.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return this.evictions.sum();
+    }
+
+
+    /**
+     * Returns the share of requests that were answered from the cache.
+     *
+     * @return The hit ratio between 0 and 1, or 0 if the cache hasn't been used yet.
+     */
+    public double getHitRatio() {
+        final long hitCount = this.getHitCount();
+        final long total = hitCount + this.getMissCount();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+
+    private int find(int set, long key) {
+        final int first = set * ConversionCache.WAYS;
+        for (int slot = first; slot < first + ConversionCache.WAYS; slot++) {
+            if (this.keys[slot] == key) {
+                this.referenced[slot] = true;
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Stores a conversion that was computed outside of the lock. If another thread stored the same conversion in the meantime, its color is kept.
+     */
+    private Color insert(int set, long key, Color color) {
+        final float[] converted = color.getComponents();
+        synchronized (this.lockOf(set)) {
+            final int existing = this.find(set, key);
+            if (existing >= 0) {
+                return this.colors[existing];
+            }
+
+            final int slot = this.evict(set);
+            this.keys[slot] = key;
+            this.colors[slot] = color;
+            this.referenced[slot] = false;
+            System.arraycopy(converted, 0, this.components, slot * 3, 3);
+            return color;
+        }
+    }
+
+
+    /**
+     * Returns a free slot of the set, or advances the clock hand past recently used slots, clearing their reference bit, until it finds one to evict.
+     */
+    private int evict(int set) {
+        final int first = set * ConversionCache.WAYS;
+        for (int slot = first; slot < first + ConversionCache.WAYS; slot++) {
+            if (this.keys[slot] == 0L) {
+                return slot;
+            }
+        }
+
+        int hand = this.hands[set];
+        while (this.referenced[first + hand]) {
+            this.referenced[first + hand] = false;
+            hand = hand + 1 & ConversionCache.WAYS - 1;
+        }
+        this.hands[set] = hand + 1 & ConversionCache.WAYS - 1;
+        this.evictions.increment();
+        return first + hand;
+    }
+
+
+    private int setOf(long key) {
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & this.setMask;
+    }
+
+
+    private Object lockOf(int set) {
+        return this.locks[set & this.locks.length - 1];
+    }
+
+
+    /**
+     * Packs the color and color space into a key that is never 0, so that 0 can mark free slots.
+     */
+    private static long key(int argb, ColorSpace colorSpace) {
+        Objects.requireNonNull(colorSpace);
+        return (long) (colorSpace.ordinal() + 1) << 32 | argb & 0xFFFFFFFFL;
+    }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+/**
+ * The error diffusion kernels supported by {@link ImageModifier#ditherByErrorDiffusion(Palette, DiffusionKernel)}. A kernel spreads the difference between
+ * a pixel and its palette color over neighboring pixels to the right and below.
+ */
+public enum DiffusionKernel {
+    /**
+     * Spreads all of the error over the four next neighbors.
+     */
+    FLOYD_STEINBERG(16, new int[] { 1, 0, 7, -1, 1, 3, 0, 1, 5, 1, 1, 1 }),
+    /**
+     * Spreads three quarters of the error over six neighbors, which keeps more contrast at the cost of losing detail in highlights and shadows.
+     */
+    ATKINSON(8, new int[] { 1, 0, 1, 2, 0, 1, -1, 1, 1, 0, 1, 1, 1, 1, 1, 0, 2, 1 });
+
+    private final int[]   dx;
+    private final int[]   dy;
+    private final float[] weights;
+
+
+    /**
+     * @param divisor The divisor of all weights.
+     * @param entries Triples of x offset, y offset and weight.
+     */
+    DiffusionKernel(int divisor, int[] entries) {
+        final int count = entries.length / 3;
+        this.dx = new int[count];
+        this.dy = new int[count];
+        this.weights = new float[count];
+        for (int i = 0; i < count; i++) {
+            this.dx[i] = entries[i * 3];
+            this.dy[i] = entries[i * 3 + 1];
+            this.weights[i] = (float) entries[i * 3 + 2] / divisor;
+        }
+    }
+
+
+    int size() {
+        return this.weights.length;
+    }
+
+
+    int getDx(int entry) {
+        return this.dx[entry];
+    }
+
+
+    int getDy(int entry) {
+        return this.dy[entry];
+    }
+
+
+    float getWeight(int entry) {
+        return this.weights[entry];
+    }
+
+
+    /**
+     * Returns the number of rows below the current one that receive error.
+     */
+    int getMaxDy() {
+        int maxDy = 0;
+        for (final int value : this.dy) {
+            maxDy = Math.max(maxDy, value);
+        }
+        return maxDy;
+    }
+
+
+    /**
+     * Returns how many pixels a row has to be ahead of the row below it, so that the row below neither reads error that is still incomplete nor writes to
+     * the same pixels as rows above it at the same time.
+     */
+    int getRowLag() {
+        int left = 0;
+        int right = 0;
+        for (int i = 0; i < this.dx.length; i++) {
+            if (this.dy[i] > 0) {
+                left = Math.max(left, -this.dx[i]);
+                right = Math.max(right, this.dx[i]);
+            }
+        }
+        return 1 + left + right;
+    }
+
+}
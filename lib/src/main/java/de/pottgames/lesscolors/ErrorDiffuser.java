@@ -0,0 +1,150 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Dithers an image by error diffusion on multiple threads at once.
+ * <p>
+ * Each pixel depends on pixels of the rows above it, so rows can't be processed independently. Instead the rows are handed out to the workers in order, and
+ * every row publishes how many of its pixels are done. A row only processes a pixel once the row above is far enough ahead that all error for the pixel has
+ * arrived, see {@link DiffusionKernel#getRowLag()}. This way the workers move over the image in a diagonal wavefront.
+ * <p>
+ * Error that stays within a row is kept in a buffer private to the worker. Error for the rows below goes to a ring of shared row buffers, which is reused
+ * once the row a buffer belonged to is done. All error is accumulated in the color space of the palette.
+ */
+final class ErrorDiffuser {
+    private static final int SPINS_BEFORE_YIELD = 128;
+
+    private final Image              image;
+    private final Palette            palette;
+    private final DiffusionKernel    kernel;
+    private final ColorSpace         colorSpace;
+    private final float[]            paletteComponents;
+    private final int                width;
+    private final int                height;
+    private final int                rowLag;
+    private final int                maxDy;
+    private final float[][]          errorRows;
+    private final AtomicIntegerArray progress;
+    private final AtomicInteger      nextRow = new AtomicInteger();
+
+
+    ErrorDiffuser(Image image, Palette palette, DiffusionKernel kernel, int workers) {
+        this.image = image;
+        this.palette = palette;
+        this.kernel = kernel;
+        this.colorSpace = palette.getColorSpace();
+        this.paletteComponents = new float[palette.size() * 3];
+        for (int i = 0; i < palette.size(); i++) {
+            palette.getComponents(i, this.paletteComponents, i * 3);
+        }
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.rowLag = kernel.getRowLag();
+        this.maxDy = kernel.getMaxDy();
+        this.errorRows = new float[2 * workers + this.maxDy][this.width * 3];
+        this.progress = new AtomicIntegerArray(this.height);
+    }
+
+
+    /**
+     * Dithers the image with the specified number of workers and returns once all rows are done.
+     */
+    void run(int workers, ExecutorService executor) {
+        RowBands.runWorkers(workers, executor, this::work);
+    }
+
+
+    private void work() {
+        final float[] rowError = new float[this.width * 3];
+        final float[] pixel = new float[3];
+        for (int y = this.nextRow.getAndIncrement(); y < this.height; y = this.nextRow.getAndIncrement()) {
+            this.processRow(y, rowError, pixel);
+        }
+    }
+
+
+    private void processRow(int y, float[] rowError, float[] pixel) {
+        // the buffer that receives error for the lowest row this row diffuses into is shared with an earlier row, which has to be done with it
+        final int lowestRow = y + this.maxDy;
+        if (this.maxDy > 0 && lowestRow < this.height) {
+            final int previousOwner = lowestRow - this.errorRows.length;
+            if (previousOwner >= 0) {
+                this.awaitProgress(previousOwner, this.width);
+            }
+            Arrays.fill(this.errorRows[lowestRow % this.errorRows.length], 0f);
+        }
+
+        Arrays.fill(rowError, 0f);
+        final float[] incomingError = this.errorRows[y % this.errorRows.length];
+        int rowAboveProgress = y == 0 ? this.width : this.progress.get(y - 1);
+        for (int x = 0; x < this.width; x++) {
+            final int needed = Math.min(this.width, x + this.rowLag);
+            if (rowAboveProgress < needed) {
+                rowAboveProgress = this.awaitProgress(y - 1, needed);
+            }
+
+            final int offset = x * 3;
+            ColorMath.argbToComponents(this.image.getArgb(x, y), this.colorSpace, pixel, 0);
+            final float c1 = pixel[0] + incomingError[offset] + rowError[offset];
+            final float c2 = pixel[1] + incomingError[offset + 1] + rowError[offset + 1];
+            final float c3 = pixel[2] + incomingError[offset + 2] + rowError[offset + 2];
+            final int index = this.palette.findClosestIndex(c1, c2, c3);
+            this.image.setArgb(this.palette.getArgb(index), x, y);
+
+            final float e1 = c1 - this.paletteComponents[index * 3];
+            final float e2 = c2 - this.paletteComponents[index * 3 + 1];
+            final float e3 = c3 - this.paletteComponents[index * 3 + 2];
+            for (int entry = 0; entry < this.kernel.size(); entry++) {
+                final int targetX = x + this.kernel.getDx(entry);
+                final int targetY = y + this.kernel.getDy(entry);
+                if (targetX < 0 || targetX >= this.width || targetY >= this.height) {
+                    continue;
+                }
+                final float weight = this.kernel.getWeight(entry);
+                final float[] target = targetY == y ? rowError : this.errorRows[targetY % this.errorRows.length];
+                final int targetOffset = targetX * 3;
+                target[targetOffset] += e1 * weight;
+                target[targetOffset + 1] += e2 * weight;
+                target[targetOffset + 2] += e3 * weight;
+            }
+
+            this.progress.lazySet(y, x + 1);
+        }
+    }
+
+
+    /**
+     * Waits until the specified row has processed at least the specified number of pixels and returns its progress. The wait is short, the row is being
+     * processed by another worker, so this spins instead of blocking.
+     */
+    private int awaitProgress(int row, int pixels) {
+        int spins = 0;
+        int current;
+        while ((current = this.progress.get(row)) < pixels) {
+            if (++spins >= ErrorDiffuser.SPINS_BEFORE_YIELD) {
+                Thread.yield();
+                spins = 0;
+            }
+        }
+        return current;
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.util.Objects;
+
+/**
+ * A single frame of an {@link AnimatedImage}. A frame may cover only part of the animation, starting at its left and top position.
+ */
+public class Frame {
+    private final Image         image;
+    private final int           left;
+    private final int           top;
+    private final int           delayMillis;
+    private final FrameDisposal disposal;
+
+
+    /**
+     * Creates a frame that starts at the top left corner of the animation and is shown without delay.
+     *
+     * @param image The pixels of the frame.
+     */
+    public Frame(Image image) {
+        this(image, 0, 0, 0, FrameDisposal.UNSPECIFIED);
+    }
+
+
+    /**
+     * Creates a frame.
+     *
+     * @param image The pixels of the frame.
+     * @param left The horizontal position of the frame within the animation.
+     * @param top The vertical position of the frame within the animation.
+     * @param delayMillis The time the frame is shown in milliseconds. GIF files store it in hundredths of a second.
+     * @param disposal What happens to the area of the frame before the next frame is drawn.
+     */
+    public Frame(Image image, int left, int top, int delayMillis, FrameDisposal disposal) {
+        this.image = Objects.requireNonNull(image);
+        this.disposal = Objects.requireNonNull(disposal);
+        if (left < 0 || top < 0) {
+            throw new IllegalArgumentException("frame position must not be negative: " + left + ", " + top);
+        }
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("delay must not be negative: " + delayMillis);
+        }
+        this.left = left;
+        this.top = top;
+        this.delayMillis = delayMillis;
+    }
+
+
+    /**
+     * Returns the pixels of this frame.
+     *
+     * @return the image of this frame
+     */
+    public Image getImage() {
+        return this.image;
+    }
+
+
+    /**
+     * Returns the horizontal position of this frame within the animation.
+     *
+     * @return the left position
+     */
+    public int getLeft() {
+        return this.left;
+    }
+
+
+    /**
+     * Returns the vertical position of this frame within the animation.
+     *
+     * @return the top position
+     */
+    public int getTop() {
+        return this.top;
+    }
+
+
+    /**
+     * Returns the time this frame is shown.
+     *
+     * @return the delay in milliseconds
+     */
+    public int getDelayMillis() {
+        return this.delayMillis;
+    }
+
+
+    /**
+     * Returns what happens to the area of this frame before the next frame is drawn.
+     *
+     * @return the disposal of this frame
+     */
+    public FrameDisposal getDisposal() {
+        return this.disposal;
+    }
+
+
+    /**
+     * Returns whether this frame covers the same area as the specified frame.
+     *
+     * @param other The other frame.
+     *
+     * @return true if both frames have the same position and size
+     */
+    boolean hasSameBounds(Frame other) {
+        return this.left == other.left && this.top == other.top && this.image.getWidth() == other.image.getWidth()
+                && this.image.getHeight() == other.image.getHeight();
+    }
+
+}
@@ -0,0 +1,72 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+/**
+ * Defines what happens to the area of a {@link Frame} before the next frame of an {@link AnimatedImage} is drawn, as stored in GIF files.
+ */
+public enum FrameDisposal {
+    /**
+     * The decoder is free to do anything, most leave the frame in place.
+     */
+    UNSPECIFIED("none"),
+    /**
+     * The frame is left in place and the next frame is drawn over it.
+     */
+    KEEP("doNotDispose"),
+    /**
+     * The area of the frame is cleared to the background.
+     */
+    RESTORE_TO_BACKGROUND("restoreToBackgroundColor"),
+    /**
+     * The area of the frame is restored to what it was before the frame was drawn.
+     */
+    RESTORE_TO_PREVIOUS("restoreToPrevious");
+
+    private final String gifName;
+
+
+    FrameDisposal(String gifName) {
+        this.gifName = gifName;
+    }
+
+
+    /**
+     * Returns the name of the disposal method in the GIF metadata format of ImageIO.
+     *
+     * @return the GIF name
+     */
+    String getGifName() {
+        return this.gifName;
+    }
+
+
+    /**
+     * Returns the disposal with the specified name in the GIF metadata format of ImageIO.
+     *
+     * @param gifName The GIF name.
+     *
+     * @return The disposal, {@link #UNSPECIFIED} for unknown names.
+     */
+    static FrameDisposal fromGifName(String gifName) {
+        for (final FrameDisposal disposal : FrameDisposal.values()) {
+            if (disposal.gifName.equals(gifName)) {
+                return disposal;
+            }
+        }
+        return FrameDisposal.UNSPECIFIED;
+    }
+
+}
@@ -0,0 +1,230 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOInvalidTreeException;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+
+import org.w3c.dom.Node;
+
+/**
+ * Reads and writes the frame properties of GIF files in the native metadata format of the ImageIO GIF plugin.
+ */
+final class GifMetadata {
+    static final String STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+    static final String IMAGE_FORMAT  = "javax_imageio_gif_image_1.0";
+
+    private static final String NETSCAPE_ID   = "NETSCAPE";
+    private static final String NETSCAPE_CODE = "2.0";
+
+
+    private GifMetadata() {
+    }
+
+
+    /**
+     * Creates a frame from the pixels and metadata of a GIF image.
+     *
+     * @param image The pixels of the frame.
+     * @param metadata The image metadata or null.
+     *
+     * @return The frame.
+     */
+    static Frame readFrame(Image image, IIOMetadata metadata) {
+        if (metadata == null) {
+            return new Frame(image);
+        }
+
+        final Node root = metadata.getAsTree(GifMetadata.IMAGE_FORMAT);
+        final Node descriptor = GifMetadata.findChild(root, "ImageDescriptor");
+        final Node control = GifMetadata.findChild(root, "GraphicControlExtension");
+        final int left = GifMetadata.getIntAttribute(descriptor, "imageLeftPosition", 0);
+        final int top = GifMetadata.getIntAttribute(descriptor, "imageTopPosition", 0);
+        final int delay = GifMetadata.getIntAttribute(control, "delayTime", 0) * 10;
+        final FrameDisposal disposal = FrameDisposal.fromGifName(GifMetadata.getAttribute(control, "disposalMethod"));
+        return new Frame(image, left, top, delay, disposal);
+    }
+
+
+    /**
+     * Reads the loop count from the NETSCAPE2.0 application extension of a GIF image.
+     *
+     * @param metadata The image metadata or null.
+     *
+     * @return The loop count, 0 for endless looping, or -1 if the image has no loop extension.
+     */
+    static int readLoopCount(IIOMetadata metadata) {
+        if (metadata == null) {
+            return AnimatedImage.NO_LOOP;
+        }
+
+        final Node extensions = GifMetadata.findChild(metadata.getAsTree(GifMetadata.IMAGE_FORMAT), "ApplicationExtensions");
+        for (Node child = extensions == null ? null : extensions.getFirstChild(); child != null; child = child.getNextSibling()) {
+            final Object data = ((IIOMetadataNode) child).getUserObject();
+            if (GifMetadata.NETSCAPE_ID.equals(GifMetadata.getAttribute(child, "applicationID"))
+                    && GifMetadata.NETSCAPE_CODE.equals(GifMetadata.getAttribute(child, "authenticationCode")) && data instanceof byte[]
+                    && ((byte[]) data).length >= 3) {
+                final byte[] bytes = (byte[]) data;
+                return bytes[1] & 0xFF | (bytes[2] & 0xFF) << 8;
+            }
+        }
+        return AnimatedImage.NO_LOOP;
+    }
+
+
+    /**
+     * Reads the size of the logical screen of a GIF file.
+     *
+     * @param metadata The stream metadata or null.
+     *
+     * @return The width and height, or null if the metadata doesn't define them.
+     */
+    static int[] readScreenSize(IIOMetadata metadata) {
+        if (metadata == null) {
+            return null;
+        }
+
+        final Node descriptor = GifMetadata.findChild(metadata.getAsTree(GifMetadata.STREAM_FORMAT), "LogicalScreenDescriptor");
+        final int width = GifMetadata.getIntAttribute(descriptor, "logicalScreenWidth", 0);
+        final int height = GifMetadata.getIntAttribute(descriptor, "logicalScreenHeight", 0);
+        return width > 0 && height > 0 ? new int[] { width, height } : null;
+    }
+
+
+    /**
+     * Creates the stream metadata of a GIF file with the specified logical screen size and without a global color table, because every frame brings its own.
+     *
+     * @throws IIOInvalidTreeException If the writer rejects the metadata.
+     */
+    static IIOMetadata createStreamMetadata(ImageWriter writer, ImageWriteParam param, int width, int height) throws IIOInvalidTreeException {
+        final IIOMetadata metadata = writer.getDefaultStreamMetadata(param);
+        final IIOMetadataNode root = new IIOMetadataNode(GifMetadata.STREAM_FORMAT);
+        final IIOMetadataNode descriptor = new IIOMetadataNode("LogicalScreenDescriptor");
+        descriptor.setAttribute("logicalScreenWidth", Integer.toString(width));
+        descriptor.setAttribute("logicalScreenHeight", Integer.toString(height));
+        descriptor.setAttribute("colorResolution", "8");
+        descriptor.setAttribute("pixelAspectRatio", "0");
+        root.appendChild(descriptor);
+        metadata.setFromTree(GifMetadata.STREAM_FORMAT, root);
+        return metadata;
+    }
+
+
+    /**
+     * Creates the image metadata of a GIF frame. The colors of an indexed image are stored as the local color table of the frame, and if its color model has
+     * a transparent pixel, it is declared as the transparent color.
+     *
+     * @param loopCount The loop count to store in the frame, or -1 to store none.
+     *
+     * @throws IIOInvalidTreeException If the writer rejects the metadata.
+     */
+    static IIOMetadata createFrameMetadata(ImageWriter writer, ImageWriteParam param, BufferedImage image, Frame frame, int loopCount)
+            throws IIOInvalidTreeException {
+        final IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+        final IIOMetadataNode root = new IIOMetadataNode(GifMetadata.IMAGE_FORMAT);
+
+        final IIOMetadataNode descriptor = new IIOMetadataNode("ImageDescriptor");
+        descriptor.setAttribute("imageLeftPosition", Integer.toString(frame.getLeft()));
+        descriptor.setAttribute("imageTopPosition", Integer.toString(frame.getTop()));
+        descriptor.setAttribute("imageWidth", Integer.toString(image.getWidth()));
+        descriptor.setAttribute("imageHeight", Integer.toString(image.getHeight()));
+        descriptor.setAttribute("interlaceFlag", "FALSE");
+        root.appendChild(descriptor);
+        if (image.getColorModel() instanceof IndexColorModel) {
+            root.appendChild(GifMetadata.createColorTable((IndexColorModel) image.getColorModel()));
+        }
+
+        final int transparentPixel = image.getColorModel() instanceof IndexColorModel ? ((IndexColorModel) image.getColorModel()).getTransparentPixel() : -1;
+        final IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+        control.setAttribute("disposalMethod", frame.getDisposal().getGifName());
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", transparentPixel >= 0 ? "TRUE" : "FALSE");
+        control.setAttribute("delayTime", Integer.toString((frame.getDelayMillis() + 5) / 10));
+        control.setAttribute("transparentColorIndex", Integer.toString(Math.max(0, transparentPixel)));
+        root.appendChild(control);
+
+        if (loopCount >= 0) {
+            final IIOMetadataNode extensions = new IIOMetadataNode("ApplicationExtensions");
+            final IIOMetadataNode extension = new IIOMetadataNode("ApplicationExtension");
+            extension.setAttribute("applicationID", GifMetadata.NETSCAPE_ID);
+            extension.setAttribute("authenticationCode", GifMetadata.NETSCAPE_CODE);
+            extension.setUserObject(new byte[] { 1, (byte) loopCount, (byte) (loopCount >>> 8) });
+            extensions.appendChild(extension);
+            root.appendChild(extensions);
+        }
+
+        metadata.mergeTree(GifMetadata.IMAGE_FORMAT, root);
+        return metadata;
+    }
+
+
+    private static IIOMetadataNode createColorTable(IndexColorModel colorModel) {
+        // the table size must be a power of two, unused entries stay black
+        int size = 2;
+        while (size < colorModel.getMapSize()) {
+            size <<= 1;
+        }
+        final IIOMetadataNode table = new IIOMetadataNode("LocalColorTable");
+        table.setAttribute("sizeOfLocalColorTable", Integer.toString(size));
+        table.setAttribute("sortFlag", "FALSE");
+        for (int i = 0; i < size; i++) {
+            final int rgb = i < colorModel.getMapSize() ? colorModel.getRGB(i) : 0;
+            final IIOMetadataNode entry = new IIOMetadataNode("ColorTableEntry");
+            entry.setAttribute("index", Integer.toString(i));
+            entry.setAttribute("red", Integer.toString(rgb >>> 16 & 0xFF));
+            entry.setAttribute("green", Integer.toString(rgb >>> 8 & 0xFF));
+            entry.setAttribute("blue", Integer.toString(rgb & 0xFF));
+            table.appendChild(entry);
+        }
+        return table;
+    }
+
+
+    private static Node findChild(Node parent, String name) {
+        for (Node child = parent == null ? null : parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (name.equals(child.getNodeName())) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+
+    private static String getAttribute(Node node, String name) {
+        final Node attribute = node == null ? null : node.getAttributes().getNamedItem(name);
+        return attribute == null ? null : attribute.getNodeValue();
+    }
+
+
+    private static int getIntAttribute(Node node, String name, int defaultValue) {
+        final String value = GifMetadata.getAttribute(node, name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (final NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+}
@@ -18,6 +18,7 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Objects;
@@ -27,12 +28,19 @@ import javax.imageio.ImageIO;
 /**
  * The Image class represents an image with pixels in a specific color space. It allows for loading images from files, manipulating pixels, and saving images in
  * various formats.
+ * <p>
+ * Pixels are stored as packed 32-bit ARGB integers. {@link #getPixel(int, int)}, {@link #setPixel(Color, int, int)} and {@link #iterator()} convert from and
+ * to {@link Color} objects on the fly, {@link #getArgb(int, int)} and {@link #setArgb(int, int, int)} access the packed values directly. The conversions can
+ * be memoized by a {@link ConversionCache}, which may be shared with other images.
  */
 public class Image implements Iterable<Color> {
+    private static final int MAX_INDEXED_COLORS = 256;
+
     private final int        width;
     private final int        height;
     private final ColorSpace colorSpace;
-    private final Color[]    pixels;
+    private final int[]      pixels;
+    private ConversionCache  conversionCache;
 
 
     /**
@@ -53,7 +61,7 @@ public class Image implements Iterable<Color> {
 
 
     /**
-     * Loads an image from a File object and converts it to the specified color space.
+     * Loads an image from a File object and converts it to the specified color space. Files with the extension ".lcraw" are read as a {@link RawImage}.
      *
      * @param file The File object representing the image file to load.
      * @param colorSpace The desired color space for the loaded image.
@@ -70,10 +78,23 @@ public class Image implements Iterable<Color> {
             throw new IllegalArgumentException("file doesn't exist: " + file.getAbsolutePath());
         }
 
+        final long startTime = Metrics.startTimer();
+        if (RawImage.hasRawExtension(file.getName())) {
+            try (RawImage rawImage = RawImage.open(file.toPath(), false)) {
+                final Image image = rawImage.toImage(colorSpace);
+                Metrics.stopTimer(ProcessingStage.DECODE, startTime, image.pixels.length);
+                return image;
+            }
+        }
+        final BufferedImage image;
         try (FileInputStream stream = new FileInputStream(file)) {
-            final BufferedImage image = ImageIO.read(stream);
-            return Image.fromBufferedImage(image, colorSpace);
+            image = ImageIO.read(stream);
         }
+        if (image == null) {
+            throw new IOException("unsupported image format: " + file.getAbsolutePath());
+        }
+        Metrics.stopTimer(ProcessingStage.DECODE, startTime, (long) image.getWidth() * image.getHeight());
+        return Image.fromBufferedImage(image, colorSpace);
     }
 
 
@@ -89,15 +110,10 @@ public class Image implements Iterable<Color> {
         Objects.requireNonNull(source);
         Objects.requireNonNull(colorSpace);
 
-        final int width = source.getWidth();
-        final int height = source.getHeight();
-        final Image image = new Image(width, height, colorSpace);
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                final Color color = Color.fromARGBInt(source.getRGB(x, y)).toColorSpace(colorSpace);
-                image.setPixel(color, x, y);
-            }
-        }
+        final long startTime = Metrics.startTimer();
+        final Image image = new Image(source.getWidth(), source.getHeight(), colorSpace);
+        RasterAccess.readArgb(source, image.pixels);
+        Metrics.stopTimer(ProcessingStage.CONVERT, startTime, image.pixels.length);
         return image;
     }
 
@@ -113,24 +129,24 @@ public class Image implements Iterable<Color> {
         this.width = width;
         this.height = height;
         this.colorSpace = colorSpace;
-        this.pixels = new Color[width * height];
+        this.pixels = new int[width * height];
     }
 
 
     /**
-     * Sets the color of a pixel at the specified coordinates (x, y).
+     * Sets the color of a pixel at the specified coordinates (x, y). The color is stored with 8 bits of precision per component.
      *
      * @param color The color to set at the specified pixel.
      * @param x The x-coordinate of the pixel.
      * @param y The y-coordinate of the pixel.
      */
     public void setPixel(Color color, int x, int y) {
-        this.pixels[y * this.width + x] = color.toColorSpace(this.colorSpace);
+        this.pixels[y * this.width + x] = color.toArgbInt();
     }
 
 
     /**
-     * Gets the color of the pixel at the specified coordinates (x, y).
+     * Gets the color of the pixel at the specified coordinates (x, y), converted to the color space of the image.
      *
      * @param x The x-coordinate of the pixel.
      * @param y The y-coordinate of the pixel.
@@ -138,10 +154,57 @@ public class Image implements Iterable<Color> {
      * @return The color of the specified pixel.
      */
     public Color getPixel(int x, int y) {
+        return this.toColor(this.pixels[y * this.width + x]);
+    }
+
+
+    /**
+     * Sets the ARGB value of a pixel at the specified coordinates (x, y).
+     *
+     * @param argb The ARGB value to set at the specified pixel.
+     * @param x The x-coordinate of the pixel.
+     * @param y The y-coordinate of the pixel.
+     */
+    public void setArgb(int argb, int x, int y) {
+        this.pixels[y * this.width + x] = argb;
+    }
+
+
+    /**
+     * Gets the ARGB value of the pixel at the specified coordinates (x, y).
+     *
+     * @param x The x-coordinate of the pixel.
+     * @param y The y-coordinate of the pixel.
+     *
+     * @return The ARGB value of the specified pixel.
+     */
+    public int getArgb(int x, int y) {
         return this.pixels[y * this.width + x];
     }
 
 
+    /**
+     * Returns the array that holds the pixels of this image in ARGB format, row by row. Changes to the array change the image.
+     *
+     * @return The pixel array, not a copy.
+     */
+    int[] getPixels() {
+        return this.pixels;
+    }
+
+
+    /**
+     * Creates a copy of this image with its own pixel array.
+     *
+     * @return A new Image object with the same size, color space and pixels.
+     */
+    public Image copy() {
+        final Image copy = new Image(this.width, this.height, this.colorSpace);
+        System.arraycopy(this.pixels, 0, copy.pixels, 0, this.pixels.length);
+        return copy;
+    }
+
+
     /**
      * Finds and returns the closest color in the image to the specified color. Uses the default color space of the image.
      *
@@ -167,7 +230,7 @@ public class Image implements Iterable<Color> {
 
         Color closestColor = null;
         float closestDistance = Float.MAX_VALUE;
-        for (final Color pixel : this.pixels) {
+        for (final Color pixel : this) {
             final float distance = pixel.distance(color, colorSpace);
             if (distance < closestDistance) {
                 closestColor = pixel;
@@ -200,35 +263,148 @@ public class Image implements Iterable<Color> {
 
 
     /**
-     * Returns a BufferedImage with the same pixel data as this image.
+     * Gets the color space of the image.
+     *
+     * @return The color space of the image.
+     */
+    public ColorSpace getColorSpace() {
+        return this.colorSpace;
+    }
+
+
+    /**
+     * Sets the cache that memoizes the conversions of {@link #getPixel(int, int)} and {@link #iterator()}. Pass null to convert every pixel anew, which is the
+     * default.
+     *
+     * @param conversionCache The cache or null.
+     */
+    public void setConversionCache(ConversionCache conversionCache) {
+        this.conversionCache = conversionCache;
+    }
+
+
+    /**
+     * Gets the cache that memoizes the color conversions of this image.
+     *
+     * @return The cache or null if conversions aren't cached.
+     */
+    public ConversionCache getConversionCache() {
+        return this.conversionCache;
+    }
+
+
+    private Color toColor(int argb) {
+        if (this.conversionCache != null) {
+            return this.conversionCache.getColor(argb, this.colorSpace);
+        }
+        return Color.fromARGBInt(argb).toColorSpace(this.colorSpace);
+    }
+
+
+    /**
+     * Returns a BufferedImage of type TYPE_INT_ARGB with the same pixel data as this image.
      *
      * @return A BufferedImage representation of the image.
      */
     public BufferedImage toBufferedImage() {
-        final BufferedImage bufferedImage = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_ARGB);
+        return RasterAccess.writeArgb(this.pixels, this.width, this.height);
+    }
+
 
-        for (int x = 0; x < this.width; x++) {
-            for (int y = 0; y < this.height; y++) {
-                final int argb = this.getPixel(x, y).toArgbInt();
-                bufferedImage.setRGB(x, y, argb);
+    /**
+     * Returns a BufferedImage with an {@link java.awt.image.IndexColorModel} that holds the distinct colors of this image in the order of their first
+     * appearance. Images with up to 16 colors use 1, 2 or 4 bits per pixel, larger ones 8 bits.
+     *
+     * @return An indexed BufferedImage representation of the image.
+     *
+     * @throws IllegalStateException If the image has more than 256 distinct colors.
+     */
+    public BufferedImage toIndexedBufferedImage() {
+        final ArgbIntMap indices = new ArgbIntMap(Image.MAX_INDEXED_COLORS);
+        final int[] colors = new int[Image.MAX_INDEXED_COLORS];
+        int colorCount = 0;
+        int lastArgb = 0;
+        for (final int argb : this.pixels) {
+            if (colorCount > 0 && argb == lastArgb) {
+                continue;
+            }
+            lastArgb = argb;
+            if (indices.get(argb, -1) < 0) {
+                if (colorCount == Image.MAX_INDEXED_COLORS) {
+                    throw new IllegalStateException("The image has more than " + Image.MAX_INDEXED_COLORS + " colors");
+                }
+                indices.put(argb, colorCount);
+                colors[colorCount++] = argb;
             }
         }
+        return RasterAccess.writeIndexed(this.pixels, this.width, this.height, Arrays.copyOf(colors, colorCount), indices);
+    }
 
-        return bufferedImage;
+
+    /**
+     * Returns a BufferedImage with an {@link java.awt.image.IndexColorModel} that holds the colors of the specified palette in palette order, so that images
+     * reduced to the same palette share one color table. Every pixel of this image must have one of the palette colors.
+     *
+     * @param palette The palette this image was reduced to.
+     *
+     * @return An indexed BufferedImage representation of the image.
+     *
+     * @throws IllegalArgumentException If the palette has more than 256 colors or a pixel color is not in the palette.
+     */
+    public BufferedImage toIndexedBufferedImage(PaletteMatcher palette) {
+        Objects.requireNonNull(palette);
+        if (palette.size() > Image.MAX_INDEXED_COLORS) {
+            throw new IllegalArgumentException("The palette has more than " + Image.MAX_INDEXED_COLORS + " colors: " + palette.size());
+        }
+
+        final ArgbIntMap indices = new ArgbIntMap(palette.size());
+        final int[] colors = new int[palette.size()];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = palette.getArgb(i);
+            if (indices.get(colors[i], -1) < 0) {
+                indices.put(colors[i], i);
+            }
+        }
+        return RasterAccess.writeIndexed(this.pixels, this.width, this.height, colors, indices);
     }
 
 
     /**
-     * Saves the image to a file with the specified image type.
+     * Saves the image to a file with the specified image type. The type "lcraw" writes a {@link RawImage}.
      *
      * @param file The file to which the image should be saved.
-     * @param imageType The format of the image (e.g., "PNG", "JPEG").
+     * @param imageType The format of the image (e.g., "PNG", "JPEG", "lcraw").
      *
      * @throws IOException If an error occurs while saving the image.
      */
     public void saveToFile(File file, String imageType) throws IOException {
+        final long startTime = Metrics.startTimer();
+        if (RawImage.FORMAT_NAME.equalsIgnoreCase(imageType)) {
+            RawImage.write(this, file.toPath());
+            Metrics.stopTimer(ProcessingStage.ENCODE, startTime, this.pixels.length);
+            return;
+        }
         final BufferedImage bufferedImage = this.toBufferedImage();
         ImageIO.write(bufferedImage, imageType, file);
+        Metrics.stopTimer(ProcessingStage.ENCODE, startTime, this.pixels.length);
+    }
+
+
+    /**
+     * Saves the image to a file with the specified image type, storing a color index per pixel instead of its ARGB value, see
+     * {@link #toIndexedBufferedImage()}. This only works with formats that support indexed color, like PNG and GIF.
+     *
+     * @param file The file to which the image should be saved.
+     * @param imageType The format of the image (e.g., "PNG", "GIF").
+     *
+     * @throws IOException If an error occurs while saving the image.
+     * @throws IllegalStateException If the image has more than 256 distinct colors.
+     */
+    public void saveIndexedToFile(File file, String imageType) throws IOException {
+        final long startTime = Metrics.startTimer();
+        final BufferedImage bufferedImage = this.toIndexedBufferedImage();
+        ImageIO.write(bufferedImage, imageType, file);
+        Metrics.stopTimer(ProcessingStage.ENCODE, startTime, this.pixels.length);
     }
 
 
@@ -258,7 +434,7 @@ public class Image implements Iterable<Color> {
             if (!this.hasNext()) {
                 throw new NoSuchElementException();
             }
-            final Color color = Image.this.pixels[this.currentIndex];
+            final Color color = Image.this.toColor(Image.this.pixels[this.currentIndex]);
             this.currentIndex++;
             return color;
         }
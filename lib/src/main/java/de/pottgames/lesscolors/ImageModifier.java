@@ -1,10 +1,35 @@
 package de.pottgames.lesscolors;
 
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+
 /**
  * The ImageModifier class provides methods for modifying an Image object.
+ * <p>
+ * By default all modifications run on the calling thread. With {@link #setParallelism(int)} or {@link #setExecutor(ExecutorService)} the image is split into
+ * bands of rows that are processed concurrently.
+ * <p>
+ * How transparent pixels are reduced is chosen with {@link #setAlphaMode(AlphaMode)}, see {@link AlphaMode}. The alpha mode applies to
+ * {@link #reduceColors(PaletteMatcher)} and {@link #reduceColorsByHistogram(PaletteMatcher)}, dithering always ignores alpha.
  */
 public class ImageModifier {
-    private final Image image;
+    /**
+     * The number of distinct colors from which on the histogram reduction matches them concurrently.
+     */
+    private static final int PARALLEL_RESOLVE_THRESHOLD = 4096;
+    /**
+     * The maximum number of palette colors used to estimate the distance between neighboring palette colors for ordered dithering.
+     */
+    private static final int SPREAD_SAMPLES             = 256;
+
+    private final Image     image;
+    private int             parallelism    = 1;
+    private ExecutorService executor;
+    private AlphaMode       alphaMode      = AlphaMode.IGNORE;
+    private int             alphaThreshold = 128;
+    private int             matteColor     = 0xFFFFFFFF;
+    private ColorHistogram  histogram;
 
 
     /**
@@ -26,20 +51,411 @@ public class ImageModifier {
      * @return This ImageModifier instance after reducing colors.
      */
     public ImageModifier reduceColorsByPalette(Image palette) {
+        return this.reduceColorsByPalette(Palette.fromImage(palette));
+    }
+
+
+    /**
+     * Reduces the number of colors in the image based on a provided color palette. For each pixel in the image, it finds the closest color in the palette and
+     * replaces the pixel's color with the closest color from the palette.
+     *
+     * @param palette The color palette.
+     *
+     * @return This ImageModifier instance after reducing colors.
+     */
+    public ImageModifier reduceColorsByPalette(Palette palette) {
+        return this.reduceColors(palette);
+    }
+
+
+    /**
+     * Reduces the number of colors in the image based on a precomputed lookup table. For each pixel in the image, it looks up the closest palette color and
+     * replaces the pixel's color with it.
+     *
+     * @param lookupTable The lookup table built for the color palette.
+     *
+     * @return This ImageModifier instance after reducing colors.
+     */
+    public ImageModifier reduceColorsByLookupTable(PaletteLookupTable lookupTable) {
+        return this.reduceColors(lookupTable);
+    }
+
+
+    /**
+     * Reduces the number of colors in the image by replacing each pixel's color with the palette color the matcher considers closest.
+     * <p>
+     * Each row is scanned for runs. A run of equal pixels is matched only once, and unless the alpha mode is {@link AlphaMode#IGNORE} a run of fully
+     * transparent pixels is skipped without being matched, so the cost depends on the visible pixels rather than the size of the canvas.
+     *
+     * @param matcher The matcher that finds the closest palette color.
+     *
+     * @return This ImageModifier instance after reducing colors.
+     */
+    public ImageModifier reduceColors(PaletteMatcher matcher) {
+        if (matcher.size() == 0) {
+            throw new IllegalArgumentException("palette must contain at least one color");
+        }
+
+        final long startTime = Metrics.startTimer();
+        final int width = this.image.getWidth();
+        final int[] pixels = this.image.getPixels();
+        final int transparent = this.alphaMode == AlphaMode.MATTE ? this.replace(0, matcher, new float[3]) : 0;
+        RowBands.process(this.image.getHeight(), this.parallelism, this.executor, (fromRow, toRow) -> {
+            final float[] scratch = new float[3];
+            for (int y = fromRow; y < toRow; y++) {
+                this.reduceRow(pixels, y * width, (y + 1) * width, matcher, transparent, scratch);
+            }
+        });
+
+        Metrics.stopTimer(ProcessingStage.MATCH, startTime, this.getPixelCount());
+        return this;
+    }
+
+
+    /**
+     * Reduces the number of colors in the image like {@link #reduceColors(PaletteMatcher)}, but matches each distinct color of the image only once. The colors
+     * are first counted in a {@link ColorHistogram}, then each distinct color is matched against the palette, and finally every pixel is replaced with a single
+     * map lookup. This pays off for images with far fewer distinct colors than pixels, such as pixel art. The histogram is available through
+     * {@link #getHistogram()} afterwards.
+     *
+     * @param matcher The matcher that finds the closest palette color.
+     *
+     * @return This ImageModifier instance after reducing colors.
+     */
+    public ImageModifier reduceColorsByHistogram(PaletteMatcher matcher) {
+        if (matcher.size() == 0) {
+            throw new IllegalArgumentException("palette must contain at least one color");
+        }
+
+        final long startTime = Metrics.startTimer();
+        final ColorHistogram histogram = ColorHistogram.of(this.image);
+        final int[] colors = histogram.getColors();
+        final int[] replacements = new int[colors.length];
+        final RowBands.Task resolve = (from, to) -> {
+            final float[] scratch = new float[3];
+            for (int i = from; i < to; i++) {
+                replacements[i] = this.replace(colors[i], matcher, scratch);
+            }
+        };
+        if (colors.length >= ImageModifier.PARALLEL_RESOLVE_THRESHOLD) {
+            RowBands.process(colors.length, this.parallelism, this.executor, resolve);
+        } else {
+            resolve.process(0, colors.length);
+        }
+
+        final ArgbIntMap mapping = new ArgbIntMap(colors.length);
+        for (int i = 0; i < colors.length; i++) {
+            mapping.put(colors[i], replacements[i]);
+        }
         final int width = this.image.getWidth();
-        final int height = this.image.getHeight();
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                final Color sourceColor = this.image.getPixel(x, y);
-                final Color paletteColor = palette.findClosestColor(sourceColor);
-                this.image.setPixel(paletteColor, x, y);
+        RowBands.process(this.image.getHeight(), this.parallelism, this.executor, (fromRow, toRow) -> {
+            for (int y = fromRow; y < toRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    final int argb = this.image.getArgb(x, y);
+                    this.image.setArgb(mapping.get(argb, argb), x, y);
+                }
             }
+        });
+
+        this.histogram = histogram;
+        Metrics.countCacheHits(histogram.getPixelCount() - colors.length);
+        Metrics.countCacheMisses(colors.length);
+        Metrics.stopTimer(ProcessingStage.MATCH, startTime, this.getPixelCount());
+        return this;
+    }
+
+
+    /**
+     * Reduces the number of colors in the image to the colors of the palette and dithers the result by error diffusion. The difference between each pixel and
+     * its palette color is computed in the color space of the palette and spread over the neighboring pixels that haven't been processed yet, as defined by
+     * the kernel. Rows are processed from left to right.
+     * <p>
+     * The result doesn't depend on the parallelism. The rows are processed in a wavefront, each row trailing the row above by a few pixels, so that multiple
+     * threads can work on the image at once.
+     *
+     * @param palette The color palette.
+     * @param kernel The error diffusion kernel.
+     *
+     * @return This ImageModifier instance after reducing colors.
+     */
+    public ImageModifier ditherByErrorDiffusion(Palette palette, DiffusionKernel kernel) {
+        Objects.requireNonNull(kernel);
+        if (palette.size() == 0) {
+            throw new IllegalArgumentException("palette must contain at least one color");
+        }
+
+        final long startTime = Metrics.startTimer();
+        final int workers = Math.max(1, Math.min(this.parallelism, this.image.getHeight()));
+        new ErrorDiffuser(this.image, palette, kernel, workers).run(workers, this.executor);
+        Metrics.stopTimer(ProcessingStage.MATCH, startTime, this.getPixelCount());
+        return this;
+    }
+
+
+    /**
+     * Reduces the number of colors in the image to the colors of the palette with ordered dithering of full strength, see
+     * {@link #ditherOrdered(Palette, ThresholdMap, float)}.
+     *
+     * @param palette The color palette.
+     * @param thresholdMap The threshold map.
+     *
+     * @return This ImageModifier instance after reducing colors.
+     */
+    public ImageModifier ditherOrdered(Palette palette, ThresholdMap thresholdMap) {
+        return this.ditherOrdered(palette, thresholdMap, 1f);
+    }
+
+
+    /**
+     * Reduces the number of colors in the image to the colors of the palette with ordered dithering. Before a pixel is matched against the palette, it is
+     * offset by its threshold, scaled to the typical distance between neighboring palette colors. The offset only changes the lightness of the pixel, never its
+     * hue: all components are offset in RGB, X, Y and Z in proportion to the white point in XYZ, and only L in LAB and OKLAB. Every pixel is processed
+     * independently, so the image is split into bands like {@link #reduceColors(PaletteMatcher)}.
+     *
+     * @param palette The color palette.
+     * @param thresholdMap The threshold map.
+     * @param strength The scale of the offsets, 1 for the typical distance between neighboring palette colors, 0 for no dithering at all.
+     *
+     * @return This ImageModifier instance after reducing colors.
+     */
+    public ImageModifier ditherOrdered(Palette palette, ThresholdMap thresholdMap, float strength) {
+        Objects.requireNonNull(thresholdMap);
+        if (palette.size() == 0) {
+            throw new IllegalArgumentException("palette must contain at least one color");
+        }
+        if (!(strength >= 0f)) {
+            throw new IllegalArgumentException("strength must not be negative: " + strength);
         }
 
+        final long startTime = Metrics.startTimer();
+        final float spread = ImageModifier.estimateSpread(palette) * strength;
+        final ColorSpace colorSpace = palette.getColorSpace();
+        final float[] direction = ImageModifier.lightnessDirection(colorSpace);
+        final int width = this.image.getWidth();
+        RowBands.process(this.image.getHeight(), this.parallelism, this.executor, (fromRow, toRow) -> {
+            final float[] pixel = new float[3];
+            for (int y = fromRow; y < toRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    ColorMath.argbToComponents(this.image.getArgb(x, y), colorSpace, pixel, 0);
+                    final float offset = (thresholdMap.getThreshold(x, y) - 0.5f) * spread;
+                    final int paletteIndex = palette.findClosestIndex(pixel[0] + offset * direction[0], pixel[1] + offset * direction[1],
+                            pixel[2] + offset * direction[2]);
+                    this.image.setArgb(palette.getArgb(paletteIndex), x, y);
+                }
+            }
+        });
+
+        Metrics.stopTimer(ProcessingStage.MATCH, startTime, this.getPixelCount());
         return this;
     }
 
 
+    /**
+     * Reduces the pixels of one row, from inclusive to exclusive. The previous result is reused as long as the pixels don't change.
+     */
+    private void reduceRow(int[] pixels, int from, int to, PaletteMatcher matcher, int transparent, float[] scratch) {
+        final boolean skipTransparent = this.alphaMode != AlphaMode.IGNORE;
+        // differs from the first pixel, so that it is always matched
+        int source = from < to ? ~pixels[from] : 0;
+        int result = 0;
+        int i = from;
+        while (i < to) {
+            final int argb = pixels[i];
+            if (skipTransparent && argb >>> 24 == 0) {
+                int end = i + 1;
+                while (end < to && pixels[end] >>> 24 == 0) {
+                    end++;
+                }
+                if (this.alphaMode == AlphaMode.MATTE) {
+                    Arrays.fill(pixels, i, end, transparent);
+                }
+                i = end;
+                continue;
+            }
+            if (argb != source) {
+                source = argb;
+                result = this.replace(argb, matcher, scratch);
+            }
+            pixels[i++] = result;
+        }
+    }
+
+
+    /**
+     * Returns the replacement of a single pixel according to the alpha mode. The scratch array is passed on to the matcher.
+     */
+    private int replace(int argb, PaletteMatcher matcher, float[] scratch) {
+        final int alpha = argb >>> 24;
+        if (this.alphaMode == AlphaMode.IGNORE) {
+            return matcher.getArgb(matcher.findClosestIndex(argb, scratch));
+        }
+        // opaque pixels look the same in every other mode
+        if (alpha == 0xFF) {
+            return 0xFF000000 | matcher.getArgb(matcher.findClosestIndex(argb, scratch));
+        }
+
+        switch (this.alphaMode) {
+            case THRESHOLD:
+                return alpha < this.alphaThreshold ? argb & 0x00FFFFFF : 0xFF000000 | matcher.getArgb(matcher.findClosestIndex(argb, scratch));
+            case MATTE:
+                return 0xFF000000 | matcher.getArgb(matcher.findClosestIndex(ImageModifier.blend(argb, this.matteColor, alpha), scratch));
+            case PREMULTIPLY:
+                return alpha == 0 ? argb
+                        : alpha << 24 | matcher.getArgb(matcher.findClosestIndex(ImageModifier.blend(argb, 0, alpha), scratch)) & 0x00FFFFFF;
+            default:
+                return alpha == 0 ? argb : alpha << 24 | matcher.getArgb(matcher.findClosestIndex(argb, scratch)) & 0x00FFFFFF;
+        }
+    }
+
+
+    /**
+     * Blends the color channels of a pixel with the specified alpha over a background color, with rounding.
+     */
+    private static int blend(int argb, int background, int alpha) {
+        int result = 0xFF000000;
+        for (int shift = 0; shift < 24; shift += 8) {
+            final int channel = (argb >>> shift & 0xFF) * alpha + (background >>> shift & 0xFF) * (0xFF - alpha);
+            result |= (channel + 127) / 0xFF << shift;
+        }
+        return result;
+    }
+
+
+    private long getPixelCount() {
+        return (long) this.image.getWidth() * this.image.getHeight();
+    }
+
+
+    /**
+     * Returns the direction in which a color only becomes lighter, so that ordered dithering doesn't add a chroma pattern to neutral colors.
+     */
+    private static float[] lightnessDirection(ColorSpace colorSpace) {
+        switch (colorSpace) {
+            case RGB:
+                return new float[] { 1f, 1f, 1f };
+            case XYZ:
+                return new float[] { (float) ColorMath.WHITE_X, 1f, (float) ColorMath.WHITE_Z };
+            case LAB:
+            case OKLAB:
+                return new float[] { 1f, 0f, 0f };
+        }
+        throw new IllegalArgumentException("Invalid ColorSpace: " + colorSpace);
+    }
+
+
+    /**
+     * Returns the mean distance between a palette color and its closest other palette color, measured in the component space of the palette.
+     */
+    private static float estimateSpread(Palette palette) {
+        final int size = palette.size();
+        if (size < 2) {
+            return 0f;
+        }
+
+        final float[] components = new float[size * 3];
+        for (int i = 0; i < size; i++) {
+            palette.getComponents(i, components, i * 3);
+        }
+        final int samples = Math.min(size, ImageModifier.SPREAD_SAMPLES);
+        double sum = 0.0;
+        for (int sample = 0; sample < samples; sample++) {
+            final int i = (int) ((long) sample * size / samples);
+            float closest = Float.POSITIVE_INFINITY;
+            for (int j = 0; j < size; j++) {
+                if (j != i) {
+                    closest = Math.min(closest, ColorMath.squaredDistance(components[i * 3], components[i * 3 + 1], components[i * 3 + 2], components[j * 3],
+                            components[j * 3 + 1], components[j * 3 + 2]));
+                }
+            }
+            sum += Math.sqrt(closest);
+        }
+        return (float) (sum / samples);
+    }
+
+
+    /**
+     * Sets the number of threads used by the modifications. Unless an executor is set, a fork-join pool with this many threads is created for each
+     * modification. The default is 1, which processes the image on the calling thread.
+     *
+     * @param parallelism The number of threads, at least 1.
+     *
+     * @return This ImageModifier instance.
+     */
+    public ImageModifier setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+
+    /**
+     * Sets the executor the modifications run on. The executor is not shut down by this class. The parallelism determines into how many bands the image is
+     * split. Pass null to go back to using a fork-join pool.
+     *
+     * @param executor The executor or null.
+     *
+     * @return This ImageModifier instance.
+     */
+    public ImageModifier setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+
+    /**
+     * Sets how transparent pixels are reduced. The default is {@link AlphaMode#IGNORE}, which matches every pixel by its color alone.
+     *
+     * @param alphaMode The alpha mode.
+     *
+     * @return This ImageModifier instance.
+     */
+    public ImageModifier setAlphaMode(AlphaMode alphaMode) {
+        this.alphaMode = Objects.requireNonNull(alphaMode);
+        return this;
+    }
+
+
+    /**
+     * Sets the alpha from which on pixels become opaque in {@link AlphaMode#THRESHOLD} mode. The default is 128.
+     *
+     * @param alphaThreshold The threshold, 1 to 255.
+     *
+     * @return This ImageModifier instance.
+     */
+    public ImageModifier setAlphaThreshold(int alphaThreshold) {
+        if (alphaThreshold < 1 || alphaThreshold > 0xFF) {
+            throw new IllegalArgumentException("alphaThreshold must be between 1 and 255: " + alphaThreshold);
+        }
+        this.alphaThreshold = alphaThreshold;
+        return this;
+    }
+
+
+    /**
+     * Sets the background color pixels are blended over in {@link AlphaMode#MATTE} mode. Its alpha is ignored. The default is white.
+     *
+     * @param matteColor The background color in ARGB format.
+     *
+     * @return This ImageModifier instance.
+     */
+    public ImageModifier setMatteColor(int matteColor) {
+        this.matteColor = 0xFF000000 | matteColor;
+        return this;
+    }
+
+
+    /**
+     * Returns the color histogram of the image as it was before the last {@link #reduceColorsByHistogram(PaletteMatcher)} call.
+     *
+     * @return The histogram or null if the colors haven't been reduced by histogram yet.
+     */
+    public ColorHistogram getHistogram() {
+        return this.histogram;
+    }
+
+
     /**
      * Gets the modified Image object.
      *
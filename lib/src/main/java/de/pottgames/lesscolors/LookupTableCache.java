@@ -0,0 +1,267 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Stores {@link PaletteLookupTable}s in a directory so they only have to be computed once, even across separate runs of the JVM.
+ * <p>
+ * Each table is written to its own file, named after a hash of the palette colors, the color space, the tolerance and the resolution. The file starts with a
+ * small header that repeats the palette colors, followed by the raw table entries. Loading a table maps the file into memory and uses the entries in place,
+ * nothing is parsed or copied.
+ */
+public class LookupTableCache {
+    private static final int    MAGIC          = 0x4C434C54; // "LCLT"
+    private static final int    VERSION        = 3; // raised whenever the closest color rule changes, so older tables are rebuilt
+    private static final int    HEADER_INTS    = 5;
+    private static final String FILE_EXTENSION = ".lut";
+
+    private final Path      directory;
+    private int             parallelism = Runtime.getRuntime().availableProcessors();
+    private ExecutorService executor;
+
+
+    /**
+     * Creates a cache that stores its tables in the specified directory. The directory is created when the first table is stored.
+     *
+     * @param directory The cache directory.
+     */
+    public LookupTableCache(Path directory) {
+        this.directory = Objects.requireNonNull(directory);
+    }
+
+
+    /**
+     * Sets the number of threads used to build tables that aren't cached yet. Unless an executor is set, a fork-join pool with this many threads is created
+     * for each table. The default is the number of available processors.
+     *
+     * @param parallelism The number of threads, at least 1.
+     *
+     * @return This LookupTableCache instance.
+     */
+    public LookupTableCache setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+
+    /**
+     * Sets the executor tables that aren't cached yet are built on. The executor is not shut down by this class. Pass null to go back to using a fork-join
+     * pool.
+     *
+     * @param executor The executor or null.
+     *
+     * @return This LookupTableCache instance.
+     */
+    public LookupTableCache setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+
+    /**
+     * Returns the cached lookup table for the palette and resolution, or builds and stores it if there is none yet.
+     *
+     * @param palette The color palette.
+     * @param bitsPerChannel The resolution of the table in bits per color channel, ranging from 1 to 8.
+     *
+     * @return The lookup table.
+     *
+     * @throws IOException If an error occurs while reading or writing the cache file.
+     */
+    public PaletteLookupTable getOrBuild(Palette palette, int bitsPerChannel) throws IOException {
+        final PaletteLookupTable cached = this.load(palette, bitsPerChannel);
+        if (cached != null) {
+            return cached;
+        }
+
+        final PaletteLookupTable lookupTable = new PaletteLookupTable(palette, bitsPerChannel, this.parallelism, this.executor);
+        this.store(lookupTable);
+        return lookupTable;
+    }
+
+
+    /**
+     * Maps the cached lookup table for the palette and resolution into memory.
+     *
+     * @param palette The color palette.
+     * @param bitsPerChannel The resolution of the table in bits per color channel, ranging from 1 to 8.
+     *
+     * @return The lookup table or null if the cache holds no table for the palette and resolution.
+     *
+     * @throws IOException If an error occurs while reading the cache file.
+     */
+    public PaletteLookupTable load(Palette palette, int bitsPerChannel) throws IOException {
+        Objects.requireNonNull(palette);
+
+        final Path file = this.getFile(palette, bitsPerChannel);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final int headerSize = LookupTableCache.headerSize(palette);
+            final long expectedSize = (long) headerSize + PaletteLookupTable.entriesSize(palette, bitsPerChannel);
+            if (channel.size() != expectedSize) {
+                return null;
+            }
+
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, expectedSize);
+            if (!LookupTableCache.matchesHeader(buffer, palette, bitsPerChannel)) {
+                return null;
+            }
+            buffer.position(headerSize);
+            return new PaletteLookupTable(palette, bitsPerChannel, buffer.slice());
+        }
+    }
+
+
+    /**
+     * Writes a lookup table to the cache, replacing any table previously stored for the same palette and resolution.
+     *
+     * @param lookupTable The lookup table to store.
+     *
+     * @throws IOException If an error occurs while writing the cache file.
+     */
+    public void store(PaletteLookupTable lookupTable) throws IOException {
+        Objects.requireNonNull(lookupTable);
+
+        final Palette palette = lookupTable.getPalette();
+        final int bits = lookupTable.getBitsPerChannel();
+        final ByteBuffer header = ByteBuffer.allocate(LookupTableCache.headerSize(palette));
+        header.putInt(LookupTableCache.MAGIC);
+        header.putInt(LookupTableCache.VERSION);
+        header.putInt(palette.getColorSpace().ordinal());
+        header.putInt(bits);
+        header.putInt(palette.size());
+        for (int i = 0; i < palette.size(); i++) {
+            header.putInt(palette.getArgb(i));
+        }
+        header.flip();
+
+        Files.createDirectories(this.directory);
+        final Path file = this.getFile(palette, bits);
+        final Path tempFile = Files.createTempFile(this.directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final ByteBuffer entries = lookupTable.getEntries();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                while (entries.hasRemaining()) {
+                    channel.write(entries);
+                }
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+
+    /**
+     * Returns the file in which the lookup table for the palette and resolution is stored.
+     *
+     * @param palette The color palette.
+     * @param bitsPerChannel The resolution of the table in bits per color channel.
+     *
+     * @return The path of the cache file.
+     */
+    public Path getFile(Palette palette, int bitsPerChannel) {
+        return this.directory.resolve(LookupTableCache.key(palette, bitsPerChannel) + LookupTableCache.FILE_EXTENSION);
+    }
+
+
+    /**
+     * Returns the cache directory.
+     *
+     * @return the cache directory
+     */
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+
+    static String key(Palette palette, int bitsPerChannel) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(palette.size() * 4 + 4);
+        for (int i = 0; i < palette.size(); i++) {
+            buffer.putInt(palette.getArgb(i));
+        }
+        buffer.putInt(bitsPerChannel);
+        digest.update(buffer.array());
+        digest.update(palette.getColorSpace().name().getBytes(StandardCharsets.UTF_8));
+        // exact palettes keep the keys they had before tolerances existed
+        if (palette.getTolerance() > 0f) {
+            digest.update(Float.toString(palette.getTolerance()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        final byte[] hash = digest.digest();
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 16; i++) {
+            builder.append(String.format("%02x", hash[i]));
+        }
+        return builder.toString();
+    }
+
+
+    private static int headerSize(Palette palette) {
+        return (LookupTableCache.HEADER_INTS + palette.size()) * 4;
+    }
+
+
+    private static boolean matchesHeader(ByteBuffer buffer, Palette palette, int bitsPerChannel) {
+        if (buffer.getInt() != LookupTableCache.MAGIC || buffer.getInt() != LookupTableCache.VERSION) {
+            return false;
+        }
+        if (buffer.getInt() != palette.getColorSpace().ordinal() || buffer.getInt() != bitsPerChannel || buffer.getInt() != palette.size()) {
+            return false;
+        }
+        for (int i = 0; i < palette.size(); i++) {
+            if (buffer.getInt() != palette.getArgb(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,284 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects how long each {@link ProcessingStage} takes and how much work the color matching does. Metrics are only recorded while an instance is activated
+ * with {@link #activate(Metrics)}; otherwise every instrumented spot costs a single read of a volatile field.
+ * <p>
+ * The counters are:
+ * <ul>
+ * <li>the number of completed stages, their total duration and the number of pixels they processed</li>
+ * <li>the number of color distances computed by {@link Palette} searches</li>
+ * <li>the number of conversions found in a {@link ConversionCache} and the number of pixels whose match was reused by
+ * {@link ImageModifier#reduceColorsByHistogram(PaletteMatcher)}, as cache hits, and the opposite as cache misses</li>
+ * </ul>
+ * All methods are thread-safe.
+ */
+public final class Metrics {
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private static volatile Metrics active;
+
+    private final LongAdder[]           stageCounts         = Metrics.adders(ProcessingStage.values().length);
+    private final LongAdder[]           stageNanos          = Metrics.adders(ProcessingStage.values().length);
+    private final LongAdder[]           stagePixels         = Metrics.adders(ProcessingStage.values().length);
+    private final LongAdder             distanceEvaluations = new LongAdder();
+    private final LongAdder             cacheHits           = new LongAdder();
+    private final LongAdder             cacheMisses         = new LongAdder();
+    private final List<MetricsListener> listeners           = new CopyOnWriteArrayList<>();
+
+
+    /**
+     * Makes the specified metrics record everything that is processed from now on, in all threads. The previously active metrics stop recording.
+     *
+     * @param metrics The metrics to record to, or null to stop recording.
+     */
+    public static void activate(Metrics metrics) {
+        Metrics.active = metrics;
+    }
+
+
+    /**
+     * Returns the metrics that are currently recording.
+     *
+     * @return The active metrics or null if nothing is recorded.
+     */
+    public static Metrics getActive() {
+        return Metrics.active;
+    }
+
+
+    /**
+     * Adds a listener that is called whenever a stage is completed.
+     *
+     * @param listener The listener.
+     *
+     * @return This Metrics instance.
+     */
+    public Metrics addListener(MetricsListener listener) {
+        this.listeners.add(Objects.requireNonNull(listener));
+        return this;
+    }
+
+
+    /**
+     * Adds all listeners that are declared as {@link java.util.ServiceLoader} services of {@link MetricsListener}.
+     *
+     * @return This Metrics instance.
+     */
+    public Metrics addRegisteredListeners() {
+        for (final MetricsListener listener : ServiceLoader.load(MetricsListener.class, Metrics.class.getClassLoader())) {
+            this.listeners.add(listener);
+        }
+        return this;
+    }
+
+
+    /**
+     * Returns the number of times the stage was completed.
+     *
+     * @param stage The stage.
+     *
+     * @return the number of completed stages
+     */
+    public long getStageCount(ProcessingStage stage) {
+        return this.stageCounts[stage.ordinal()].sum();
+    }
+
+
+    /**
+     * Returns the total duration of the stage. Stages that ran concurrently add up, so this may exceed the elapsed time.
+     *
+     * @param stage The stage.
+     *
+     * @return the duration in nanoseconds
+     */
+    public long getStageNanos(ProcessingStage stage) {
+        return this.stageNanos[stage.ordinal()].sum();
+    }
+
+
+    /**
+     * Returns the number of pixels processed by the stage.
+     *
+     * @param stage The stage.
+     *
+     * @return the number of pixels
+     */
+    public long getStagePixels(ProcessingStage stage) {
+        return this.stagePixels[stage.ordinal()].sum();
+    }
+
+
+    /**
+     * Returns the number of pixels the stage processed per second of its duration.
+     *
+     * @param stage The stage.
+     *
+     * @return the throughput of the stage, 0 if it hasn't been recorded
+     */
+    public double getPixelsPerSecond(ProcessingStage stage) {
+        final long nanos = this.getStageNanos(stage);
+        return nanos == 0L ? 0.0 : this.getStagePixels(stage) * 1e9 / nanos;
+    }
+
+
+    /**
+     * Returns the number of color distances computed by palette searches.
+     *
+     * @return the number of distance evaluations
+     */
+    public long getDistanceEvaluations() {
+        return this.distanceEvaluations.sum();
+    }
+
+
+    /**
+     * Returns the number of color conversions and matches that were reused instead of computed.
+     *
+     * @return the number of cache hits
+     */
+    public long getCacheHits() {
+        return this.cacheHits.sum();
+    }
+
+
+    /**
+     * Returns the number of color conversions and matches that had to be computed because they weren't cached.
+     *
+     * @return the number of cache misses
+     */
+    public long getCacheMisses() {
+        return this.cacheMisses.sum();
+    }
+
+
+    /**
+     * Resets all counters to zero. Counts recorded concurrently with the reset may be lost.
+     */
+    public void reset() {
+        for (int i = 0; i < this.stageCounts.length; i++) {
+            this.stageCounts[i].reset();
+            this.stageNanos[i].reset();
+            this.stagePixels[i].reset();
+        }
+        this.distanceEvaluations.reset();
+        this.cacheHits.reset();
+        this.cacheMisses.reset();
+    }
+
+
+    /**
+     * Returns all counters as a JSON object. Durations are given in milliseconds.
+     *
+     * @return the counters in JSON format
+     */
+    public String toJson() {
+        final StringBuilder json = new StringBuilder("{\"stages\":{");
+        for (final ProcessingStage stage : ProcessingStage.values()) {
+            if (stage.ordinal() > 0) {
+                json.append(',');
+            }
+            json.append(String.format(Locale.ROOT, "\"%s\":{\"count\":%d,\"millis\":%.3f,\"pixels\":%d,\"pixelsPerSecond\":%.1f}",
+                    stage.name().toLowerCase(Locale.ROOT), this.getStageCount(stage), this.getStageNanos(stage) / 1e6, this.getStagePixels(stage),
+                    this.getPixelsPerSecond(stage)));
+        }
+        json.append(String.format(Locale.ROOT, "},\"distanceEvaluations\":%d,\"cacheHits\":%d,\"cacheMisses\":%d}", this.getDistanceEvaluations(),
+                this.getCacheHits(), this.getCacheMisses()));
+        return json.toString();
+    }
+
+
+    @Override
+    public String toString() {
+        return this.toJson();
+    }
+
+
+    /**
+     * Starts timing a stage.
+     *
+     * @return The start time to pass to {@link #stopTimer(ProcessingStage, long, long)}.
+     */
+    static long startTimer() {
+        return Metrics.active == null ? Metrics.NOT_STARTED : System.nanoTime();
+    }
+
+
+    /**
+     * Records a completed stage with the active metrics, if the timer was started while metrics were active.
+     *
+     * @param stage The completed stage.
+     * @param startTime The value returned by {@link #startTimer()}.
+     * @param pixels The number of pixels processed by the stage.
+     */
+    static void stopTimer(ProcessingStage stage, long startTime, long pixels) {
+        final Metrics metrics = Metrics.active;
+        if (metrics == null || startTime == Metrics.NOT_STARTED) {
+            return;
+        }
+
+        final long nanos = System.nanoTime() - startTime;
+        final int ordinal = stage.ordinal();
+        metrics.stageCounts[ordinal].increment();
+        metrics.stageNanos[ordinal].add(nanos);
+        metrics.stagePixels[ordinal].add(pixels);
+        for (final MetricsListener listener : metrics.listeners) {
+            listener.stageCompleted(metrics, stage, nanos, pixels);
+        }
+    }
+
+
+    static void countDistanceEvaluations(long count) {
+        final Metrics metrics = Metrics.active;
+        if (metrics != null) {
+            metrics.distanceEvaluations.add(count);
+        }
+    }
+
+
+    static void countCacheHits(long count) {
+        final Metrics metrics = Metrics.active;
+        if (metrics != null) {
+            metrics.cacheHits.add(count);
+        }
+    }
+
+
+    static void countCacheMisses(long count) {
+        final Metrics metrics = Metrics.active;
+        if (metrics != null) {
+            metrics.cacheMisses.add(count);
+        }
+    }
+
+
+    private static LongAdder[] adders(int count) {
+        final LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+}
@@ -0,0 +1,36 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+/**
+ * Receives the duration of each stage recorded by {@link Metrics}, e.g. to export them to a monitoring system. Listeners are called on the thread that
+ * completed the stage, possibly by multiple threads at once, so they must be thread-safe and should return quickly.
+ * <p>
+ * Listeners can be added with {@link Metrics#addListener(MetricsListener)}, or declared as a {@link java.util.ServiceLoader} service and added with
+ * {@link Metrics#addRegisteredListeners()}.
+ */
+public interface MetricsListener {
+
+    /**
+     * Called after a stage has been completed.
+     *
+     * @param metrics The metrics the stage was recorded by, with the counters already updated.
+     * @param stage The completed stage.
+     * @param nanos The duration of the stage in nanoseconds.
+     * @param pixels The number of pixels processed by the stage.
+     */
+    void stageCompleted(Metrics metrics, ProcessingStage stage, long nanos, long pixels);
+
+}
@@ -0,0 +1,224 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Reduces one image to the colors of many palettes, for example to preview an image with several candidate palettes. The work that doesn't depend on the
+ * palette is done only once and shared by all reductions: the distinct colors of the image are counted, their components are converted to the color space of
+ * the image, and every pixel is replaced by the position of its color among the distinct colors. Each reduction then only matches the distinct colors
+ * against its palette and writes its own output image.
+ * <p>
+ * The source image is never modified and must not be modified after the first reduction either. {@link #reduce(PaletteMatcher)} may be called from
+ * multiple threads at once. Matching is done like {@link ImageModifier#reduceColors(PaletteMatcher)} with the default {@link AlphaMode#IGNORE}. A
+ * {@link Palette} in the color space of the image is searched with the shared components, any other matcher converts the colors itself.
+ */
+public class MultiPaletteReducer {
+    /**
+     * The number of distinct colors from which on a single reduction matches them concurrently.
+     */
+    private static final int PARALLEL_RESOLVE_THRESHOLD = 4096;
+
+    private final Image     source;
+    private int             parallelism = 1;
+    private ExecutorService executor;
+
+    // the shared data, created by the first reduction and read-only afterwards
+    private int[]   colors;
+    private float[] components;
+    private int[]   slots;
+
+
+    /**
+     * Creates a reducer for the specified source image.
+     *
+     * @param source The image to reduce, it is not modified.
+     */
+    public MultiPaletteReducer(Image source) {
+        this.source = Objects.requireNonNull(source);
+    }
+
+
+    /**
+     * Reduces a copy of the source image to the colors of each palette. The reductions run concurrently, each of them on a single thread.
+     *
+     * @param matchers The matchers that find the closest palette colors.
+     *
+     * @return The reduced images, in the order of the matchers.
+     */
+    public List<Image> reduceAll(List<? extends PaletteMatcher> matchers) {
+        for (final PaletteMatcher matcher : matchers) {
+            if (matcher.size() == 0) {
+                throw new IllegalArgumentException("palette must contain at least one color");
+            }
+        }
+        this.prepare();
+
+        final Image[] results = new Image[matchers.size()];
+        RowBands.process(results.length, this.parallelism, this.executor, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                results[i] = this.reduce(matchers.get(i), 1, null);
+            }
+        });
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+
+    /**
+     * Reduces a copy of the source image to the colors of a palette. This method is thread-safe, callers that reduce to many palettes can run it concurrently
+     * and write each result as soon as it is done to bound the number of images in memory.
+     *
+     * @param matcher The matcher that finds the closest palette color.
+     *
+     * @return The reduced image.
+     */
+    public Image reduce(PaletteMatcher matcher) {
+        if (matcher.size() == 0) {
+            throw new IllegalArgumentException("palette must contain at least one color");
+        }
+        this.prepare();
+        return this.reduce(matcher, this.parallelism, this.executor);
+    }
+
+
+    private Image reduce(PaletteMatcher matcher, int parallelism, ExecutorService executor) {
+        final long startTime = Metrics.startTimer();
+        final int[] replacements = new int[this.colors.length];
+        final Palette palette = matcher instanceof Palette && ((Palette) matcher).getColorSpace() == this.source.getColorSpace() ? (Palette) matcher : null;
+        final RowBands.Task resolve = (from, to) -> {
+            final float[] scratch = new float[3];
+            for (int i = from; i < to; i++) {
+                final int paletteIndex = palette == null ? matcher.findClosestIndex(this.colors[i], scratch)
+                        : palette.findClosestIndex(this.colors[i], this.components[i * 3], this.components[i * 3 + 1], this.components[i * 3 + 2]);
+                replacements[i] = matcher.getArgb(paletteIndex);
+            }
+        };
+        if (this.colors.length >= MultiPaletteReducer.PARALLEL_RESOLVE_THRESHOLD) {
+            RowBands.process(this.colors.length, parallelism, executor, resolve);
+        } else {
+            resolve.process(0, this.colors.length);
+        }
+
+        final Image result = new Image(this.source.getWidth(), this.source.getHeight(), this.source.getColorSpace());
+        final int[] pixels = result.getPixels();
+        final int width = this.source.getWidth();
+        RowBands.process(this.source.getHeight(), parallelism, executor, (fromRow, toRow) -> {
+            for (int i = fromRow * width; i < toRow * width; i++) {
+                pixels[i] = replacements[this.slots[i]];
+            }
+        });
+
+        Metrics.countCacheHits(this.slots.length - this.colors.length);
+        Metrics.countCacheMisses(this.colors.length);
+        Metrics.stopTimer(ProcessingStage.MATCH, startTime, this.slots.length);
+        return result;
+    }
+
+
+    /**
+     * Counts the distinct colors, converts them and maps every pixel to its color, unless that has been done already.
+     */
+    private synchronized void prepare() {
+        if (this.slots != null) {
+            return;
+        }
+
+        final long startTime = Metrics.startTimer();
+        final int[] pixels = this.source.getPixels();
+        final ColorHistogram histogram = ColorHistogram.of(this.source);
+        final int[] distinctColors = histogram.getColors();
+        final ArgbIntMap positions = new ArgbIntMap(distinctColors.length);
+        for (int i = 0; i < distinctColors.length; i++) {
+            positions.put(distinctColors[i], i);
+        }
+        final float[] distinctComponents = new float[distinctColors.length * 3];
+        final ColorSpace colorSpace = this.source.getColorSpace();
+        RowBands.process(distinctColors.length, this.parallelism, this.executor, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                ColorMath.argbToComponents(distinctColors[i], colorSpace, distinctComponents, i * 3);
+            }
+        });
+        final int[] pixelSlots = new int[pixels.length];
+        final int width = this.source.getWidth();
+        RowBands.process(this.source.getHeight(), this.parallelism, this.executor, (fromRow, toRow) -> {
+            for (int i = fromRow * width; i < toRow * width; i++) {
+                pixelSlots[i] = positions.get(pixels[i], 0);
+            }
+        });
+
+        this.colors = distinctColors;
+        this.components = distinctComponents;
+        this.slots = pixelSlots;
+        Metrics.stopTimer(ProcessingStage.CONVERT, startTime, pixels.length);
+    }
+
+
+    /**
+     * Returns the number of distinct colors of the source image, which is the number of colors each reduction has to match.
+     *
+     * @return the number of distinct colors
+     */
+    public int getDistinctColorCount() {
+        this.prepare();
+        return this.colors.length;
+    }
+
+
+    /**
+     * Sets the number of threads. {@link #reduceAll(List)} runs that many reductions at once, {@link #reduce(PaletteMatcher)} splits a single reduction into
+     * bands. Unless an executor is set, a fork-join pool with this many threads is created for each call. The default is 1, which runs everything on the
+     * calling thread.
+     *
+     * @param parallelism The number of threads, at least 1.
+     *
+     * @return This MultiPaletteReducer instance.
+     */
+    public MultiPaletteReducer setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+
+    /**
+     * Sets the executor the reductions run on. The executor is not shut down by this class. Pass null to go back to using a fork-join pool.
+     *
+     * @param executor The executor or null.
+     *
+     * @return This MultiPaletteReducer instance.
+     */
+    public MultiPaletteReducer setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+
+    /**
+     * Gets the source image.
+     *
+     * @return The source image.
+     */
+    public Image getSource() {
+        return this.source;
+    }
+
+}
@@ -0,0 +1,304 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The Palette class represents the set of colors an image can be reduced to. Each color is stored only once, no matter how often it appears in the palette
+ * image, and colors keep the order of their first appearance. Color distances are computed with the {@link ColorMath} kernels, and near ties are settled
+ * with {@link Color#distance(Color, ColorSpace)}, so ARGB and {@link Color} queries return the same color as {@link Image#findClosestColor(Color)} on the
+ * palette image.
+ * <p>
+ * In the LAB color space, matching can be sped up with a tolerance, see {@link #withTolerance(float)}. A palette with a tolerance may return a color whose
+ * CIEDE2000 difference to the query is up to the tolerance larger than that of the closest color. A tolerance of 0, the default, always finds the closest
+ * color. Differences below 1 are generally considered imperceptible.
+ */
+public class Palette implements PaletteMatcher {
+    private final ColorSpace   colorSpace;
+    private final int[]        colors;
+    private final PaletteIndex index;
+
+
+    /**
+     * Loads a palette image from a file path and collects its unique colors.
+     *
+     * @param path The file path of the palette image to load.
+     * @param colorSpace The color space in which color distances are computed.
+     *
+     * @return A Palette object holding the unique colors of the palette image.
+     *
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public static Palette fromFilePath(String path, ColorSpace colorSpace) throws IOException {
+        return Palette.fromImage(Image.fromFilePath(path, colorSpace));
+    }
+
+
+    /**
+     * Loads a palette image from a File object and collects its unique colors.
+     *
+     * @param file The File object representing the palette image to load.
+     * @param colorSpace The color space in which color distances are computed.
+     *
+     * @return A Palette object holding the unique colors of the palette image.
+     *
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public static Palette fromFile(File file, ColorSpace colorSpace) throws IOException {
+        return Palette.fromImage(Image.fromFile(file, colorSpace));
+    }
+
+
+    /**
+     * Collects the unique colors of an image, using the color space of the image.
+     *
+     * @param image The Image object representing the color palette.
+     *
+     * @return A Palette object holding the unique colors of the image.
+     */
+    public static Palette fromImage(Image image) {
+        Objects.requireNonNull(image);
+
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int[] colors = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                colors[y * width + x] = image.getArgb(x, y);
+            }
+        }
+        return new Palette(colors, image.getColorSpace());
+    }
+
+
+    /**
+     * Creates a palette from ARGB colors. Duplicates are dropped, the remaining colors keep the order of their first appearance.
+     *
+     * @param argbColors The palette colors in ARGB format.
+     * @param colorSpace The color space in which color distances are computed.
+     */
+    public Palette(int[] argbColors, ColorSpace colorSpace) {
+        this(argbColors, colorSpace, 0f);
+    }
+
+
+    /**
+     * Creates a palette from ARGB colors whose LAB matches may be up to the tolerance further away than the closest color. Duplicates are dropped, the
+     * remaining colors keep the order of their first appearance.
+     *
+     * @param argbColors The palette colors in ARGB format.
+     * @param colorSpace The color space in which color distances are computed.
+     * @param tolerance The CIEDE2000 difference a match may be off by, 0 for exact matches. Only the LAB color space makes use of it.
+     */
+    public Palette(int[] argbColors, ColorSpace colorSpace, float tolerance) {
+        Objects.requireNonNull(argbColors);
+        Objects.requireNonNull(colorSpace);
+
+        final Set<Integer> seen = new HashSet<>();
+        final int[] uniqueColors = new int[argbColors.length];
+        int size = 0;
+        for (final int argb : argbColors) {
+            if (seen.add(argb)) {
+                uniqueColors[size++] = argb;
+            }
+        }
+
+        this.colorSpace = colorSpace;
+        this.colors = Arrays.copyOf(uniqueColors, size);
+        this.index = new PaletteIndex(this.colors, colorSpace, tolerance);
+    }
+
+
+    /**
+     * Returns a palette with the same colors whose LAB matches may be up to the tolerance further away than the closest color. The search for the closest
+     * LAB color skips palette colors that can only be closer by less than the tolerance, which saves most CIEDE2000 evaluations for large palettes.
+     *
+     * @param tolerance The CIEDE2000 difference a match may be off by, 0 for exact matches.
+     *
+     * @return A new Palette object, or this palette if the tolerance doesn't change.
+     */
+    public Palette withTolerance(float tolerance) {
+        return tolerance == this.getTolerance() ? this : new Palette(this.colors, this.colorSpace, tolerance);
+    }
+
+
+    /**
+     * Finds and returns the closest palette color to the specified color.
+     *
+     * @param color The color for which to find the closest match.
+     *
+     * @return The closest palette color in the color space of this palette, or null if the palette is empty.
+     */
+    public Color findClosestColor(Color color) {
+        final int closestIndex = this.findClosestIndex(color);
+        return closestIndex < 0 ? null : Color.fromARGBInt(this.colors[closestIndex]).toColorSpace(this.colorSpace);
+    }
+
+
+    /**
+     * Finds the index of the closest palette color to the specified color.
+     *
+     * @param color The color for which to find the closest match.
+     *
+     * @return The index of the closest palette color, or -1 if the palette is empty.
+     */
+    public int findClosestIndex(Color color) {
+        return this.index.findClosestIndex(color);
+    }
+
+
+    /**
+     * Finds the index of the closest palette color to the specified ARGB color.
+     *
+     * @param argb The ARGB color for which to find the closest match.
+     *
+     * @return The index of the closest palette color, or -1 if the palette is empty.
+     */
+    @Override
+    public int findClosestIndex(int argb) {
+        return this.index.findClosestIndex(argb);
+    }
+
+
+    /**
+     * Finds the index of the closest palette color to the specified ARGB color, using the scratch array for its components instead of allocating one.
+     *
+     * @param argb The ARGB color for which to find the closest match.
+     * @param scratch An array of at least three floats owned by the caller. Its contents are overwritten.
+     *
+     * @return The index of the closest palette color, or -1 if the palette is empty.
+     */
+    @Override
+    public int findClosestIndex(int argb, float[] scratch) {
+        return this.index.findClosestIndex(argb, scratch);
+    }
+
+
+    /**
+     * Finds the index of the closest palette color to the specified ARGB color whose components in the color space of this palette are already known.
+     *
+     * @param argb The ARGB color for which to find the closest match.
+     * @param c1 The first component of the color.
+     * @param c2 The second component of the color.
+     * @param c3 The third component of the color.
+     *
+     * @return The index of the closest palette color, or -1 if the palette is empty.
+     */
+    int findClosestIndex(int argb, float c1, float c2, float c3) {
+        return this.index.findClosestIndex(argb, c1, c2, c3);
+    }
+
+
+    /**
+     * Finds the index of the closest palette color to the color with the specified components in the color space of this palette, see {@link ColorMath}.
+     * Colors are ranked by the kernels alone, so near ties may be resolved differently than for an ARGB query.
+     *
+     * @param c1 The first component.
+     * @param c2 The second component.
+     * @param c3 The third component.
+     *
+     * @return The index of the closest palette color, or -1 if the palette is empty.
+     */
+    public int findClosestIndex(float c1, float c2, float c3) {
+        return this.index.findClosestIndex(c1, c2, c3);
+    }
+
+
+    /**
+     * Returns the palette color at the specified index in ARGB format.
+     *
+     * @param index The index of the palette color.
+     *
+     * @return The palette color in ARGB format.
+     */
+    @Override
+    public int getArgb(int index) {
+        return this.colors[index];
+    }
+
+
+    /**
+     * Copies the components of a palette color in the color space of this palette into the destination array, see {@link ColorMath}.
+     *
+     * @param index The index of the palette color.
+     * @param destination The array the three components are written to.
+     * @param offset The index of the first component in the destination array.
+     */
+    public void getComponents(int index, float[] destination, int offset) {
+        this.index.getComponents(index, destination, offset);
+    }
+
+
+    /**
+     * Returns a copy of all palette colors in ARGB format.
+     *
+     * @return The palette colors in ARGB format.
+     */
+    public int[] toArgbArray() {
+        return this.colors.clone();
+    }
+
+
+    /**
+     * Creates an image that is one pixel high and holds the palette colors in order, so a generated palette can be saved and loaded again as a palette image.
+     *
+     * @return A new Image object in the color space of this palette.
+     */
+    public Image toImage() {
+        final Image image = new Image(this.colors.length, 1, this.colorSpace);
+        for (int x = 0; x < this.colors.length; x++) {
+            image.setArgb(this.colors[x], x, 0);
+        }
+        return image;
+    }
+
+
+    /**
+     * Returns the number of unique colors in this palette.
+     *
+     * @return the number of colors
+     */
+    @Override
+    public int size() {
+        return this.colors.length;
+    }
+
+
+    /**
+     * Returns the CIEDE2000 difference by which a LAB match may be further away than the closest color.
+     *
+     * @return the tolerance, 0 for exact matches
+     */
+    public float getTolerance() {
+        return this.index.getTolerance();
+    }
+
+
+    /**
+     * Returns the color space in which this palette computes color distances.
+     *
+     * @return the color space of this palette
+     */
+    public ColorSpace getColorSpace() {
+        return this.colorSpace;
+    }
+
+}
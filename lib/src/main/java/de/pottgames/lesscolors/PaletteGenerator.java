@@ -0,0 +1,466 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The PaletteGenerator class picks the colors that represent one or more images best, so that images can be reduced to their own best N colors instead of a
+ * hand-made palette. The colors of all added images are counted in a single histogram. An initial palette is then picked with a {@link QuantizationMethod}
+ * and refined by k-means in the color space of the generator, which moves each palette color to the weighted mean of the image colors closest to it.
+ * <p>
+ * Images can be added from multiple threads at once. Fully transparent pixels are ignored and alpha is dropped, the generated colors are always opaque. The
+ * k-means assignment step runs on a fork-join pool with the parallelism of the generator, or on its executor, and the result doesn't depend on either.
+ */
+public class PaletteGenerator {
+    private static final int DEFAULT_REFINEMENT_ITERATIONS = 8;
+    private static final int OCTREE_DEPTH                  = 5;
+    private static final int BANDS_PER_THREAD              = 4;
+
+    private final int          colorCount;
+    private final ColorSpace   colorSpace;
+    private QuantizationMethod method               = QuantizationMethod.MEDIAN_CUT;
+    private int                refinementIterations = PaletteGenerator.DEFAULT_REFINEMENT_ITERATIONS;
+    private int                parallelism          = 1;
+    private ExecutorService    executor;
+
+    // the histogram of all added images, guarded by this
+    private final ArgbIntMap slots  = new ArgbIntMap(1024);
+    private int[]            colors = new int[1024];
+    private long[]           counts = new long[1024];
+    private int              size;
+
+
+    /**
+     * Creates a generator for palettes with up to the specified number of colors.
+     *
+     * @param colorCount The maximum number of palette colors.
+     * @param colorSpace The color space in which colors are compared and averaged.
+     */
+    public PaletteGenerator(int colorCount, ColorSpace colorSpace) {
+        if (colorCount < 1) {
+            throw new IllegalArgumentException("colorCount must be at least 1: " + colorCount);
+        }
+        this.colorCount = colorCount;
+        this.colorSpace = Objects.requireNonNull(colorSpace);
+    }
+
+
+    /**
+     * Adds the colors of an image to the histogram. The colors are counted without holding a lock, only merging them into the histogram is synchronized.
+     *
+     * @param image The image.
+     *
+     * @return This PaletteGenerator instance.
+     */
+    public PaletteGenerator addImage(Image image) {
+        final ColorHistogram histogram = ColorHistogram.of(image);
+        final int[] imageColors = histogram.getColors();
+        synchronized (this) {
+            for (final int argb : imageColors) {
+                if (argb >>> 24 != 0) {
+                    this.count(argb | 0xFF000000, histogram.getCount(argb));
+                }
+            }
+        }
+        return this;
+    }
+
+
+    private void count(int argb, long count) {
+        int slot = this.slots.get(argb, -1);
+        if (slot < 0) {
+            slot = this.size++;
+            if (slot == this.colors.length) {
+                this.colors = Arrays.copyOf(this.colors, slot * 2);
+                this.counts = Arrays.copyOf(this.counts, slot * 2);
+            }
+            this.colors[slot] = argb;
+            this.slots.put(argb, slot);
+        }
+        this.counts[slot] += count;
+    }
+
+
+    /**
+     * Returns the number of distinct opaque colors of all images added so far.
+     *
+     * @return the number of distinct colors
+     */
+    public synchronized int getDistinctColorCount() {
+        return this.size;
+    }
+
+
+    /**
+     * Generates the palette from the colors of all images added so far. If there are no more distinct colors than requested, they are returned as they are.
+     *
+     * @return The palette, in the color space of this generator.
+     *
+     * @throws IllegalStateException If no colors have been added.
+     */
+    public Palette generate() {
+        final int[] histogramColors;
+        final long[] weights;
+        synchronized (this) {
+            histogramColors = Arrays.copyOf(this.colors, this.size);
+            weights = Arrays.copyOf(this.counts, this.size);
+        }
+        final int n = histogramColors.length;
+        if (n == 0) {
+            throw new IllegalStateException("no colors have been added");
+        }
+        if (n <= this.colorCount) {
+            return new Palette(histogramColors, this.colorSpace);
+        }
+
+        final float[] components = new float[n * 3];
+        RowBands.process(n, this.parallelism, this.executor, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                ColorMath.argbToComponents(histogramColors[i], this.colorSpace, components, i * 3);
+            }
+        });
+        int[] palette;
+        if (this.method == QuantizationMethod.OCTREE) {
+            palette = this.octree(histogramColors, components, weights);
+        } else {
+            palette = this.medianCut(components, weights);
+        }
+        palette = this.refine(palette, components, weights);
+        return new Palette(palette, this.colorSpace);
+    }
+
+
+    private int[] medianCut(float[] components, long[] weights) {
+        final int[] order = new int[weights.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        final PriorityQueue<Box> boxes = new PriorityQueue<>(Comparator.comparingDouble((Box box) -> box.error).reversed());
+        boxes.add(new Box(0, order.length, order, components, weights));
+        final List<Box> finished = new ArrayList<>();
+        while (!boxes.isEmpty() && boxes.size() + finished.size() < this.colorCount) {
+            final Box box = boxes.poll();
+            if (box.to - box.from < 2) {
+                finished.add(box);
+                continue;
+            }
+            final int split = box.split(order, components, weights);
+            boxes.add(new Box(box.from, split, order, components, weights));
+            boxes.add(new Box(split, box.to, order, components, weights));
+        }
+        finished.addAll(boxes);
+
+        final int[] palette = new int[finished.size()];
+        for (int i = 0; i < palette.length; i++) {
+            final double[] mean = finished.get(i).mean;
+            palette[i] = ColorMath.componentsToArgb(this.colorSpace, (float) mean[0], (float) mean[1], (float) mean[2]);
+        }
+        return palette;
+    }
+
+
+    private int[] octree(int[] histogramColors, float[] components, long[] weights) {
+        final int depth = PaletteGenerator.OCTREE_DEPTH;
+        final long[][] nodeWeights = new long[depth + 1][];
+        nodeWeights[depth] = new long[1 << 3 * depth];
+        final int[] bins = new int[histogramColors.length];
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] = PaletteGenerator.octreeIndex(histogramColors[i], depth);
+            nodeWeights[depth][bins[i]] += weights[i];
+        }
+        int leafCount = 0;
+        for (final long weight : nodeWeights[depth]) {
+            leafCount += weight > 0L ? 1 : 0;
+        }
+        for (int level = depth - 1; level >= 0; level--) {
+            nodeWeights[level] = new long[1 << 3 * level];
+            for (int node = 0; node < nodeWeights[level + 1].length; node++) {
+                nodeWeights[level][node >>> 3] += nodeWeights[level + 1][node];
+            }
+        }
+
+        // merge the children of the lightest nodes into them, level by level from the bottom, so that the children are always leaves
+        final boolean[][] merged = new boolean[depth][];
+        for (int level = depth - 1; level >= 0; level--) {
+            merged[level] = new boolean[nodeWeights[level].length];
+            final long[] levelWeights = nodeWeights[level];
+            final Integer[] nodes = new Integer[levelWeights.length];
+            for (int node = 0; node < nodes.length; node++) {
+                nodes[node] = node;
+            }
+            Arrays.sort(nodes, Comparator.comparingLong(node -> levelWeights[node]));
+            for (final int node : nodes) {
+                if (leafCount <= this.colorCount) {
+                    break;
+                }
+                if (levelWeights[node] == 0L) {
+                    continue;
+                }
+                int children = 0;
+                for (int child = node << 3; child < node + 1 << 3; child++) {
+                    children += nodeWeights[level + 1][child] > 0L ? 1 : 0;
+                }
+                merged[level][node] = true;
+                leafCount -= children - 1;
+            }
+        }
+
+        // every color belongs to the leaf of its shallowest merged ancestor, or to its own bin
+        final ArgbIntMap leaves = new ArgbIntMap(leafCount);
+        final double[] sums = new double[leafCount * 3];
+        final long[] leafWeights = new long[leafCount];
+        for (int i = 0; i < bins.length; i++) {
+            int key = depth << 28 | bins[i];
+            for (int level = 0; level < depth; level++) {
+                final int ancestor = bins[i] >>> 3 * (depth - level);
+                if (merged[level][ancestor]) {
+                    key = level << 28 | ancestor;
+                    break;
+                }
+            }
+            int leaf = leaves.get(key, -1);
+            if (leaf < 0) {
+                leaf = leaves.size();
+                leaves.put(key, leaf);
+            }
+            leafWeights[leaf] += weights[i];
+            for (int c = 0; c < 3; c++) {
+                sums[leaf * 3 + c] += (double) weights[i] * components[i * 3 + c];
+            }
+        }
+
+        final int[] palette = new int[leaves.size()];
+        for (int leaf = 0; leaf < palette.length; leaf++) {
+            final double weight = leafWeights[leaf];
+            palette[leaf] = ColorMath.componentsToArgb(this.colorSpace, (float) (sums[leaf * 3] / weight), (float) (sums[leaf * 3 + 1] / weight),
+                    (float) (sums[leaf * 3 + 2] / weight));
+        }
+        return palette;
+    }
+
+
+    /**
+     * Interleaves the upper bits of the channels, so that the parent of a node is its index shifted right by 3.
+     */
+    private static int octreeIndex(int argb, int depth) {
+        int index = 0;
+        for (int level = 0; level < depth; level++) {
+            final int bit = 7 - level;
+            index = index << 3 | (argb >>> 16 + bit & 1) << 2 | (argb >>> 8 + bit & 1) << 1 | argb >>> bit & 1;
+        }
+        return index;
+    }
+
+
+    /**
+     * Lloyd's k-means on the histogram. The colors are split into a fixed number of bands whose sums are added in order, so the result doesn't depend on the
+     * parallelism. Stops early once no palette color moves anymore.
+     */
+    private int[] refine(int[] palette, float[] components, long[] weights) {
+        final int n = weights.length;
+        final int k = palette.length;
+        final int bandCount = Math.min(n, Math.max(1, this.parallelism) * PaletteGenerator.BANDS_PER_THREAD);
+        int[] centroids = palette;
+        for (int iteration = 0; iteration < this.refinementIterations; iteration++) {
+            final PaletteIndex index = new PaletteIndex(centroids, this.colorSpace);
+            final double[][] bandSums = new double[bandCount][];
+            final long[][] bandWeights = new long[bandCount][];
+            RowBands.process(bandCount, this.parallelism, this.executor, (fromBand, toBand) -> {
+                for (int band = fromBand; band < toBand; band++) {
+                    final double[] sums = new double[k * 3];
+                    final long[] clusterWeights = new long[k];
+                    for (int i = (int) ((long) n * band / bandCount); i < (int) ((long) n * (band + 1) / bandCount); i++) {
+                        final int cluster = index.findClosestIndex(components[i * 3], components[i * 3 + 1], components[i * 3 + 2]);
+                        clusterWeights[cluster] += weights[i];
+                        for (int c = 0; c < 3; c++) {
+                            sums[cluster * 3 + c] += (double) weights[i] * components[i * 3 + c];
+                        }
+                    }
+                    bandSums[band] = sums;
+                    bandWeights[band] = clusterWeights;
+                }
+            });
+
+            final int[] next = centroids.clone();
+            boolean moved = false;
+            for (int cluster = 0; cluster < k; cluster++) {
+                double weight = 0.0;
+                final double[] mean = new double[3];
+                for (int band = 0; band < bandCount; band++) {
+                    weight += bandWeights[band][cluster];
+                    for (int c = 0; c < 3; c++) {
+                        mean[c] += bandSums[band][cluster * 3 + c];
+                    }
+                }
+                // a palette color without any image colors stays where it is
+                if (weight > 0.0) {
+                    next[cluster] = ColorMath.componentsToArgb(this.colorSpace, (float) (mean[0] / weight), (float) (mean[1] / weight),
+                            (float) (mean[2] / weight));
+                    moved |= next[cluster] != centroids[cluster];
+                }
+            }
+            centroids = next;
+            if (!moved) {
+                break;
+            }
+        }
+        return centroids;
+    }
+
+
+    /**
+     * Sets the algorithm that picks the initial palette colors. The default is {@link QuantizationMethod#MEDIAN_CUT}.
+     *
+     * @param method The quantization method.
+     *
+     * @return This PaletteGenerator instance.
+     */
+    public PaletteGenerator setMethod(QuantizationMethod method) {
+        this.method = Objects.requireNonNull(method);
+        return this;
+    }
+
+
+    /**
+     * Sets the maximum number of k-means iterations that refine the initial palette. The default is 8, 0 disables the refinement.
+     *
+     * @param refinementIterations The maximum number of iterations.
+     *
+     * @return This PaletteGenerator instance.
+     */
+    public PaletteGenerator setRefinementIterations(int refinementIterations) {
+        if (refinementIterations < 0) {
+            throw new IllegalArgumentException("refinementIterations must not be negative: " + refinementIterations);
+        }
+        this.refinementIterations = refinementIterations;
+        return this;
+    }
+
+
+    /**
+     * Sets the number of threads used by the k-means refinement. Unless an executor is set, a fork-join pool with this many threads is created for each
+     * iteration. The default is 1, which runs everything on the calling thread.
+     *
+     * @param parallelism The number of threads, at least 1.
+     *
+     * @return This PaletteGenerator instance.
+     */
+    public PaletteGenerator setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+
+    /**
+     * Sets the executor the k-means refinement runs on. The executor is not shut down by this class. Pass null to go back to using a fork-join pool.
+     *
+     * @param executor The executor or null.
+     *
+     * @return This PaletteGenerator instance.
+     */
+    public PaletteGenerator setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+
+    /**
+     * A range of the color order that median cut may split further.
+     */
+    private static final class Box {
+        private final int      from;
+        private final int      to;
+        private final double[] mean = new double[3];
+        private final double   error;
+        private final int      axis;
+
+
+        private Box(int from, int to, int[] order, float[] components, long[] weights) {
+            this.from = from;
+            this.to = to;
+            double weight = 0.0;
+            final double[] sums = new double[3];
+            final double[] squares = new double[3];
+            for (int i = from; i < to; i++) {
+                final int color = order[i];
+                weight += weights[color];
+                for (int c = 0; c < 3; c++) {
+                    final double value = components[color * 3 + c];
+                    sums[c] += weights[color] * value;
+                    squares[c] += weights[color] * value * value;
+                }
+            }
+
+            double error = 0.0;
+            int axis = 0;
+            double axisError = -1.0;
+            for (int c = 0; c < 3; c++) {
+                this.mean[c] = sums[c] / weight;
+                final double axisVariance = Math.max(0.0, squares[c] - sums[c] * this.mean[c]);
+                error += axisVariance;
+                if (axisVariance > axisError) {
+                    axisError = axisVariance;
+                    axis = c;
+                }
+            }
+            this.error = error;
+            this.axis = axis;
+        }
+
+
+        /**
+         * Sorts the colors of this box along its axis of largest variance and returns the position of the weighted median, which starts the upper half.
+         */
+        private int split(int[] order, float[] components, long[] weights) {
+            final long[] keys = new long[this.to - this.from];
+            for (int i = 0; i < keys.length; i++) {
+                final int color = order[this.from + i];
+                final int bits = Float.floatToIntBits(components[color * 3 + this.axis]);
+                // flip the magnitude bits of negative floats so that the signed int order is the float order
+                keys[i] = (long) (bits ^ bits >> 31 & 0x7FFFFFFF) << 32 | color;
+            }
+            Arrays.sort(keys);
+
+            long total = 0L;
+            for (int i = 0; i < keys.length; i++) {
+                order[this.from + i] = (int) keys[i];
+                total += weights[(int) keys[i]];
+            }
+            long cumulative = 0L;
+            int split = this.from + 1;
+            for (int i = this.from; i < this.to - 1; i++) {
+                cumulative += weights[order[i]];
+                split = i + 1;
+                if (cumulative * 2 >= total) {
+                    break;
+                }
+            }
+            return split;
+        }
+
+    }
+
+}
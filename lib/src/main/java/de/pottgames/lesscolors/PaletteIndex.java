@@ -0,0 +1,559 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * A search structure over the colors of a {@link Palette} that answers nearest color queries without comparing the query against every palette color.
+ * <p>
+ * For the Euclidean color spaces (RGB, OKLAB, XYZ) the colors are organized in a k-d tree. CIEDE2000 (LAB) is not a metric, so instead the colors are
+ * sorted by lightness and the search stops as soon as the lightness difference alone proves that no remaining color can be closer. Colors that are visited
+ * are first checked against {@link ColorMath#ciede2000LowerBound(float, float, float, float, float, float)}, which needs no trigonometry, and the full
+ * CIEDE2000 is only computed if the bound doesn't already rule them out. With a tolerance, colors are also ruled out if they could only be closer by less
+ * than the tolerance, so the match may be up to that much further away than the closest color.
+ * <p>
+ * The search ranks colors with the {@link ColorMath} kernels by squared Euclidean distance or CIEDE2000, and ties are resolved in favor of the color that
+ * comes first. The kernels are off from {@link Color#distance(Color, ColorSpace)} by at most {@link #LAB_KERNEL_ERROR} for LAB and
+ * {@link #EUCLIDEAN_KERNEL_ERROR} for the other color spaces. So once the closest color is found, the index looks for other colors whose kernel distance is
+ * within twice that bound of it, which could be closer by {@link Color#distance(Color, ColorSpace)}. Only if there are any, those candidates are ranked
+ * again with {@link Color#distance(Color, ColorSpace)}. Queries given as ARGB colors or {@link Color} objects therefore always return the same color as
+ * {@link Image#findClosestColor(Color, ColorSpace)} on an image of the palette colors, unless a LAB tolerance is set. Queries given as components are
+ * answered by the kernels alone. The best match so far is carried through the search as a single long that holds the distance in its upper and the index in
+ * its lower half, so the search itself doesn't allocate.
+ * <p>
+ * Palettes of moderate size in the Euclidean color spaces are searched linearly by a {@link PaletteSearchProvider} instead, if one is available.
+ */
+class PaletteIndex {
+    private static final int    LEAF_SIZE      = 8;
+    private static final long   NO_MATCH       = (long) Float.floatToIntBits(Float.POSITIVE_INFINITY) << 32 | 0xFFFFFFFFL;
+    private static final double RELATIVE_SLACK = 1e-6;
+    private static final double ABSOLUTE_SLACK = 1e-6;
+
+    /**
+     * The largest difference between the CIEDE2000 of {@link ColorMath} and that of {@link Color}.
+     */
+    static final float LAB_KERNEL_ERROR = 2e-2f;
+    /**
+     * The largest difference between the Euclidean distances of {@link ColorMath} and those of {@link Color}, in any color space but LAB.
+     */
+    static final float EUCLIDEAN_KERNEL_ERROR = 1e-4f;
+
+    /**
+     * The range of palette sizes that are searched by a {@link PaletteSearchProvider}. Smaller palettes fit into a single leaf of the k-d tree, larger ones
+     * profit more from the tree than from a faster linear search.
+     */
+    private static final int MIN_PROVIDED_SEARCH_SIZE = 16;
+    private static final int MAX_PROVIDED_SEARCH_SIZE = 256;
+
+    private final ColorSpace    colorSpace;
+    private final float         tolerance;
+    private final float         rivalWindow;
+    private final int           size;
+    private final int[]         argbColors;
+    private final float[]       components;
+    private final int[]         order;
+    private final byte[]        splitAxes;
+    private final PaletteSearch providedSearch;
+
+
+    /**
+     * Creates an index over the specified colors that always finds the closest color.
+     *
+     * @param argbColors The palette colors in ARGB format.
+     * @param colorSpace The color space in which color distances are computed.
+     */
+    PaletteIndex(int[] argbColors, ColorSpace colorSpace) {
+        this(argbColors, colorSpace, 0f);
+    }
+
+
+    /**
+     * Creates an index over the specified colors.
+     *
+     * @param argbColors The palette colors in ARGB format.
+     * @param colorSpace The color space in which color distances are computed.
+     * @param tolerance The CIEDE2000 difference by which a LAB match may be further away than the closest color, 0 for exact matches. Ignored for the other
+     *            color spaces.
+     */
+    PaletteIndex(int[] argbColors, ColorSpace colorSpace, float tolerance) {
+        Objects.requireNonNull(argbColors);
+        Objects.requireNonNull(colorSpace);
+        if (!(tolerance >= 0f)) {
+            throw new IllegalArgumentException("tolerance must not be negative: " + tolerance);
+        }
+
+        this.colorSpace = colorSpace;
+        this.tolerance = tolerance;
+        this.rivalWindow = 2f * (colorSpace == ColorSpace.LAB ? PaletteIndex.LAB_KERNEL_ERROR : PaletteIndex.EUCLIDEAN_KERNEL_ERROR);
+        this.size = argbColors.length;
+        this.argbColors = argbColors.clone();
+        this.components = new float[this.size * 3];
+        this.order = new int[this.size];
+        for (int i = 0; i < this.size; i++) {
+            ColorMath.argbToComponents(argbColors[i], colorSpace, this.components, i * 3);
+            this.order[i] = i;
+        }
+        this.splitAxes = new byte[this.size];
+        if (colorSpace == ColorSpace.LAB) {
+            this.providedSearch = null;
+            this.sortByLightness();
+        } else {
+            final boolean moderateSize = this.size >= PaletteIndex.MIN_PROVIDED_SEARCH_SIZE && this.size <= PaletteIndex.MAX_PROVIDED_SEARCH_SIZE;
+            this.providedSearch = moderateSize ? PaletteSearches.create(this.components, this.size) : null;
+            // the tree is also searched for rivals of the closest color if a provided search finds it
+            this.buildTree(0, this.size);
+        }
+    }
+
+
+    /**
+     * Finds the position of the closest palette color to the specified ARGB color. Allocates the array for the components of the color, see
+     * {@link #findClosestIndex(int, float[])}.
+     *
+     * @param argb The ARGB color for which to find the closest match.
+     *
+     * @return The position of the closest palette color, or -1 if the palette is empty.
+     */
+    int findClosestIndex(int argb) {
+        return this.findClosestIndex(argb, new float[3]);
+    }
+
+
+    /**
+     * Finds the position of the closest palette color to the specified ARGB color without allocating.
+     *
+     * @param argb The ARGB color for which to find the closest match.
+     * @param scratch An array of at least three floats the components of the color are written to.
+     *
+     * @return The position of the closest palette color, or -1 if the palette is empty.
+     */
+    int findClosestIndex(int argb, float[] scratch) {
+        ColorMath.argbToComponents(argb, this.colorSpace, scratch, 0);
+        return this.findClosestIndex(argb, scratch[0], scratch[1], scratch[2]);
+    }
+
+
+    /**
+     * Finds the position of the closest palette color to the specified ARGB color whose components in the color space of this index are already known.
+     *
+     * @param argb The ARGB color for which to find the closest match.
+     * @param c1 The first component of the color.
+     * @param c2 The second component of the color.
+     * @param c3 The third component of the color.
+     *
+     * @return The position of the closest palette color, or -1 if the palette is empty.
+     */
+    int findClosestIndex(int argb, float c1, float c2, float c3) {
+        final int closest = this.findClosestIndex(c1, c2, c3);
+        return this.hasRival(closest, c1, c2, c3) ? this.rerank(Color.fromARGBInt(argb), closest, c1, c2, c3) : closest;
+    }
+
+
+    /**
+     * Finds the position of the closest palette color to the specified color.
+     *
+     * @param color The color for which to find the closest match.
+     *
+     * @return The position of the closest palette color, or -1 if the palette is empty.
+     */
+    int findClosestIndex(Color color) {
+        final float[] components = color.toColorSpace(this.colorSpace).getComponents();
+        final int closest = this.findClosestIndex(components[0], components[1], components[2]);
+        return this.hasRival(closest, components[0], components[1], components[2]) ? this.rerank(color, closest, components[0], components[1], components[2])
+                : closest;
+    }
+
+
+    /**
+     * Finds the position of the closest palette color to the color with the specified components in the color space of this index, as ranked by the
+     * {@link ColorMath} kernels.
+     *
+     * @param c1 The first component.
+     * @param c2 The second component.
+     * @param c3 The third component.
+     *
+     * @return The position of the closest palette color, or -1 if the palette is empty.
+     */
+    int findClosestIndex(float c1, float c2, float c3) {
+        if (this.providedSearch != null) {
+            Metrics.countDistanceEvaluations(this.size);
+            return this.providedSearch.findClosestIndex(c1, c2, c3);
+        }
+
+        final long match;
+        if (this.colorSpace == ColorSpace.LAB) {
+            match = this.searchByLightness(c1, c2, c3);
+        } else if (Metrics.getActive() == null) {
+            match = this.searchTree(0, this.size, c1, c2, c3, PaletteIndex.NO_MATCH, null);
+        } else {
+            final Tally tally = new Tally();
+            match = this.searchTree(0, this.size, c1, c2, c3, PaletteIndex.NO_MATCH, tally);
+            Metrics.countDistanceEvaluations(tally.evaluations);
+        }
+        return (int) match;
+    }
+
+
+    /**
+     * Copies the components of a palette color into the destination array.
+     *
+     * @param index The position of the palette color.
+     * @param destination The array the three components are written to.
+     * @param offset The index of the first component in the destination array.
+     */
+    void getComponents(int index, float[] destination, int offset) {
+        System.arraycopy(this.components, index * 3, destination, offset, 3);
+    }
+
+
+    /**
+     * Returns the CIEDE2000 difference by which a match may be further away than the closest color.
+     *
+     * @return the tolerance, 0 for exact matches
+     */
+    float getTolerance() {
+        return this.tolerance;
+    }
+
+
+    /**
+     * Returns the color space in which this index computes color distances.
+     *
+     * @return the color space of this index
+     */
+    ColorSpace getColorSpace() {
+        return this.colorSpace;
+    }
+
+
+    private void buildTree(int from, int to) {
+        if (to - from <= PaletteIndex.LEAF_SIZE) {
+            return;
+        }
+
+        final int axis = this.widestAxis(from, to);
+        final int mid = from + to >>> 1;
+        this.select(from, to - 1, mid, axis);
+        this.splitAxes[mid] = (byte) axis;
+        this.buildTree(from, mid);
+        this.buildTree(mid + 1, to);
+    }
+
+
+    private int widestAxis(int from, int to) {
+        int widestAxis = 0;
+        float widestSpread = -1f;
+        for (int axis = 0; axis < 3; axis++) {
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                final float value = this.value(i, axis);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (max - min > widestSpread) {
+                widestSpread = max - min;
+                widestAxis = axis;
+            }
+        }
+        return widestAxis;
+    }
+
+
+    /**
+     * Quickselect: rearranges order[left..right] so that the element at position k is the one that would be there if the range was sorted by the given axis.
+     */
+    private void select(int left, int right, int k, int axis) {
+        while (right > left) {
+            final float pivot = this.value(left + right >>> 1, axis);
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (this.value(i, axis) < pivot) {
+                    i++;
+                }
+                while (this.value(j, axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    final int swap = this.order[i];
+                    this.order[i] = this.order[j];
+                    this.order[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+
+    private float value(int position, int axis) {
+        return this.components[this.order[position] * 3 + axis];
+    }
+
+
+    /**
+     * Searches the k-d tree using squared Euclidean distances. A subtree is skipped if the squared distance to its splitting plane exceeds the best distance.
+     * This is exact: the squared distance to any color behind the plane is a float sum that contains the squared plane distance as one of its terms. The tally
+     * counts the distance evaluations if metrics are recorded, and is null otherwise.
+     */
+    private long searchTree(int from, int to, float c1, float c2, float c3, long best, Tally tally) {
+        if (to - from <= PaletteIndex.LEAF_SIZE) {
+            for (int i = from; i < to; i++) {
+                best = this.testEuclidean(this.order[i], c1, c2, c3, best);
+            }
+            if (tally != null) {
+                tally.evaluations += to - from;
+            }
+            return best;
+        }
+
+        final int mid = from + to >>> 1;
+        final int axis = this.splitAxes[mid];
+        best = this.testEuclidean(this.order[mid], c1, c2, c3, best);
+        if (tally != null) {
+            tally.evaluations++;
+        }
+        final float difference = (axis == 0 ? c1 : axis == 1 ? c2 : c3) - this.value(mid, axis);
+        final boolean lowerFirst = difference < 0f;
+        best = lowerFirst ? this.searchTree(from, mid, c1, c2, c3, best, tally) : this.searchTree(mid + 1, to, c1, c2, c3, best, tally);
+        if (difference * difference <= PaletteIndex.distanceOf(best)) {
+            best = lowerFirst ? this.searchTree(mid + 1, to, c1, c2, c3, best, tally) : this.searchTree(from, mid, c1, c2, c3, best, tally);
+        }
+        return best;
+    }
+
+
+    private long testEuclidean(int index, float c1, float c2, float c3, long best) {
+        final int offset = index * 3;
+        final float distance = ColorMath.squaredDistance(c1, c2, c3, this.components[offset], this.components[offset + 1], this.components[offset + 2]);
+        return Math.min(best, PaletteIndex.pack(distance, index));
+    }
+
+
+    private void sortByLightness() {
+        final Integer[] boxed = new Integer[this.size];
+        for (int i = 0; i < boxed.length; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, Comparator.comparingDouble(i -> this.components[i * 3]));
+        for (int i = 0; i < boxed.length; i++) {
+            this.order[i] = boxed[i];
+        }
+    }
+
+
+    /**
+     * Visits the colors in order of increasing lightness difference to the query. CIEDE2000 is never smaller than |dL| / S<sub>L</sub>, so the search stops
+     * once that bound exceeds the best distance for the closest remaining color. A visited color is skipped without computing CIEDE2000 if its lower bound
+     * exceeds the best distance. Both checks subtract the tolerance from the best distance.
+     */
+    private long searchByLightness(float lightness, float a, float b) {
+        long best = PaletteIndex.NO_MATCH;
+        if (this.size == 0) {
+            return best;
+        }
+
+        final double maxWeight = this.maxLightnessWeight(lightness);
+
+        int upper = this.lowerBound(lightness);
+        int lower = upper - 1;
+        int evaluations = 0;
+        while (lower >= 0 || upper < this.size) {
+            final float lowerGap = lower >= 0 ? lightness - this.value(lower, 0) : Float.POSITIVE_INFINITY;
+            final float upperGap = upper < this.size ? this.value(upper, 0) - lightness : Float.POSITIVE_INFINITY;
+            final double bestDistance = PaletteIndex.distanceOf(best);
+            final double limit = bestDistance + bestDistance * PaletteIndex.RELATIVE_SLACK + PaletteIndex.ABSOLUTE_SLACK - this.tolerance;
+            if (Math.min(lowerGap, upperGap) / maxWeight > limit) {
+                break;
+            }
+            final int index = lowerGap <= upperGap ? this.order[lower--] : this.order[upper++];
+            final int offset = index * 3;
+            if (ColorMath.ciede2000LowerBound(lightness, a, b, this.components[offset], this.components[offset + 1], this.components[offset + 2]) > limit) {
+                continue;
+            }
+            final float distance = ColorMath.ciede2000(lightness, a, b, this.components[offset], this.components[offset + 1], this.components[offset + 2]);
+            best = Math.min(best, PaletteIndex.pack(distance, index));
+            evaluations++;
+        }
+        Metrics.countDistanceEvaluations(evaluations);
+        return best;
+    }
+
+
+    /**
+     * Returns the largest S<sub>L</sub> of the query and any palette color. S<sub>L</sub> only grows with the distance of the mean lightness from 50, so its
+     * maximum is reached at one of the extremes.
+     */
+    private double maxLightnessWeight(float lightness) {
+        return Math.max(ColorMath.ciede2000LightnessWeight((lightness + this.value(0, 0)) / 2.0),
+                ColorMath.ciede2000LightnessWeight((lightness + this.value(this.size - 1, 0)) / 2.0));
+    }
+
+
+    private int lowerBound(float lightness) {
+        int low = 0;
+        int high = this.size;
+        while (low < high) {
+            final int mid = low + high >>> 1;
+            if (this.value(mid, 0) < lightness) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * Whether a palette color other than the closest one is within the rival window of it by kernel distance, so it could be the closest color by
+     * {@link Color#distance(Color, ColorSpace)}. LAB searches with a tolerance never look for rivals.
+     */
+    private boolean hasRival(int closest, float c1, float c2, float c3) {
+        if (closest < 0 || this.colorSpace == ColorSpace.LAB && this.tolerance > 0f) {
+            return false;
+        }
+        final float radius = this.kernelDistance(closest, c1, c2, c3) + this.rivalWindow;
+        if (this.colorSpace == ColorSpace.LAB) {
+            return this.hasRivalByLightness(closest, c1, c2, c3, radius);
+        }
+        return this.hasRivalInTree(0, this.size, closest, c1, c2, c3, radius * radius);
+    }
+
+
+    /**
+     * Searches the k-d tree for a color other than the closest one within the squared radius, pruning subtrees like {@link #searchTree}.
+     */
+    private boolean hasRivalInTree(int from, int to, int closest, float c1, float c2, float c3, float squaredRadius) {
+        if (to - from <= PaletteIndex.LEAF_SIZE) {
+            for (int i = from; i < to; i++) {
+                if (this.isRival(this.order[i], closest, c1, c2, c3, squaredRadius)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        final int mid = from + to >>> 1;
+        final int axis = this.splitAxes[mid];
+        if (this.isRival(this.order[mid], closest, c1, c2, c3, squaredRadius)) {
+            return true;
+        }
+        final float difference = (axis == 0 ? c1 : axis == 1 ? c2 : c3) - this.value(mid, axis);
+        final boolean lowerFirst = difference < 0f;
+        if (lowerFirst ? this.hasRivalInTree(from, mid, closest, c1, c2, c3, squaredRadius)
+                : this.hasRivalInTree(mid + 1, to, closest, c1, c2, c3, squaredRadius)) {
+            return true;
+        }
+        return difference * difference <= squaredRadius && (lowerFirst ? this.hasRivalInTree(mid + 1, to, closest, c1, c2, c3, squaredRadius)
+                : this.hasRivalInTree(from, mid, closest, c1, c2, c3, squaredRadius));
+    }
+
+
+    private boolean isRival(int index, int closest, float c1, float c2, float c3, float squaredRadius) {
+        final int offset = index * 3;
+        return index != closest
+                && ColorMath.squaredDistance(c1, c2, c3, this.components[offset], this.components[offset + 1], this.components[offset + 2]) <= squaredRadius;
+    }
+
+
+    /**
+     * Visits the colors in order of increasing lightness difference like {@link #searchByLightness} and stops at the first color other than the closest one
+     * whose CIEDE2000 is within the radius.
+     */
+    private boolean hasRivalByLightness(int closest, float lightness, float a, float b, float radius) {
+        final double maxWeight = this.maxLightnessWeight(lightness);
+        final double limit = radius + radius * PaletteIndex.RELATIVE_SLACK + PaletteIndex.ABSOLUTE_SLACK;
+        int upper = this.lowerBound(lightness);
+        int lower = upper - 1;
+        while (lower >= 0 || upper < this.size) {
+            final float lowerGap = lower >= 0 ? lightness - this.value(lower, 0) : Float.POSITIVE_INFINITY;
+            final float upperGap = upper < this.size ? this.value(upper, 0) - lightness : Float.POSITIVE_INFINITY;
+            if (Math.min(lowerGap, upperGap) / maxWeight > limit) {
+                return false;
+            }
+            final int index = lowerGap <= upperGap ? this.order[lower--] : this.order[upper++];
+            if (index == closest) {
+                continue;
+            }
+            final int offset = index * 3;
+            if (ColorMath.ciede2000LowerBound(lightness, a, b, this.components[offset], this.components[offset + 1], this.components[offset + 2]) > limit) {
+                continue;
+            }
+            if (ColorMath.ciede2000(lightness, a, b, this.components[offset], this.components[offset + 1], this.components[offset + 2]) <= radius) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Ranks the closest color and its rivals by {@link Color#distance(Color, ColorSpace)} in palette order, keeping the first of equally distant colors, just
+     * like {@link Image#findClosestColor(Color, ColorSpace)}.
+     */
+    private int rerank(Color color, int closest, float c1, float c2, float c3) {
+        final float radius = this.kernelDistance(closest, c1, c2, c3) + this.rivalWindow;
+        int bestIndex = closest;
+        float bestDistance = Float.MAX_VALUE;
+        for (int i = 0; i < this.size; i++) {
+            if (i != closest && !(this.kernelDistance(i, c1, c2, c3) <= radius)) {
+                continue;
+            }
+            final float distance = Color.fromARGBInt(this.argbColors[i]).toColorSpace(this.colorSpace).distance(color, this.colorSpace);
+            if (distance < bestDistance) {
+                bestIndex = i;
+                bestDistance = distance;
+            }
+        }
+        return bestIndex;
+    }
+
+
+    private float kernelDistance(int index, float c1, float c2, float c3) {
+        final int offset = index * 3;
+        return ColorMath.distance(this.colorSpace, c1, c2, c3, this.components[offset], this.components[offset + 1], this.components[offset + 2]);
+    }
+
+
+    /**
+     * Packs a non-negative distance and an index into a long that orders by distance first and index second.
+     */
+    private static long pack(float distance, int index) {
+        return (long) Float.floatToIntBits(distance) << 32 | index;
+    }
+
+
+    private static float distanceOf(long packed) {
+        return Float.intBitsToFloat((int) (packed >>> 32));
+    }
+
+
+    private static final class Tally {
+        private int evaluations;
+    }
+
+}
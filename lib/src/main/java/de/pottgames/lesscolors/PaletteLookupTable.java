@@ -0,0 +1,224 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A precomputed table that maps RGB values to the index of the closest palette color, so matching a pixel costs a single array access.
+ * <p>
+ * The table covers an RGB cube with a configurable number of bits per channel. With 8 bits every RGB value has its own entry and the table returns exactly
+ * what the {@link Palette} would return for opaque colors. With fewer bits, each entry holds the closest palette color to the center of its cell, which is
+ * an approximation in exchange for a smaller table that is faster to build. The alpha channel is not part of the lookup, the palette colors keep their own
+ * alpha.
+ * <p>
+ * The entries live in a {@link ByteBuffer}, which is either allocated on the heap or mapped from a file by {@link LookupTableCache}.
+ */
+public class PaletteLookupTable implements PaletteMatcher {
+    /**
+     * The number of bits per channel of an exact lookup table.
+     */
+    public static final int EXACT_BITS = 8;
+
+    private final Palette    palette;
+    private final int        bits;
+    private final boolean    shortEntries;
+    private final ByteBuffer entries;
+
+
+    /**
+     * Builds a lookup table that covers every RGB value and yields exactly the same matches as the palette.
+     *
+     * @param palette The color palette.
+     *
+     * @return The lookup table.
+     */
+    public static PaletteLookupTable exact(Palette palette) {
+        return new PaletteLookupTable(palette, PaletteLookupTable.EXACT_BITS);
+    }
+
+
+    /**
+     * Builds a lookup table with the specified resolution. Each RGB value is mapped to the palette color closest to the center of its cell.
+     *
+     * @param palette The color palette.
+     * @param bitsPerChannel The resolution of the table in bits per color channel, ranging from 1 to 8.
+     *
+     * @return The lookup table.
+     */
+    public static PaletteLookupTable approximate(Palette palette, int bitsPerChannel) {
+        return new PaletteLookupTable(palette, bitsPerChannel);
+    }
+
+
+    /**
+     * Builds a lookup table with the specified resolution, using one thread per available processor.
+     *
+     * @param palette The color palette.
+     * @param bitsPerChannel The resolution of the table in bits per color channel, ranging from 1 to 8. 8 bits result in an exact table.
+     */
+    public PaletteLookupTable(Palette palette, int bitsPerChannel) {
+        this(palette, bitsPerChannel, Runtime.getRuntime().availableProcessors(), null);
+    }
+
+
+    /**
+     * Builds a lookup table with the specified resolution. The table is filled in bands of red values, either on the executor if one is given, or on a
+     * temporary fork-join pool with the specified parallelism. The executor is not shut down by this class.
+     *
+     * @param palette The color palette.
+     * @param bitsPerChannel The resolution of the table in bits per color channel, ranging from 1 to 8. 8 bits result in an exact table.
+     * @param parallelism The number of threads, at least 1. With an executor it determines into how many bands the table is split.
+     * @param executor The executor or null.
+     */
+    public PaletteLookupTable(Palette palette, int bitsPerChannel, int parallelism, ExecutorService executor) {
+        Objects.requireNonNull(palette);
+        if (bitsPerChannel < 1 || bitsPerChannel > PaletteLookupTable.EXACT_BITS) {
+            throw new IllegalArgumentException("bitsPerChannel must be between 1 and 8: " + bitsPerChannel);
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        if (palette.size() == 0) {
+            throw new IllegalArgumentException("palette must contain at least one color");
+        }
+        if (palette.size() > 1 << 16) {
+            throw new IllegalArgumentException("palette must not contain more than 65536 colors: " + palette.size());
+        }
+
+        this.palette = palette;
+        this.bits = bitsPerChannel;
+        this.shortEntries = PaletteLookupTable.needsShortEntries(palette);
+        this.entries = ByteBuffer.allocate(PaletteLookupTable.entriesSize(palette, bitsPerChannel));
+        this.fill(parallelism, executor);
+    }
+
+
+    /**
+     * Creates a lookup table from entries that have been computed before.
+     */
+    PaletteLookupTable(Palette palette, int bitsPerChannel, ByteBuffer entries) {
+        if (entries.capacity() != PaletteLookupTable.entriesSize(palette, bitsPerChannel)) {
+            throw new IllegalArgumentException("entries don't match the palette and resolution");
+        }
+        this.palette = palette;
+        this.bits = bitsPerChannel;
+        this.shortEntries = PaletteLookupTable.needsShortEntries(palette);
+        this.entries = entries;
+    }
+
+
+    static boolean needsShortEntries(Palette palette) {
+        return palette.size() > 1 << 8;
+    }
+
+
+    static int entriesSize(Palette palette, int bitsPerChannel) {
+        final int cells = 1 << 3 * bitsPerChannel;
+        return PaletteLookupTable.needsShortEntries(palette) ? cells * 2 : cells;
+    }
+
+
+    private void fill(int parallelism, ExecutorService executor) {
+        final int cellsPerChannel = 1 << this.bits;
+        final int shift = PaletteLookupTable.EXACT_BITS - this.bits;
+        final int center = (1 << shift) >> 1;
+        RowBands.process(cellsPerChannel, parallelism, executor, (fromRed, toRed) -> {
+            final float[] scratch = new float[3];
+            for (int red = fromRed; red < toRed; red++) {
+                for (int green = 0; green < cellsPerChannel; green++) {
+                    for (int blue = 0; blue < cellsPerChannel; blue++) {
+                        final int argb = 0xFF000000 | (red << shift | center) << 16 | (green << shift | center) << 8 | blue << shift | center;
+                        final int paletteIndex = this.palette.findClosestIndex(argb, scratch);
+                        final int cell = (red << this.bits | green) << this.bits | blue;
+                        if (this.shortEntries) {
+                            this.entries.putShort(cell << 1, (short) paletteIndex);
+                        } else {
+                            this.entries.put(cell, (byte) paletteIndex);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+
+    @Override
+    public int findClosestIndex(int argb) {
+        final int shift = PaletteLookupTable.EXACT_BITS - this.bits;
+        final int red = (argb >>> 16 & 0xFF) >>> shift;
+        final int green = (argb >>> 8 & 0xFF) >>> shift;
+        final int blue = (argb & 0xFF) >>> shift;
+        final int cell = (red << this.bits | green) << this.bits | blue;
+        if (this.shortEntries) {
+            return this.entries.getShort(cell << 1) & 0xFFFF;
+        }
+        return this.entries.get(cell) & 0xFF;
+    }
+
+
+    @Override
+    public int getArgb(int index) {
+        return this.palette.getArgb(index);
+    }
+
+
+    @Override
+    public int size() {
+        return this.palette.size();
+    }
+
+
+    /**
+     * Returns the palette this table was built for.
+     *
+     * @return the palette
+     */
+    public Palette getPalette() {
+        return this.palette;
+    }
+
+
+    /**
+     * Returns a read-only view of the raw table entries, one unsigned byte per cell for palettes of up to 256 colors and one unsigned big-endian short per cell
+     * otherwise.
+     */
+    ByteBuffer getEntries() {
+        return this.entries.asReadOnlyBuffer();
+    }
+
+
+    /**
+     * Returns the resolution of this table in bits per color channel.
+     *
+     * @return the number of bits per channel
+     */
+    public int getBitsPerChannel() {
+        return this.bits;
+    }
+
+
+    /**
+     * Returns whether this table covers every RGB value and therefore yields exactly the same matches as the palette.
+     *
+     * @return true if the table is exact
+     */
+    public boolean isExact() {
+        return this.bits == PaletteLookupTable.EXACT_BITS;
+    }
+
+}
@@ -0,0 +1,64 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+/**
+ * Maps colors to the closest color of a palette. Implementations differ in how the closest color is found, e.g. by searching the palette or by looking it up in
+ * a precomputed table.
+ */
+public interface PaletteMatcher {
+
+    /**
+     * Finds the index of the closest palette color to the specified ARGB color.
+     *
+     * @param argb The ARGB color for which to find the closest match.
+     *
+     * @return The index of the closest palette color, or -1 if the palette is empty.
+     */
+    int findClosestIndex(int argb);
+
+
+    /**
+     * Finds the index of the closest palette color to the specified ARGB color. Matchers that convert the color to another color space first write the
+     * components to the scratch array instead of allocating one, so callers that match many colors should pass in the same array every time.
+     *
+     * @param argb The ARGB color for which to find the closest match.
+     * @param scratch An array of at least three floats owned by the caller. Its contents are overwritten.
+     *
+     * @return The index of the closest palette color, or -1 if the palette is empty.
+     */
+    default int findClosestIndex(int argb, float[] scratch) {
+        return this.findClosestIndex(argb);
+    }
+
+
+    /**
+     * Returns the palette color at the specified index in ARGB format.
+     *
+     * @param index The index of the palette color.
+     *
+     * @return The palette color in ARGB format.
+     */
+    int getArgb(int index);
+
+
+    /**
+     * Returns the number of colors in the palette.
+     *
+     * @return the number of colors
+     */
+    int size();
+
+}
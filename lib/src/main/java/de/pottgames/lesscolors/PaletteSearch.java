@@ -0,0 +1,34 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+/**
+ * A linear nearest color search over the colors of a palette, created by a {@link PaletteSearchProvider}.
+ */
+public interface PaletteSearch {
+
+    /**
+     * Finds the index of the palette color with the smallest squared Euclidean distance to the color with the specified components, as computed by
+     * {@link ColorMath#squaredDistance(float, float, float, float, float, float)}. If multiple palette colors have the same distance, the lowest index wins.
+     *
+     * @param c1 The first component.
+     * @param c2 The second component.
+     * @param c3 The third component.
+     *
+     * @return The index of the closest palette color.
+     */
+    int findClosestIndex(float c1, float c2, float c3);
+
+}
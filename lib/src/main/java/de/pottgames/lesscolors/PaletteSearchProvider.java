@@ -0,0 +1,37 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+/**
+ * A service that provides faster linear nearest color searches, e.g. with vector instructions that aren't available to Java 8 code. Providers are discovered
+ * with {@link java.util.ServiceLoader}, so adding a jar that declares one to the class path is enough to use it. A provider is only used for palettes of
+ * moderate size in the color spaces with Euclidean distances (RGB, OKLAB and XYZ), everything else is searched by {@link Palette} itself. Its results must
+ * be identical to those of the built-in search.
+ * <p>
+ * Setting the system property "lesscolors.disableSearchProviders" to true disables all providers.
+ */
+public interface PaletteSearchProvider {
+
+    /**
+     * Creates a search over the specified palette colors.
+     *
+     * @param components The components of the palette colors, three per color, in the color space of the palette. The array must not be modified.
+     * @param size The number of palette colors, at least 1.
+     *
+     * @return The search or null if the provider can't search this palette.
+     */
+    PaletteSearch create(float[] components, int size);
+
+}
@@ -0,0 +1,84 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Discovers the {@link PaletteSearchProvider} once per class loader. A provider that can't be loaded, e.g. because it was compiled for a newer Java version
+ * or needs a module that isn't available, is skipped.
+ */
+final class PaletteSearches {
+    static final String DISABLE_PROPERTY = "lesscolors.disableSearchProviders";
+
+    private static final PaletteSearchProvider PROVIDER = PaletteSearches.load();
+
+
+    private PaletteSearches() {
+    }
+
+
+    /**
+     * Creates a search with the discovered provider.
+     *
+     * @param components The components of the palette colors, three per color.
+     * @param size The number of palette colors.
+     *
+     * @return The search or null if there is no provider or it can't search this palette.
+     */
+    static PaletteSearch create(float[] components, int size) {
+        if (PaletteSearches.PROVIDER == null || size == 0) {
+            return null;
+        }
+        return PaletteSearches.PROVIDER.create(components, size);
+    }
+
+
+    /**
+     * Returns the discovered provider.
+     *
+     * @return the provider or null if there is none
+     */
+    static PaletteSearchProvider getProvider() {
+        return PaletteSearches.PROVIDER;
+    }
+
+
+    private static PaletteSearchProvider load() {
+        if (Boolean.getBoolean(PaletteSearches.DISABLE_PROPERTY)) {
+            return null;
+        }
+
+        final Iterator<PaletteSearchProvider> providers = ServiceLoader.load(PaletteSearchProvider.class, PaletteSearches.class.getClassLoader()).iterator();
+        while (true) {
+            try {
+                if (!providers.hasNext()) {
+                    return null;
+                }
+                final PaletteSearchProvider provider = providers.next();
+                // probe the provider once, so that missing classes surface here instead of in the middle of a search
+                final PaletteSearch probe = provider.create(new float[] { 0f, 0f, 0f, 1f, 1f, 1f }, 2);
+                if (probe == null || probe.findClosestIndex(0.9f, 0.9f, 0.9f) == 1) {
+                    return provider;
+                }
+            } catch (final ServiceConfigurationError | LinkageError e) {
+                // try the next provider
+            }
+        }
+    }
+
+}
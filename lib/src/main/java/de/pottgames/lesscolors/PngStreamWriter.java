@@ -0,0 +1,176 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a PNG file row by row, so that an image can be encoded without ever holding all of its pixels in memory. The image is written as 8-bit RGBA, the
+ * compressed rows are split into IDAT chunks of bounded size as they are produced.
+ */
+final class PngStreamWriter implements Closeable {
+    private static final byte[] SIGNATURE       = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final int    CHUNK_SIZE      = 64 * 1024;
+    private static final int    COLOR_TYPE_RGBA = 6;
+    private static final int    FILTER_NONE     = 0;
+
+    private final DataOutputStream     output;
+    private final int                  width;
+    private final int                  height;
+    private final DeflaterOutputStream compressor;
+    private final Deflater             deflater;
+    private final byte[]               row;
+    private int                        rowsWritten;
+    private boolean                    closed;
+
+
+    /**
+     * Writes the PNG header to the output stream. The stream is closed when the writer is closed.
+     *
+     * @param output The stream the PNG file is written to.
+     * @param width The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     *
+     * @throws IOException If an error occurs while writing.
+     */
+    PngStreamWriter(OutputStream output, int width, int height) throws IOException {
+        Objects.requireNonNull(output);
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("invalid image size: " + width + "x" + height);
+        }
+
+        this.output = new DataOutputStream(output);
+        this.width = width;
+        this.height = height;
+        this.row = new byte[1 + width * 4];
+        this.row[0] = PngStreamWriter.FILTER_NONE;
+
+        this.output.write(PngStreamWriter.SIGNATURE);
+        final byte[] header = new byte[13];
+        PngStreamWriter.putInt(header, 0, width);
+        PngStreamWriter.putInt(header, 4, height);
+        header[8] = 8; // bit depth
+        header[9] = PngStreamWriter.COLOR_TYPE_RGBA;
+        this.writeChunk("IHDR", header, 0, header.length);
+
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        this.compressor = new DeflaterOutputStream(new ChunkOutputStream(), this.deflater, PngStreamWriter.CHUNK_SIZE);
+    }
+
+
+    /**
+     * Appends rows of ARGB pixels to the image.
+     *
+     * @param pixels The pixels in ARGB format, row by row.
+     * @param offset The index of the first pixel to write.
+     * @param rows The number of rows to write.
+     *
+     * @throws IOException If an error occurs while writing.
+     */
+    void writeRows(int[] pixels, int offset, int rows) throws IOException {
+        if (this.rowsWritten + rows > this.height) {
+            throw new IllegalStateException("image has only " + this.height + " rows");
+        }
+
+        for (int y = 0; y < rows; y++) {
+            int index = offset + y * this.width;
+            for (int i = 1; i < this.row.length; i += 4) {
+                final int argb = pixels[index++];
+                this.row[i] = (byte) (argb >>> 16);
+                this.row[i + 1] = (byte) (argb >>> 8);
+                this.row[i + 2] = (byte) argb;
+                this.row[i + 3] = (byte) (argb >>> 24);
+            }
+            this.compressor.write(this.row);
+        }
+        this.rowsWritten += rows;
+    }
+
+
+    /**
+     * Finishes the image and closes the output stream.
+     *
+     * @throws IOException If an error occurs while writing.
+     * @throws IllegalStateException If fewer rows than the image height were written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+
+        try {
+            if (this.rowsWritten != this.height) {
+                throw new IllegalStateException("only " + this.rowsWritten + " of " + this.height + " rows were written");
+            }
+            this.compressor.finish();
+            this.writeChunk("IEND", new byte[0], 0, 0);
+        } finally {
+            this.deflater.end();
+            this.output.close();
+        }
+    }
+
+
+    private void writeChunk(String type, byte[] data, int offset, int length) throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        final CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        this.output.writeInt(length);
+        this.output.write(typeBytes);
+        this.output.write(data, offset, length);
+        this.output.writeInt((int) crc.getValue());
+    }
+
+
+    private static void putInt(byte[] destination, int offset, int value) {
+        destination[offset] = (byte) (value >>> 24);
+        destination[offset + 1] = (byte) (value >>> 16);
+        destination[offset + 2] = (byte) (value >>> 8);
+        destination[offset + 3] = (byte) value;
+    }
+
+
+    /**
+     * Receives the compressed image data and writes every block as an IDAT chunk.
+     */
+    private class ChunkOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            this.write(new byte[] { (byte) b }, 0, 1);
+        }
+
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                PngStreamWriter.this.writeChunk("IDAT", b, off, len);
+            }
+        }
+
+    }
+
+}
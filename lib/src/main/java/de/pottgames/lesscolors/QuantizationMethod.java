@@ -0,0 +1,32 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+/**
+ * The algorithms {@link PaletteGenerator} uses to pick the initial palette colors, before they are refined by k-means.
+ */
+public enum QuantizationMethod {
+    /**
+     * Repeatedly splits the box of colors with the largest squared error at the weighted median of its widest axis, in the components of the color space of
+     * the generator. Gives the best initial palettes.
+     */
+    MEDIAN_CUT,
+    /**
+     * Sorts the colors into an octree over the RGB bits, five levels deep, and merges the leaves with the fewest pixels, deepest first. Its cost hardly depends
+     * on the number of distinct colors.
+     */
+    OCTREE;
+
+}
@@ -0,0 +1,205 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Locale;
+
+/**
+ * Copies pixels between {@link BufferedImage}s and packed ARGB arrays. The common image types are read straight from their data buffers in row-major order,
+ * all other types go through {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)} one row at a time.
+ */
+final class RasterAccess {
+
+    private RasterAccess() {
+    }
+
+
+    /**
+     * Reads all pixels of the source image into the destination array as non-premultiplied ARGB values, row by row.
+     *
+     * @param source The source image.
+     * @param destination The destination array, at least width * height elements long.
+     */
+    static void readArgb(BufferedImage source, int[] destination) {
+        final Raster raster = source.getRaster();
+        switch (source.getType()) {
+            case BufferedImage.TYPE_INT_ARGB:
+                RasterAccess.readIntRaster(raster, destination, 0);
+                return;
+            case BufferedImage.TYPE_INT_RGB:
+                RasterAccess.readIntRaster(raster, destination, 0xFF000000);
+                return;
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                RasterAccess.readByteRaster(raster, destination);
+                return;
+            default:
+                if (source.getColorModel() instanceof IndexColorModel) {
+                    RasterAccess.readIndexedRaster(raster, (IndexColorModel) source.getColorModel(), destination);
+                } else {
+                    RasterAccess.readGeneric(source, destination);
+                }
+        }
+    }
+
+
+    /**
+     * Creates a TYPE_INT_ARGB image holding the specified ARGB pixels.
+     *
+     * @param pixels The ARGB pixels in row-major order.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     *
+     * @return The new image.
+     */
+    static BufferedImage writeArgb(int[] pixels, int width, int height) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        System.arraycopy(pixels, 0, data, 0, width * height);
+        return image;
+    }
+
+
+    /**
+     * Creates an image with an {@link IndexColorModel} of the specified colors and writes the color index of each pixel straight into its data buffer. Images
+     * with up to 16 colors are packed into 1, 2 or 4 bits per pixel, larger ones use one byte per pixel.
+     *
+     * @param pixels The ARGB pixels in row-major order.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param colors The ARGB colors of the color model, at most 256.
+     * @param indices Maps each pixel color to its position in the colors array.
+     *
+     * @return The new image.
+     *
+     * @throws IllegalArgumentException If a pixel color is missing from the indices.
+     */
+    static BufferedImage writeIndexed(int[] pixels, int width, int height, int[] colors, ArgbIntMap indices) {
+        final int bits = colors.length <= 2 ? 1 : colors.length <= 4 ? 2 : colors.length <= 16 ? 4 : 8;
+        boolean hasAlpha = false;
+        for (final int color : colors) {
+            hasAlpha |= color >>> 24 != 0xFF;
+        }
+        final IndexColorModel colorModel = new IndexColorModel(bits, colors.length, colors, 0, hasAlpha, -1, DataBuffer.TYPE_BYTE);
+        final int type = bits == 8 ? BufferedImage.TYPE_BYTE_INDEXED : BufferedImage.TYPE_BYTE_BINARY;
+        final BufferedImage image = new BufferedImage(width, height, type, colorModel);
+        final byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+
+        // consecutive pixels often share a color, so the last lookup is remembered
+        final int pixelsPerByte = 8 / bits;
+        final int stride = (width + pixelsPerByte - 1) / pixelsPerByte;
+        int lastArgb = 0;
+        int lastIndex = indices.get(0, -1);
+        for (int y = 0; y < height; y++) {
+            final int row = y * width;
+            final int rowOffset = y * stride;
+            for (int x = 0; x < width; x++) {
+                final int argb = pixels[row + x];
+                if (argb != lastArgb) {
+                    lastArgb = argb;
+                    lastIndex = indices.get(argb, -1);
+                }
+                if (lastIndex < 0) {
+                    throw new IllegalArgumentException(String.format(Locale.ROOT, "Color %08X at %d, %d is not in the palette", argb, x, y));
+                }
+                final int shift = 8 - bits - x % pixelsPerByte * bits;
+                data[rowOffset + x / pixelsPerByte] |= lastIndex << shift;
+            }
+        }
+        return image;
+    }
+
+
+    private static void readIntRaster(Raster raster, int[] destination, int alphaMask) {
+        final SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        final DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+        final int[] data = dataBuffer.getData();
+        final int width = raster.getWidth();
+        final int height = raster.getHeight();
+        for (int y = 0; y < height; y++) {
+            final int offset = dataBuffer.getOffset() + sampleModel.getOffset(-raster.getSampleModelTranslateX(), y - raster.getSampleModelTranslateY());
+            final int row = y * width;
+            if (alphaMask == 0) {
+                System.arraycopy(data, offset, destination, row, width);
+            } else {
+                for (int x = 0; x < width; x++) {
+                    destination[row + x] = data[offset + x] | alphaMask;
+                }
+            }
+        }
+    }
+
+
+    private static void readByteRaster(Raster raster, int[] destination) {
+        final ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+        final DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+        final byte[] data = dataBuffer.getData();
+        final int[] bandOffsets = sampleModel.getBandOffsets();
+        final int pixelStride = sampleModel.getPixelStride();
+        final int redOffset = bandOffsets[0];
+        final int greenOffset = bandOffsets[1];
+        final int blueOffset = bandOffsets[2];
+        final boolean hasAlpha = bandOffsets.length > 3;
+        final int alphaOffset = hasAlpha ? bandOffsets[3] : 0;
+        final int width = raster.getWidth();
+        final int height = raster.getHeight();
+        for (int y = 0; y < height; y++) {
+            // getOffset(x, y) already includes the offset of the first band
+            int offset = dataBuffer.getOffset() + sampleModel.getOffset(-raster.getSampleModelTranslateX(), y - raster.getSampleModelTranslateY())
+                    - bandOffsets[0];
+            final int row = y * width;
+            for (int x = 0; x < width; x++) {
+                final int alpha = hasAlpha ? data[offset + alphaOffset] & 0xFF : 0xFF;
+                destination[row + x] = alpha << 24 | (data[offset + redOffset] & 0xFF) << 16 | (data[offset + greenOffset] & 0xFF) << 8
+                        | data[offset + blueOffset] & 0xFF;
+                offset += pixelStride;
+            }
+        }
+    }
+
+
+    private static void readIndexedRaster(Raster raster, IndexColorModel colorModel, int[] destination) {
+        final int[] colors = new int[Math.max(colorModel.getMapSize(), 1 << colorModel.getPixelSize())];
+        colorModel.getRGBs(colors);
+        final int width = raster.getWidth();
+        final int height = raster.getHeight();
+        final int[] indices = new int[width];
+        for (int y = 0; y < height; y++) {
+            raster.getSamples(0, y, width, 1, 0, indices);
+            final int row = y * width;
+            for (int x = 0; x < width; x++) {
+                destination[row + x] = colors[indices[x]];
+            }
+        }
+    }
+
+
+    private static void readGeneric(BufferedImage source, int[] destination) {
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        for (int y = 0; y < height; y++) {
+            source.getRGB(0, y, width, 1, destination, y * width, width);
+        }
+    }
+
+}
@@ -0,0 +1,413 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * An image in a raw file that is memory-mapped instead of being read into the heap, to pass images between tools without encoding and decoding them. Opening
+ * a raw image only reads its header, the pixels are paged in by the operating system as they are accessed, and {@link #reduceColors(PaletteMatcher)} works
+ * on the mapped file in place.
+ * <p>
+ * The file starts with a header of 32 bytes in big-endian order: the magic number "LCRI", the format version, the width, the height, the ordinal of the
+ * {@link ColorSpace} and the pixel layout, padded with zeros. The only layout so far is 1, which stores the pixels row by row as 32-bit ARGB values in
+ * little-endian order. The pixels are mapped in chunks of whole rows of at most 1 GiB each, so images larger than 2 GiB are supported as well.
+ * <p>
+ * {@link Image#fromFile(java.io.File, ColorSpace)} reads files with the "lcraw" extension into the heap, and
+ * {@link Image#saveToFile(java.io.File, String)} writes them for the image type "lcraw". Closing a raw image closes its file, the mapping itself is released
+ * once it is garbage collected.
+ */
+public class RawImage implements Closeable {
+    /**
+     * The image type and file extension of raw images.
+     */
+    public static final String FORMAT_NAME = "lcraw";
+
+    private static final int  MAGIC                     = 0x4C435249; // "LCRI"
+    private static final int  VERSION                   = 1;
+    private static final int  LAYOUT_ARGB_LITTLE_ENDIAN = 1;
+    private static final int  HEADER_SIZE               = 32;
+    private static final long MAX_CHUNK_BYTES           = 1L << 30;
+
+    private final FileChannel channel;
+    private final int         width;
+    private final int         height;
+    private final ColorSpace  colorSpace;
+    private final boolean     writable;
+    private final int         rowsPerChunk;
+    private final IntBuffer[] chunks;
+    private int               parallelism = 1;
+    private ExecutorService   executor;
+
+
+    /**
+     * Creates a raw image file with all pixels set to 0 and maps it for reading and writing. An existing file is replaced.
+     *
+     * @param file The path of the file.
+     * @param width The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @param colorSpace The color space of the image.
+     *
+     * @return The mapped raw image.
+     *
+     * @throws IOException If an error occurs while creating the file.
+     */
+    public static RawImage create(Path file, int width, int height, ColorSpace colorSpace) throws IOException {
+        return RawImage.create(file, width, height, colorSpace, RawImage.MAX_CHUNK_BYTES);
+    }
+
+
+    static RawImage create(Path file, int width, int height, ColorSpace colorSpace, long maxChunkBytes) throws IOException {
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(colorSpace);
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("width and height must be at least 1: " + width + "x" + height);
+        }
+
+        final ByteBuffer header = ByteBuffer.allocate(RawImage.HEADER_SIZE);
+        header.putInt(RawImage.MAGIC);
+        header.putInt(RawImage.VERSION);
+        header.putInt(width);
+        header.putInt(height);
+        header.putInt(colorSpace.ordinal());
+        header.putInt(RawImage.LAYOUT_ARGB_LITTLE_ENDIAN);
+        header.rewind();
+
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            // writing the last byte extends the file, the pixels in between read as 0
+            channel.write(ByteBuffer.allocate(1), RawImage.HEADER_SIZE + (long) width * height * 4 - 1);
+            return new RawImage(channel, width, height, colorSpace, true, maxChunkBytes);
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Opens a raw image file and maps its pixels.
+     *
+     * @param file The path of the file.
+     * @param writable Whether the pixels may be modified, the file is opened read-only otherwise.
+     *
+     * @return The mapped raw image.
+     *
+     * @throws IOException If an error occurs while reading the file or it isn't a raw image.
+     */
+    public static RawImage open(Path file, boolean writable) throws IOException {
+        return RawImage.open(file, writable, RawImage.MAX_CHUNK_BYTES);
+    }
+
+
+    static RawImage open(Path file, boolean writable, long maxChunkBytes) throws IOException {
+        Objects.requireNonNull(file);
+
+        final FileChannel channel = writable ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(RawImage.HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    break;
+                }
+            }
+            header.flip();
+            if (header.remaining() < RawImage.HEADER_SIZE || header.getInt() != RawImage.MAGIC) {
+                throw new IOException("not a raw image: " + file);
+            }
+            final int version = header.getInt();
+            final int width = header.getInt();
+            final int height = header.getInt();
+            final int colorSpace = header.getInt();
+            final int layout = header.getInt();
+            if (version != RawImage.VERSION || layout != RawImage.LAYOUT_ARGB_LITTLE_ENDIAN) {
+                throw new IOException("unsupported raw image version " + version + " or layout " + layout + ": " + file);
+            }
+            if (width < 1 || height < 1 || colorSpace < 0 || colorSpace >= ColorSpace.values().length) {
+                throw new IOException("corrupt raw image header: " + file);
+            }
+            final long expectedSize = RawImage.HEADER_SIZE + (long) width * height * 4;
+            if (channel.size() != expectedSize) {
+                throw new IOException("raw image has " + channel.size() + " bytes, expected " + expectedSize + ": " + file);
+            }
+            return new RawImage(channel, width, height, ColorSpace.values()[colorSpace], writable, maxChunkBytes);
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Writes an image to a raw image file, replacing an existing file.
+     *
+     * @param image The image to write.
+     * @param file The path of the file.
+     *
+     * @throws IOException If an error occurs while writing the file.
+     */
+    public static void write(Image image, Path file) throws IOException {
+        try (RawImage rawImage = RawImage.create(file, image.getWidth(), image.getHeight(), image.getColorSpace())) {
+            final int[] pixels = image.getPixels();
+            for (int chunk = 0; chunk < rawImage.chunks.length; chunk++) {
+                final IntBuffer buffer = rawImage.chunks[chunk].duplicate();
+                buffer.put(pixels, chunk * rawImage.rowsPerChunk * rawImage.width, buffer.remaining());
+            }
+            rawImage.force();
+        }
+    }
+
+
+    private RawImage(FileChannel channel, int width, int height, ColorSpace colorSpace, boolean writable, long maxChunkBytes) throws IOException {
+        final long rowBytes = (long) width * 4;
+        if (rowBytes > maxChunkBytes) {
+            throw new IOException("raw image rows are too wide to be mapped: " + width);
+        }
+
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.colorSpace = colorSpace;
+        this.writable = writable;
+        this.rowsPerChunk = (int) Math.min(height, maxChunkBytes / rowBytes);
+        this.chunks = new IntBuffer[(height + this.rowsPerChunk - 1) / this.rowsPerChunk];
+        final FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        for (int chunk = 0; chunk < this.chunks.length; chunk++) {
+            final int rows = Math.min(this.rowsPerChunk, height - chunk * this.rowsPerChunk);
+            final MappedByteBuffer buffer = channel.map(mode, RawImage.HEADER_SIZE + chunk * this.rowsPerChunk * rowBytes, rows * rowBytes);
+            this.chunks[chunk] = buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+    }
+
+
+    /**
+     * Reduces the number of colors in place by replacing each pixel's color with the palette color the matcher considers closest, like
+     * {@link ImageModifier#reduceColors(PaletteMatcher)} with the default {@link AlphaMode#IGNORE}. A run of equal pixels is matched only once.
+     *
+     * @param matcher The matcher that finds the closest palette color.
+     *
+     * @return This RawImage instance after reducing colors.
+     *
+     * @throws IllegalStateException If the image was opened read-only.
+     */
+    public RawImage reduceColors(PaletteMatcher matcher) {
+        if (!this.writable) {
+            throw new IllegalStateException("raw image is read-only");
+        }
+        if (matcher.size() == 0) {
+            throw new IllegalArgumentException("palette must contain at least one color");
+        }
+
+        final long startTime = Metrics.startTimer();
+        RowBands.process(this.height, this.parallelism, this.executor, (fromRow, toRow) -> {
+            final float[] scratch = new float[3];
+            for (int y = fromRow; y < toRow; y++) {
+                final IntBuffer chunk = this.chunks[y / this.rowsPerChunk];
+                final int from = y % this.rowsPerChunk * this.width;
+                int source = ~chunk.get(from);
+                int result = 0;
+                for (int i = from; i < from + this.width; i++) {
+                    final int argb = chunk.get(i);
+                    if (argb != source) {
+                        source = argb;
+                        result = matcher.getArgb(matcher.findClosestIndex(argb, scratch));
+                    }
+                    chunk.put(i, result);
+                }
+            }
+        });
+        Metrics.stopTimer(ProcessingStage.MATCH, startTime, (long) this.width * this.height);
+        return this;
+    }
+
+
+    /**
+     * Copies the pixels into a new image on the heap.
+     *
+     * @return The image.
+     *
+     * @throws IllegalStateException If the image has more pixels than an array can hold.
+     */
+    public Image toImage() {
+        return this.toImage(this.colorSpace);
+    }
+
+
+    Image toImage(ColorSpace imageColorSpace) {
+        if ((long) this.width * this.height > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("raw image is too large to be copied into the heap: " + this.width + "x" + this.height);
+        }
+        final Image image = new Image(this.width, this.height, imageColorSpace);
+        final int[] pixels = image.getPixels();
+        for (int chunk = 0; chunk < this.chunks.length; chunk++) {
+            final IntBuffer buffer = this.chunks[chunk].duplicate();
+            buffer.get(pixels, chunk * this.rowsPerChunk * this.width, buffer.remaining());
+        }
+        return image;
+    }
+
+
+    /**
+     * Returns whether the name of a file has the extension of raw images.
+     *
+     * @param fileName The file name.
+     *
+     * @return true if the file name ends with ".lcraw", ignoring case
+     */
+    public static boolean hasRawExtension(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT).endsWith("." + RawImage.FORMAT_NAME);
+    }
+
+
+    /**
+     * Returns the color of a pixel in ARGB format.
+     *
+     * @param x The x-coordinate of the pixel.
+     * @param y The y-coordinate of the pixel.
+     *
+     * @return The pixel color in ARGB format.
+     */
+    public int getArgb(int x, int y) {
+        return this.chunks[y / this.rowsPerChunk].get(y % this.rowsPerChunk * this.width + x);
+    }
+
+
+    /**
+     * Sets the color of a pixel in ARGB format.
+     *
+     * @param argb The pixel color in ARGB format.
+     * @param x The x-coordinate of the pixel.
+     * @param y The y-coordinate of the pixel.
+     *
+     * @throws IllegalStateException If the image was opened read-only.
+     */
+    public void setArgb(int argb, int x, int y) {
+        if (!this.writable) {
+            throw new IllegalStateException("raw image is read-only");
+        }
+        this.chunks[y / this.rowsPerChunk].put(y % this.rowsPerChunk * this.width + x, argb);
+    }
+
+
+    /**
+     * Writes all modified pixels to the storage device. Without calling this, the operating system writes them eventually, even after the JVM exits.
+     *
+     * @throws IOException If an error occurs while writing.
+     */
+    public void force() throws IOException {
+        if (this.writable) {
+            this.channel.force(false);
+        }
+    }
+
+
+    /**
+     * Closes the file. The pixels must not be accessed afterwards.
+     *
+     * @throws IOException If an error occurs while closing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+
+    /**
+     * Sets the number of threads used by {@link #reduceColors(PaletteMatcher)}. Unless an executor is set, a fork-join pool with this many threads is created
+     * for each call. The default is 1, which processes the image on the calling thread.
+     *
+     * @param parallelism The number of threads, at least 1.
+     *
+     * @return This RawImage instance.
+     */
+    public RawImage setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+
+    /**
+     * Sets the executor {@link #reduceColors(PaletteMatcher)} runs on. The executor is not shut down by this class. Pass null to go back to using a fork-join
+     * pool.
+     *
+     * @param executor The executor or null.
+     *
+     * @return This RawImage instance.
+     */
+    public RawImage setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+
+    /**
+     * Gets the width of the image.
+     *
+     * @return The width of the image in pixels.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+
+    /**
+     * Gets the height of the image.
+     *
+     * @return The height of the image in pixels.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+
+    /**
+     * Gets the color space of the image.
+     *
+     * @return The color space of the image.
+     */
+    public ColorSpace getColorSpace() {
+        return this.colorSpace;
+    }
+
+
+    /**
+     * Returns whether the pixels may be modified.
+     *
+     * @return true if the image was created or opened for writing
+     */
+    public boolean isWritable() {
+        return this.writable;
+    }
+
+}
@@ -0,0 +1,125 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Splits the rows of an image into bands and processes them concurrently.
+ */
+final class RowBands {
+    /**
+     * The number of bands per thread. More bands than threads even out bands that take longer than others.
+     */
+    private static final int BANDS_PER_THREAD = 4;
+
+
+    /**
+     * Processes a range of rows.
+     */
+    @FunctionalInterface
+    interface Task {
+        void process(int fromRow, int toRow);
+    }
+
+
+    private RowBands() {
+    }
+
+
+    /**
+     * Processes all rows, either on the calling thread, on the executor if one is given, or on a temporary fork-join pool with the specified parallelism.
+     * Returns once all rows have been processed.
+     *
+     * @param height The number of rows.
+     * @param parallelism The number of threads to use if no executor is given.
+     * @param executor The executor to run the bands on or null.
+     * @param task The task that processes a band of rows.
+     */
+    static void process(int height, int parallelism, ExecutorService executor, Task task) {
+        if (executor == null && parallelism <= 1 || height <= 1) {
+            task.process(0, height);
+            return;
+        }
+
+        if (executor != null) {
+            RowBands.submit(height, parallelism, executor, task);
+            return;
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            RowBands.submit(height, parallelism, pool, task);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+    /**
+     * Runs the specified number of copies of a worker, either on the calling thread, on the executor if one is given, or on a temporary fork-join pool.
+     * Workers that coordinate with each other must only ever wait for work that another running worker has already claimed, because the executor may run
+     * fewer workers at once than requested. Returns once all workers have returned.
+     *
+     * @param workers The number of workers.
+     * @param executor The executor to run the workers on or null.
+     * @param worker The worker.
+     */
+    static void runWorkers(int workers, ExecutorService executor, Runnable worker) {
+        // with as many rows as workers, every band consists of a single row
+        RowBands.process(workers, workers, executor, (fromRow, toRow) -> {
+            for (int i = fromRow; i < toRow; i++) {
+                worker.run();
+            }
+        });
+    }
+
+
+    private static void submit(int height, int parallelism, ExecutorService executor, Task task) {
+        final int bandCount = Math.min(height, Math.max(1, parallelism) * RowBands.BANDS_PER_THREAD);
+        final List<Future<?>> futures = new ArrayList<>(bandCount);
+        for (int band = 0; band < bandCount; band++) {
+            final int fromRow = (int) ((long) height * band / bandCount);
+            final int toRow = (int) ((long) height * (band + 1) / bandCount);
+            futures.add(executor.submit(() -> task.process(fromRow, toRow)));
+        }
+
+        try {
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("interrupted while processing the image", e);
+        } catch (final ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+}
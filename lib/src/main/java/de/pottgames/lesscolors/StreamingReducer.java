@@ -0,0 +1,161 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * The StreamingReducer class reduces the colors of images that are too large to be held in memory. The source image is decoded in strips of rows with
+ * {@link ImageReadParam#setSourceRegion(Rectangle)}, each strip is reduced and immediately appended to the output file, so peak memory is proportional to the
+ * strip size instead of the image size.
+ * <p>
+ * The output is always written as PNG. How efficiently a strip can be decoded depends on the ImageIO reader of the source format: readers of tiled or
+ * striped formats like TIFF jump right to the region, while the PNG and JPEG readers decode the image from the start up to the region for each strip.
+ */
+public class StreamingReducer {
+    private final PaletteMatcher matcher;
+    private int                  stripHeight = 256;
+    private int                  parallelism = 1;
+    private ExecutorService      executor;
+
+
+    /**
+     * Creates a reducer that replaces each pixel with the palette color the matcher considers closest.
+     *
+     * @param matcher The matcher that finds the closest palette color.
+     */
+    public StreamingReducer(PaletteMatcher matcher) {
+        this.matcher = Objects.requireNonNull(matcher);
+        if (matcher.size() == 0) {
+            throw new IllegalArgumentException("palette must contain at least one color");
+        }
+    }
+
+
+    /**
+     * Reduces the colors of an image file and writes the result to a PNG file.
+     *
+     * @param input The image file to read.
+     * @param output The PNG file to write.
+     *
+     * @throws IOException If an error occurs while reading or writing, or if the input format is not supported.
+     */
+    public void reduce(File input, File output) throws IOException {
+        Objects.requireNonNull(input);
+        Objects.requireNonNull(output);
+
+        try (ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+            if (stream == null) {
+                throw new IOException("can't read file: " + input.getAbsolutePath());
+            }
+            final Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                throw new IOException("unsupported image format: " + input.getAbsolutePath());
+            }
+
+            final ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                this.reduce(reader, output);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+
+    private void reduce(ImageReader reader, File output) throws IOException {
+        final int width = reader.getWidth(0);
+        final int height = reader.getHeight(0);
+        final ImageReadParam param = reader.getDefaultReadParam();
+
+        try (PngStreamWriter writer = new PngStreamWriter(new BufferedOutputStream(new FileOutputStream(output)), width, height)) {
+            for (int y = 0; y < height; y += this.stripHeight) {
+                final int rows = Math.min(this.stripHeight, height - y);
+                final long stripPixels = (long) width * rows;
+                param.setSourceRegion(new Rectangle(0, y, width, rows));
+                final long decodeStart = Metrics.startTimer();
+                final BufferedImage strip = reader.read(0, param);
+                Metrics.stopTimer(ProcessingStage.DECODE, decodeStart, stripPixels);
+
+                // the color space of the strip doesn't matter, the reduction works on the ARGB values
+                final Image image = Image.fromBufferedImage(strip, ColorSpace.RGB);
+                new ImageModifier(image).setParallelism(this.parallelism).setExecutor(this.executor).reduceColors(this.matcher);
+                final long encodeStart = Metrics.startTimer();
+                writer.writeRows(image.getPixels(), 0, rows);
+                Metrics.stopTimer(ProcessingStage.ENCODE, encodeStart, stripPixels);
+            }
+        }
+    }
+
+
+    /**
+     * Sets the number of rows that are decoded, reduced and written at once. The default is 256.
+     *
+     * @param stripHeight The number of rows per strip, at least 1.
+     *
+     * @return This StreamingReducer instance.
+     */
+    public StreamingReducer setStripHeight(int stripHeight) {
+        if (stripHeight < 1) {
+            throw new IllegalArgumentException("strip height must be at least 1: " + stripHeight);
+        }
+        this.stripHeight = stripHeight;
+        return this;
+    }
+
+
+    /**
+     * Sets the number of threads that reduce each strip, see {@link ImageModifier#setParallelism(int)}.
+     *
+     * @param parallelism The number of threads, at least 1.
+     *
+     * @return This StreamingReducer instance.
+     */
+    public StreamingReducer setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+
+    /**
+     * Sets the executor each strip is reduced on, see {@link ImageModifier#setExecutor(ExecutorService)}.
+     *
+     * @param executor The executor or null.
+     *
+     * @return This StreamingReducer instance.
+     */
+    public StreamingReducer setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+}
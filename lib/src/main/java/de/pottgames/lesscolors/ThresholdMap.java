@@ -0,0 +1,108 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors;
+
+/**
+ * The threshold maps supported by {@link ImageModifier#ditherOrdered(Palette, ThresholdMap)}. A threshold map is a square tile of thresholds between 0 and
+ * 1 that is repeated over the image. Each pixel is offset by its threshold before it is matched against the palette.
+ */
+public enum ThresholdMap {
+    /**
+     * The 2x2 Bayer matrix.
+     */
+    BAYER_2X2(2),
+    /**
+     * The 4x4 Bayer matrix.
+     */
+    BAYER_4X4(4),
+    /**
+     * The 8x8 Bayer matrix.
+     */
+    BAYER_8X8(8),
+    /**
+     * A 64x64 blue noise tile, generated with the void-and-cluster method on first use. Blue noise avoids the cross-hatch pattern of the Bayer matrices.
+     */
+    BLUE_NOISE_64X64(64);
+
+    private final int        size;
+    private volatile float[] thresholds;
+
+
+    ThresholdMap(int size) {
+        this.size = size;
+    }
+
+
+    /**
+     * Returns the width and height of the tile.
+     *
+     * @return the size of the tile
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+
+    /**
+     * Returns the threshold of a pixel. The tile is repeated, so any coordinates are valid.
+     *
+     * @param x The x-coordinate of the pixel.
+     * @param y The y-coordinate of the pixel.
+     *
+     * @return The threshold, greater than 0 and less than 1.
+     */
+    public float getThreshold(int x, int y) {
+        final int mask = this.size - 1;
+        return this.getThresholds()[(y & mask) * this.size + (x & mask)];
+    }
+
+
+    private float[] getThresholds() {
+        float[] result = this.thresholds;
+        if (result == null) {
+            // generating the tile is deterministic, so threads racing here compute the same thresholds
+            final int[] ranks = this == ThresholdMap.BLUE_NOISE_64X64 ? BlueNoise.generateRanks(this.size) : ThresholdMap.bayerRanks(this.size);
+            result = new float[ranks.length];
+            for (int i = 0; i < ranks.length; i++) {
+                result[i] = (ranks[i] + 0.5f) / ranks.length;
+            }
+            this.thresholds = result;
+        }
+        return result;
+    }
+
+
+    /**
+     * Builds the Bayer matrix of the given size from the one of half the size: each entry becomes a 2x2 block of 4m, 4m+2, 4m+3 and 4m+1.
+     */
+    private static int[] bayerRanks(int size) {
+        if (size == 1) {
+            return new int[] { 0 };
+        }
+
+        final int half = size / 2;
+        final int[] smaller = ThresholdMap.bayerRanks(half);
+        final int[] ranks = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                final int quadrant = (y / half) * 2 + x / half;
+                final int offset = quadrant == 0 ? 0 : quadrant == 1 ? 2 : quadrant == 2 ? 3 : 1;
+                ranks[y * size + x] = 4 * smaller[(y % half) * half + x % half] + offset;
+            }
+        }
+        return ranks;
+    }
+
+}
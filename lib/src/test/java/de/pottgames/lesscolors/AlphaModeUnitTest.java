@@ -0,0 +1,117 @@
+package de.pottgames.lesscolors;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AlphaModeUnitTest {
+    private static final int[] PALETTE = { 0xFF000000, 0xFFFFFFFF, 0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0xFF808080 };
+
+
+    @Test
+    public void testIgnoreMatchesEveryPixel() {
+        final Palette palette = new Palette(AlphaModeUnitTest.PALETTE, ColorSpace.RGB);
+        final Image image = AlphaModeUnitTest.createSprite(new Random(1L));
+        final Image expected = image.copy();
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                expected.setArgb(palette.getArgb(palette.findClosestIndex(expected.getArgb(x, y))), x, y);
+            }
+        }
+
+        new ImageModifier(image).setParallelism(3).reduceColors(palette);
+        Assertions.assertArrayEquals(expected.getPixels(), image.getPixels());
+    }
+
+
+    @Test
+    public void testModes() {
+        final Palette palette = new Palette(AlphaModeUnitTest.PALETTE, ColorSpace.RGB);
+        final Image image = new Image(5, 1, ColorSpace.RGB);
+        image.setArgb(0x00FF0000, 0, 0);
+        image.setArgb(0xFFFE0101, 1, 0);
+        image.setArgb(0x40FF0000, 2, 0);
+        image.setArgb(0xC0FF0000, 3, 0);
+        image.setArgb(0x80FFFFFF, 4, 0);
+
+        Image result = new ImageModifier(image.copy()).setAlphaMode(AlphaMode.PRESERVE).reduceColors(palette).getImage();
+        Assertions.assertArrayEquals(new int[] { 0x00FF0000, 0xFFFF0000, 0x40FF0000, 0xC0FF0000, 0x80FFFFFF }, AlphaModeUnitTest.row(result));
+
+        result = new ImageModifier(image.copy()).setAlphaMode(AlphaMode.THRESHOLD).setAlphaThreshold(0x80).reduceColors(palette).getImage();
+        Assertions.assertArrayEquals(new int[] { 0x00FF0000, 0xFFFF0000, 0x00FF0000, 0xFFFF0000, 0xFFFFFFFF }, AlphaModeUnitTest.row(result));
+
+        result = new ImageModifier(image.copy()).setAlphaMode(AlphaMode.MATTE).setMatteColor(0x000000).reduceColors(palette).getImage();
+        Assertions.assertArrayEquals(new int[] { 0xFF000000, 0xFFFF0000, 0xFF000000, 0xFFFF0000, 0xFF808080 }, AlphaModeUnitTest.row(result));
+
+        result = new ImageModifier(image.copy()).setAlphaMode(AlphaMode.PREMULTIPLY).reduceColors(palette).getImage();
+        Assertions.assertArrayEquals(new int[] { 0x00FF0000, 0xFFFF0000, 0x40000000, 0xC0FF0000, 0x80808080 }, AlphaModeUnitTest.row(result));
+    }
+
+
+    @Test
+    public void testHistogramMatchesReduction() {
+        final Palette palette = new Palette(AlphaModeUnitTest.PALETTE, ColorSpace.OKLAB);
+        for (final AlphaMode mode : AlphaMode.values()) {
+            final Image image = AlphaModeUnitTest.createSprite(new Random(2L));
+            final Image byHistogram = image.copy();
+            new ImageModifier(image).setAlphaMode(mode).setMatteColor(0x336699).setParallelism(2).reduceColors(palette);
+            new ImageModifier(byHistogram).setAlphaMode(mode).setMatteColor(0x336699).reduceColorsByHistogram(palette);
+            Assertions.assertArrayEquals(image.getPixels(), byHistogram.getPixels());
+        }
+    }
+
+
+    @Test
+    public void testTransparentRunsAreNotMatched() {
+        final Palette palette = new Palette(AlphaModeUnitTest.PALETTE, ColorSpace.RGB);
+        final Image image = new Image(64, 8, ColorSpace.RGB);
+        image.setArgb(0xFF102030, 10, 3);
+        image.setArgb(0x80405060, 11, 3);
+
+        final Metrics expected = new Metrics();
+        final Metrics actual = new Metrics();
+        try {
+            Metrics.activate(expected);
+            palette.findClosestIndex(0xFF102030);
+            palette.findClosestIndex(0x80405060);
+            Metrics.activate(actual);
+            new ImageModifier(image).setAlphaMode(AlphaMode.PRESERVE).reduceColors(palette);
+        } finally {
+            Metrics.activate(null);
+        }
+        Assertions.assertEquals(expected.getDistanceEvaluations(), actual.getDistanceEvaluations());
+        Assertions.assertEquals(0, image.getArgb(0, 0));
+        Assertions.assertEquals(0xFF000000, image.getArgb(10, 3));
+        Assertions.assertEquals(0x80808080, image.getArgb(11, 3));
+    }
+
+
+    private static int[] row(Image image) {
+        final int[] row = new int[image.getWidth()];
+        for (int x = 0; x < row.length; x++) {
+            row[x] = image.getArgb(x, 0);
+        }
+        return row;
+    }
+
+
+    /**
+     * Creates a mostly transparent image with runs of opaque and partially transparent pixels.
+     */
+    private static Image createSprite(Random random) {
+        final Image image = new Image(48, 32, ColorSpace.RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            int x = random.nextInt(20);
+            while (x < image.getWidth()) {
+                final int argb = random.nextInt(4) << 30 | random.nextInt(0x1000000) | (random.nextBoolean() ? 0xFF000000 : 0);
+                for (int end = Math.min(image.getWidth(), x + 1 + random.nextInt(6)); x < end; x++) {
+                    image.setArgb(argb, x, y);
+                }
+                x += random.nextInt(10);
+            }
+        }
+        return image;
+    }
+
+}
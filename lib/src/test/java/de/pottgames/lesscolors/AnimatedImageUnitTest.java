@@ -0,0 +1,137 @@
+package de.pottgames.lesscolors;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AnimatedImageUnitTest {
+    private static final int WIDTH  = 16;
+    private static final int HEIGHT = 12;
+
+
+    @Test
+    public void testGifRoundTrip() throws IOException {
+        final AnimatedImage animation = new AnimatedImage(AnimatedImageUnitTest.WIDTH + 4, AnimatedImageUnitTest.HEIGHT + 2);
+        animation.setLoopCount(AnimatedImage.LOOP_FOREVER);
+        final Random random = new Random(17L);
+        animation.addFrame(new Frame(AnimatedImageUnitTest.createFrame(random, 40), 0, 0, 100, FrameDisposal.KEEP));
+        animation.addFrame(new Frame(AnimatedImageUnitTest.createFrame(random, 40), 4, 2, 250, FrameDisposal.RESTORE_TO_BACKGROUND));
+        final Image transparent = AnimatedImageUnitTest.createFrame(random, 3);
+        transparent.setArgb(0, 5, 5);
+        animation.addFrame(new Frame(transparent, 2, 1, 30, FrameDisposal.RESTORE_TO_PREVIOUS));
+
+        final File file = File.createTempFile("animation", ".gif");
+        file.deleteOnExit();
+        animation.saveToFile(file, "gif");
+        final AnimatedImage loaded = AnimatedImage.fromFile(file, ColorSpace.RGB);
+        Files.delete(file.toPath());
+
+        Assertions.assertEquals(animation.getWidth(), loaded.getWidth());
+        Assertions.assertEquals(animation.getHeight(), loaded.getHeight());
+        Assertions.assertEquals(AnimatedImage.LOOP_FOREVER, loaded.getLoopCount());
+        Assertions.assertEquals(animation.getFrameCount(), loaded.getFrameCount());
+        for (int i = 0; i < animation.getFrameCount(); i++) {
+            final Frame expected = animation.getFrame(i);
+            final Frame actual = loaded.getFrame(i);
+            Assertions.assertEquals(expected.getLeft(), actual.getLeft());
+            Assertions.assertEquals(expected.getTop(), actual.getTop());
+            Assertions.assertEquals(expected.getDelayMillis(), actual.getDelayMillis());
+            Assertions.assertEquals(expected.getDisposal(), actual.getDisposal());
+            for (int y = 0; y < AnimatedImageUnitTest.HEIGHT; y++) {
+                for (int x = 0; x < AnimatedImageUnitTest.WIDTH; x++) {
+                    final int argb = expected.getImage().getArgb(x, y);
+                    Assertions.assertEquals(argb >>> 24 == 0 ? 0 : argb, actual.getImage().getArgb(x, y) >>> 24 == 0 ? 0 : actual.getImage().getArgb(x, y));
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testReductionMatchesPerFrameReduction() {
+        final Random random = new Random(19L);
+        final Palette palette = new Palette(new int[] { 0xFF000000, 0xFFFFFFFF, 0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0xFF808080 }, ColorSpace.OKLAB);
+        final AnimatedImage animation = new AnimatedImage(AnimatedImageUnitTest.WIDTH, AnimatedImageUnitTest.HEIGHT);
+        final Image first = AnimatedImageUnitTest.createFrame(random, 500);
+        first.setArgb(0x00123456, 3, 4);
+        animation.addFrame(new Frame(first));
+        // the second frame only changes two rows of the first, the third repeats the second
+        final Image second = first.copy();
+        for (int x = 0; x < AnimatedImageUnitTest.WIDTH; x++) {
+            second.setArgb(0xFF000000 | random.nextInt(), x, 2);
+            second.setArgb(0xFF000000 | random.nextInt(), x, 7);
+        }
+        animation.addFrame(new Frame(second));
+        animation.addFrame(new Frame(second.copy()));
+        animation.addFrame(new Frame(AnimatedImageUnitTest.createFrame(random, 500)));
+
+        final Image[] expected = new Image[animation.getFrameCount()];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = animation.getFrame(i).getImage().copy();
+            new ImageModifier(expected[i]).reduceColors(palette);
+        }
+
+        for (final int parallelism : new int[] { 1, 3 }) {
+            final AnimatedImage reduced = new AnimatedImage(animation.getWidth(), animation.getHeight());
+            for (final Frame frame : animation.getFrames()) {
+                reduced.addFrame(new Frame(frame.getImage().copy()));
+            }
+            final AnimatedImageModifier modifier = new AnimatedImageModifier(reduced).setParallelism(parallelism).reduceColors(palette);
+            Assertions.assertEquals(AnimatedImageUnitTest.HEIGHT - 2 + AnimatedImageUnitTest.HEIGHT, modifier.getReusedRowCount());
+
+            for (int i = 0; i < expected.length; i++) {
+                final Image original = animation.getFrame(i).getImage();
+                for (int y = 0; y < AnimatedImageUnitTest.HEIGHT; y++) {
+                    for (int x = 0; x < AnimatedImageUnitTest.WIDTH; x++) {
+                        final int argb = reduced.getFrame(i).getImage().getArgb(x, y);
+                        if (original.getArgb(x, y) >>> 24 == 0) {
+                            Assertions.assertEquals(0, argb);
+                        } else {
+                            Assertions.assertEquals(expected[i].getArgb(x, y), argb);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testSingleFrameFormats() throws IOException {
+        final AnimatedImage animation = new AnimatedImage(AnimatedImageUnitTest.WIDTH, AnimatedImageUnitTest.HEIGHT);
+        final Random random = new Random(23L);
+        animation.addFrame(new Frame(AnimatedImageUnitTest.createFrame(random, 1000)));
+
+        final File file = File.createTempFile("animation", ".png");
+        file.deleteOnExit();
+        animation.saveToFile(file, "png");
+        final AnimatedImage loaded = AnimatedImage.fromFile(file, ColorSpace.RGB);
+        Assertions.assertEquals(1, loaded.getFrameCount());
+        Assertions.assertEquals(AnimatedImage.NO_LOOP, loaded.getLoopCount());
+        Assertions.assertEquals(animation.getFrame(0).getImage().getArgb(7, 5), loaded.getFrame(0).getImage().getArgb(7, 5));
+
+        animation.addFrame(new Frame(AnimatedImageUnitTest.createFrame(random, 1000)));
+        Assertions.assertThrows(IOException.class, () -> animation.saveToFile(file, "png"));
+        Files.delete(file.toPath());
+    }
+
+
+    private static Image createFrame(Random random, int colorCount) {
+        final int[] colors = new int[colorCount];
+        for (int i = 0; i < colorCount; i++) {
+            colors[i] = 0xFF000000 | random.nextInt();
+        }
+        final Image image = new Image(AnimatedImageUnitTest.WIDTH, AnimatedImageUnitTest.HEIGHT, ColorSpace.RGB);
+        for (int y = 0; y < AnimatedImageUnitTest.HEIGHT; y++) {
+            for (int x = 0; x < AnimatedImageUnitTest.WIDTH; x++) {
+                image.setArgb(colors[random.nextInt(colorCount)], x, y);
+            }
+        }
+        return image;
+    }
+
+}
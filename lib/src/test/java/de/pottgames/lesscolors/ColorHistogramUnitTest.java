@@ -0,0 +1,81 @@
+package de.pottgames.lesscolors;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ColorHistogramUnitTest {
+
+    @Test
+    public void testMapMatchesHashMap() {
+        final Random random = new Random(11L);
+        final ArgbIntMap map = new ArgbIntMap(1);
+        final Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            // a small key range produces plenty of repeated keys, including 0
+            final int key = random.nextInt(5000) - 100;
+            map.add(key, 1);
+            expected.merge(key, 1, Integer::sum);
+        }
+
+        Assertions.assertEquals(expected.size(), map.size());
+        Assertions.assertEquals(expected.size(), map.keys().length);
+        for (final int key : map.keys()) {
+            Assertions.assertEquals(expected.get(key).intValue(), map.get(key, -1));
+        }
+        Assertions.assertEquals(-1, map.get(123456789, -1));
+    }
+
+
+    @Test
+    public void testHistogramCountsColors() {
+        final Image image = new Image(4, 2, ColorSpace.RGB);
+        image.setArgb(0xFFFF0000, 1, 0);
+        image.setArgb(0xFFFF0000, 2, 1);
+        image.setArgb(0xFF00FF00, 3, 1);
+
+        final ColorHistogram histogram = ColorHistogram.of(image);
+        Assertions.assertEquals(8L, histogram.getPixelCount());
+        Assertions.assertEquals(3, histogram.getUniqueColorCount());
+        Assertions.assertEquals(5, histogram.getCount(0));
+        Assertions.assertEquals(2, histogram.getCount(0xFFFF0000));
+        Assertions.assertEquals(1, histogram.getCount(0xFF00FF00));
+        Assertions.assertEquals(0, histogram.getCount(0xFF0000FF));
+        Assertions.assertEquals(5.0 / 8.0, histogram.getHitRatio(), 1e-9);
+    }
+
+
+    @Test
+    public void testReductionMatchesPerPixelReduction() {
+        final Random random = new Random(3L);
+        final int[] paletteColors = new int[32];
+        for (int i = 0; i < paletteColors.length; i++) {
+            paletteColors[i] = random.nextInt() | 0xFF000000;
+        }
+        final Palette palette = new Palette(paletteColors, ColorSpace.OKLAB);
+
+        final Image perPixel = new Image(160, 100, ColorSpace.OKLAB);
+        final Image byHistogram = new Image(160, 100, ColorSpace.OKLAB);
+        for (int y = 0; y < perPixel.getHeight(); y++) {
+            for (int x = 0; x < perPixel.getWidth(); x++) {
+                final int argb = random.nextInt(6000) * 2797;
+                perPixel.setArgb(argb, x, y);
+                byHistogram.setArgb(argb, x, y);
+            }
+        }
+
+        new ImageModifier(perPixel).reduceColors(palette);
+        final ImageModifier modifier = new ImageModifier(byHistogram).setParallelism(3).reduceColorsByHistogram(palette);
+        for (int y = 0; y < perPixel.getHeight(); y++) {
+            for (int x = 0; x < perPixel.getWidth(); x++) {
+                Assertions.assertEquals(perPixel.getArgb(x, y), byHistogram.getArgb(x, y));
+            }
+        }
+        // enough distinct colors to resolve them concurrently
+        Assertions.assertTrue(modifier.getHistogram().getUniqueColorCount() > 4096);
+    }
+
+}
@@ -0,0 +1,98 @@
+package de.pottgames.lesscolors;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ColorMathUnitTest {
+
+    @Test
+    public void testConversionMatchesColormath() {
+        final Random random = new Random(11L);
+        final float[] components = new float[3];
+        for (final ColorSpace colorSpace : ColorSpace.values()) {
+            // LAB spans 0-100, the other color spaces roughly 0-1
+            final float tolerance = colorSpace == ColorSpace.LAB ? 1e-2f : 1e-4f;
+            for (int i = 0; i < 1000; i++) {
+                final int argb = random.nextInt();
+                ColorMath.argbToComponents(argb, colorSpace, components, 0);
+                final float[] expected = Color.fromARGBInt(argb).toColorSpace(colorSpace).getComponents();
+                for (int c = 0; c < 3; c++) {
+                    Assertions.assertEquals(expected[c], components[c], tolerance, colorSpace.toString());
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testComponentsToArgbRoundTrip() {
+        final Random random = new Random(29L);
+        final float[] components = new float[3];
+        for (final ColorSpace colorSpace : ColorSpace.values()) {
+            for (int i = 0; i < 10000; i++) {
+                final int argb = random.nextInt() | 0xFF000000;
+                ColorMath.argbToComponents(argb, colorSpace, components, 0);
+                Assertions.assertEquals(argb, ColorMath.componentsToArgb(colorSpace, components[0], components[1], components[2]), colorSpace.toString());
+            }
+        }
+
+        // out of gamut components are clamped
+        Assertions.assertEquals(0xFFFF0000, ColorMath.componentsToArgb(ColorSpace.RGB, 2f, -1f, 0f));
+        Assertions.assertEquals(0xFFFFFFFF, ColorMath.componentsToArgb(ColorSpace.OKLAB, 1.5f, 0f, 0f));
+    }
+
+
+    @Test
+    public void testDistanceMatchesColormath() {
+        final Random random = new Random(12L);
+        final float[] components = new float[6];
+        for (final ColorSpace colorSpace : ColorSpace.values()) {
+            // the palette search relies on these bounds to find every color that could be closer by colormath
+            final float tolerance = colorSpace == ColorSpace.LAB ? PaletteIndex.LAB_KERNEL_ERROR : PaletteIndex.EUCLIDEAN_KERNEL_ERROR;
+            for (int i = 0; i < 1000; i++) {
+                final int argb1 = random.nextInt() | 0xFF000000;
+                final int argb2 = random.nextInt() | 0xFF000000;
+                ColorMath.argbToComponents(argb1, colorSpace, components, 0);
+                ColorMath.argbToComponents(argb2, colorSpace, components, 3);
+                final float expected = Color.fromARGBInt(argb1).distance(Color.fromARGBInt(argb2), colorSpace);
+                final float actual = ColorMath.distance(colorSpace, components[0], components[1], components[2], components[3], components[4], components[5]);
+                Assertions.assertEquals(expected, actual, tolerance, colorSpace.toString());
+            }
+        }
+    }
+
+
+    @Test
+    public void testCiede2000LowerBound() {
+        final Random random = new Random(23L);
+        final float[] components = new float[6];
+        for (int i = 0; i < 100000; i++) {
+            ColorMath.argbToComponents(random.nextInt(), ColorSpace.LAB, components, 0);
+            // many close pairs, where the bound is tightest
+            final int other = i % 2 == 0 ? random.nextInt() : ColorMath.componentsToArgb(ColorSpace.LAB, components[0] + random.nextFloat() * 4f - 2f,
+                    components[1] + random.nextFloat() * 8f - 4f, components[2] + random.nextFloat() * 8f - 4f);
+            ColorMath.argbToComponents(other, ColorSpace.LAB, components, 3);
+            final double bound = ColorMath.ciede2000LowerBound(components[0], components[1], components[2], components[3], components[4], components[5]);
+            final float distance = ColorMath.ciede2000(components[0], components[1], components[2], components[3], components[4], components[5]);
+            Assertions.assertTrue(bound <= distance * (1.0 + 1e-6) + 1e-6, bound + " > " + distance);
+        }
+    }
+
+
+    @Test
+    public void testCiede2000ReferenceValues() {
+        // pairs from Sharma, Wu and Dalal:
+        // "The CIEDE2000 Color-Difference Formula: Implementation Notes, Supplementary Test Data, and Mathematical Observations"
+        Assertions.assertEquals(2.0425f, ColorMath.ciede2000(50f, 2.6772f, -79.7751f, 50f, 0f, -82.7485f), 1e-4f);
+        Assertions.assertEquals(2.8615f, ColorMath.ciede2000(50f, 3.1571f, -77.2803f, 50f, 0f, -82.7485f), 1e-4f);
+        Assertions.assertEquals(2.3669f, ColorMath.ciede2000(50f, 0f, 0f, 50f, -1f, 2f), 1e-4f);
+        Assertions.assertEquals(7.1792f, ColorMath.ciede2000(50f, 2.49f, -0.001f, 50f, -2.49f, 0.0009f), 1e-4f);
+        Assertions.assertEquals(4.3065f, ColorMath.ciede2000(50f, 2.5f, 0f, 50f, 0f, -2.5f), 1e-4f);
+        Assertions.assertEquals(27.1492f, ColorMath.ciede2000(50f, 2.5f, 0f, 73f, 25f, -18f), 1e-4f);
+        Assertions.assertEquals(1.2644f, ColorMath.ciede2000(60.2574f, -34.0099f, 36.2677f, 60.4626f, -34.1751f, 39.4387f), 1e-4f);
+        Assertions.assertEquals(1.8731f, ColorMath.ciede2000(61.2901f, 3.7196f, -5.3901f, 61.4292f, 2.248f, -4.962f), 1e-4f);
+    }
+
+}
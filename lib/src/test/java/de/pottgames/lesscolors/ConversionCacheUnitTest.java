@@ -0,0 +1,94 @@
+package de.pottgames.lesscolors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ConversionCacheUnitTest {
+
+    @Test
+    public void testMatchesDirectConversion() {
+        final ConversionCache cache = new ConversionCache(64);
+        final Random random = new Random(5L);
+        final float[] components = new float[3];
+        for (int i = 0; i < 500; i++) {
+            final int argb = random.nextInt(100) * 0x010305;
+            for (final ColorSpace colorSpace : ColorSpace.values()) {
+                final float[] expected = Color.fromARGBInt(argb).toColorSpace(colorSpace).getComponents();
+                Assertions.assertArrayEquals(expected, cache.getColor(argb, colorSpace).getComponents());
+                cache.getComponents(argb, colorSpace, components, 0);
+                Assertions.assertArrayEquals(expected, components);
+            }
+        }
+    }
+
+
+    @Test
+    public void testCounters() {
+        final ConversionCache cache = new ConversionCache(16);
+        final Color first = cache.getColor(0xFF336699, ColorSpace.LAB);
+        Assertions.assertSame(first, cache.getColor(0xFF336699, ColorSpace.LAB));
+        cache.getColor(0xFF336699, ColorSpace.OKLAB);
+
+        Assertions.assertEquals(1L, cache.getHitCount());
+        Assertions.assertEquals(2L, cache.getMissCount());
+        Assertions.assertEquals(1.0 / 3.0, cache.getHitRatio(), 1e-9);
+        Assertions.assertEquals(0L, cache.getEvictionCount());
+    }
+
+
+    @Test
+    public void testCapacityIsBounded() {
+        final ConversionCache cache = new ConversionCache(32);
+        Assertions.assertEquals(32, cache.getCapacity());
+        for (int argb = 0; argb < 1000; argb++) {
+            cache.getColor(argb, ColorSpace.RGB);
+        }
+        Assertions.assertEquals(1000L, cache.getMissCount());
+        Assertions.assertEquals(1000L - cache.getCapacity(), cache.getEvictionCount());
+
+        cache.clear();
+        cache.getColor(999, ColorSpace.RGB);
+        Assertions.assertEquals(1001L, cache.getMissCount());
+    }
+
+
+    @Test
+    public void testSharedAcrossThreads() throws InterruptedException {
+        final ConversionCache cache = new ConversionCache(256);
+        final List<Thread> threads = new ArrayList<>();
+        final List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final Image image = new Image(64, 64, ColorSpace.OKLAB);
+            image.setConversionCache(cache);
+            for (int i = 0; i < 64 * 64; i++) {
+                image.setArgb(0xFF000000 | i % 300 * 0x030507, i % 64, i / 64);
+            }
+            final Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 64 * 64; i++) {
+                        final int argb = image.getArgb(i % 64, i / 64);
+                        final float[] expected = Color.fromARGBInt(argb).toColorSpace(ColorSpace.OKLAB).getComponents();
+                        Assertions.assertArrayEquals(expected, image.getPixel(i % 64, i / 64).getComponents());
+                    }
+                } catch (final Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertTrue(failures.isEmpty(), failures.toString());
+        Assertions.assertEquals(4L * 64 * 64, cache.getHitCount() + cache.getMissCount());
+    }
+
+}
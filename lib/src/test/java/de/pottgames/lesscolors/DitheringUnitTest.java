@@ -0,0 +1,154 @@
+package de.pottgames.lesscolors;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class DitheringUnitTest {
+
+    @Test
+    public void testErrorDiffusionDoesNotDependOnParallelism() {
+        final Palette palette = DitheringUnitTest.createPalette(ColorSpace.OKLAB);
+        for (final DiffusionKernel kernel : DiffusionKernel.values()) {
+            final Image sequential = DitheringUnitTest.createGradient(ColorSpace.OKLAB);
+            final Image parallel = DitheringUnitTest.createGradient(ColorSpace.OKLAB);
+            final Image pooled = DitheringUnitTest.createGradient(ColorSpace.OKLAB);
+            new ImageModifier(sequential).ditherByErrorDiffusion(palette, kernel);
+            new ImageModifier(parallel).setParallelism(4).ditherByErrorDiffusion(palette, kernel);
+
+            // fewer threads than workers must not stall the wavefront
+            final ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                new ImageModifier(pooled).setParallelism(6).setExecutor(executor).ditherByErrorDiffusion(palette, kernel);
+            } finally {
+                executor.shutdown();
+            }
+
+            Assertions.assertArrayEquals(sequential.getPixels(), parallel.getPixels());
+            Assertions.assertArrayEquals(sequential.getPixels(), pooled.getPixels());
+            DitheringUnitTest.assertOnlyPaletteColors(sequential, palette);
+        }
+    }
+
+
+    @Test
+    public void testErrorDiffusionPreservesMeanColor() {
+        final Palette palette = new Palette(new int[] { 0xFF000000, 0xFFFFFFFF }, ColorSpace.RGB);
+        final Image image = new Image(64, 64, ColorSpace.RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setArgb(0xFF808080, x, y);
+            }
+        }
+
+        new ImageModifier(image).setParallelism(3).ditherByErrorDiffusion(palette, DiffusionKernel.FLOYD_STEINBERG);
+        int white = 0;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                white += image.getArgb(x, y) == 0xFFFFFFFF ? 1 : 0;
+            }
+        }
+        Assertions.assertEquals(0.5, white / 4096.0, 0.02);
+    }
+
+
+    @Test
+    public void testOrderedDitheringDoesNotDependOnParallelism() {
+        final Palette palette = DitheringUnitTest.createPalette(ColorSpace.LAB);
+        for (final ThresholdMap thresholdMap : ThresholdMap.values()) {
+            final Image sequential = DitheringUnitTest.createGradient(ColorSpace.LAB);
+            final Image parallel = DitheringUnitTest.createGradient(ColorSpace.LAB);
+            new ImageModifier(sequential).ditherOrdered(palette, thresholdMap);
+            new ImageModifier(parallel).setParallelism(4).ditherOrdered(palette, thresholdMap);
+            Assertions.assertArrayEquals(sequential.getPixels(), parallel.getPixels());
+            DitheringUnitTest.assertOnlyPaletteColors(sequential, palette);
+        }
+    }
+
+
+    @Test
+    public void testOrderedDitheringWithoutStrength() {
+        final Palette palette = DitheringUnitTest.createPalette(ColorSpace.OKLAB);
+        final Image dithered = DitheringUnitTest.createGradient(ColorSpace.OKLAB);
+        final Image reduced = DitheringUnitTest.createGradient(ColorSpace.OKLAB);
+        new ImageModifier(dithered).ditherOrdered(palette, ThresholdMap.BAYER_4X4, 0f);
+        new ImageModifier(reduced).reduceColors(palette);
+        Assertions.assertArrayEquals(reduced.getPixels(), dithered.getPixels());
+    }
+
+
+    @Test
+    public void testOrderedDitheringKeepsGraysNeutral() {
+        final int[] colors = { 0xFF000000, 0xFF555555, 0xFFAAAAAA, 0xFFFFFFFF, 0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0xFFFFFF00 };
+        for (final ColorSpace colorSpace : ColorSpace.values()) {
+            final Palette palette = new Palette(colors, colorSpace);
+            final Image image = new Image(256, 16, colorSpace);
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    image.setArgb(0xFF000000 | x * 0x010101, x, y);
+                }
+            }
+
+            new ImageModifier(image).ditherOrdered(palette, ThresholdMap.BAYER_8X8);
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    final int argb = image.getArgb(x, y);
+                    final int red = argb >>> 16 & 0xFF;
+                    Assertions.assertTrue(red == (argb >>> 8 & 0xFF) && red == (argb & 0xFF), colorSpace + ": " + Integer.toHexString(argb));
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testThresholdMapsRankEveryPixelOnce() {
+        for (final ThresholdMap thresholdMap : ThresholdMap.values()) {
+            final int size = thresholdMap.getSize();
+            final Set<Float> thresholds = new HashSet<>();
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    final float threshold = thresholdMap.getThreshold(x, y);
+                    Assertions.assertTrue(threshold > 0f && threshold < 1f);
+                    Assertions.assertEquals(threshold, thresholdMap.getThreshold(x + size, y - size));
+                    thresholds.add(threshold);
+                }
+            }
+            Assertions.assertEquals(size * size, thresholds.size());
+        }
+    }
+
+
+    private static Palette createPalette(ColorSpace colorSpace) {
+        return new Palette(new int[] { 0xFF000000, 0xFFFFFFFF, 0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0xFF808080, 0xFFFFFF00, 0xFF00FFFF }, colorSpace);
+    }
+
+
+    private static Image createGradient(ColorSpace colorSpace) {
+        final Image image = new Image(150, 41, colorSpace);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setArgb(0xFF000000 | x * 255 / 149 << 16 | y * 255 / 40 << 8 | (x + y) % 256, x, y);
+            }
+        }
+        return image;
+    }
+
+
+    private static void assertOnlyPaletteColors(Image image, Palette palette) {
+        final Set<Integer> colors = new HashSet<>();
+        for (final int argb : palette.toArgbArray()) {
+            colors.add(argb);
+        }
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                Assertions.assertTrue(colors.contains(image.getArgb(x, y)));
+            }
+        }
+    }
+
+}
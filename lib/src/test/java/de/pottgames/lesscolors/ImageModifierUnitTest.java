@@ -0,0 +1,54 @@
+package de.pottgames.lesscolors;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ImageModifierUnitTest {
+
+    @Test
+    public void testReductionDoesNotDependOnParallelism() {
+        final Random random = new Random(17L);
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (final ColorSpace colorSpace : ColorSpace.values()) {
+                final Palette palette = ImageModifierUnitTest.createPalette(random, colorSpace, 20);
+                // a height of 5 has fewer rows than bands
+                for (final int height : new int[] { 5, 41 }) {
+                    final Image source = TestImages.createImage(random, 37, height, colorSpace, 200);
+                    final Image sequential = source.copy();
+                    new ImageModifier(sequential).reduceColors(palette);
+
+                    for (final int parallelism : new int[] { 2, 3, 7, 16 }) {
+                        final Image parallel = source.copy();
+                        new ImageModifier(parallel).setParallelism(parallelism).reduceColors(palette);
+                        Assertions.assertArrayEquals(sequential.getPixels(), parallel.getPixels());
+
+                        final Image pooled = source.copy();
+                        new ImageModifier(pooled).setParallelism(parallelism).setExecutor(executor).reduceColors(palette);
+                        Assertions.assertArrayEquals(sequential.getPixels(), pooled.getPixels());
+
+                        final Image histogram = source.copy();
+                        new ImageModifier(histogram).setParallelism(parallelism).setExecutor(executor).reduceColorsByHistogram(palette);
+                        Assertions.assertArrayEquals(sequential.getPixels(), histogram.getPixels());
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+    private static Palette createPalette(Random random, ColorSpace colorSpace, int size) {
+        final int[] colors = new int[size];
+        for (int i = 0; i < size; i++) {
+            colors[i] = random.nextInt() | 0xFF000000;
+        }
+        return new Palette(colors, colorSpace);
+    }
+
+}
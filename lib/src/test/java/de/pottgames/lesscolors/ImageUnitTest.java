@@ -0,0 +1,121 @@
+package de.pottgames.lesscolors;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ImageUnitTest {
+    private static final int[] TYPES = { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+            BufferedImage.TYPE_BYTE_INDEXED, BufferedImage.TYPE_BYTE_BINARY, BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_USHORT_565_RGB };
+
+
+    @Test
+    public void testFromBufferedImageMatchesGetRGB() {
+        final Random random = new Random(3L);
+        for (final int type : ImageUnitTest.TYPES) {
+            final BufferedImage fullImage = new BufferedImage(13, 9, type);
+            for (int y = 0; y < fullImage.getHeight(); y++) {
+                for (int x = 0; x < fullImage.getWidth(); x++) {
+                    fullImage.setRGB(x, y, random.nextInt());
+                }
+            }
+
+            // sub images share the data buffer of their parent, which exercises the raster offsets
+            for (final BufferedImage source : new BufferedImage[] { fullImage, fullImage.getSubimage(3, 2, 7, 5) }) {
+                final Image image = Image.fromBufferedImage(source, ColorSpace.RGB);
+                for (int y = 0; y < source.getHeight(); y++) {
+                    for (int x = 0; x < source.getWidth(); x++) {
+                        Assertions.assertEquals(source.getRGB(x, y), image.getArgb(x, y), "type " + type);
+                    }
+                }
+
+                final BufferedImage copy = image.toBufferedImage();
+                for (int y = 0; y < source.getHeight(); y++) {
+                    for (int x = 0; x < source.getWidth(); x++) {
+                        Assertions.assertEquals(image.getArgb(x, y), copy.getRGB(x, y), "type " + type);
+                    }
+                }
+            }
+        }
+    }
+
+
+
+    @Test
+    public void testIndexedBufferedImageKeepsColors() throws IOException {
+        final int[] colorCounts = { 1, 2, 3, 4, 5, 16, 17, 256 };
+        final int[] expectedBits = { 1, 1, 2, 2, 4, 4, 8, 8 };
+        final Random random = new Random(5L);
+        for (int i = 0; i < colorCounts.length; i++) {
+            final int[] colors = new int[colorCounts[i]];
+            for (int c = 0; c < colors.length; c++) {
+                // a few translucent colors make sure alpha ends up in the color model
+                colors[c] = c % 7 == 3 ? (c << 24 | random.nextInt() & 0xFFFFFF) : 0xFF000000 | c << 16 | random.nextInt() & 0xFFFF;
+            }
+            final Image image = new Image(13, 9, ColorSpace.RGB);
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    image.setArgb(colors[(y * image.getWidth() + x) % colors.length], x, y);
+                }
+            }
+
+            final BufferedImage indexed = image.toIndexedBufferedImage();
+            Assertions.assertTrue(indexed.getColorModel() instanceof IndexColorModel);
+            Assertions.assertEquals(expectedBits[i], indexed.getColorModel().getPixelSize(), colorCounts[i] + " colors");
+
+            final ByteArrayOutputStream png = new ByteArrayOutputStream();
+            Assertions.assertTrue(ImageIO.write(indexed, "png", png));
+            final BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    Assertions.assertEquals(image.getArgb(x, y), indexed.getRGB(x, y), colorCounts[i] + " colors");
+                    Assertions.assertEquals(image.getArgb(x, y), decoded.getRGB(x, y), colorCounts[i] + " colors");
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testIndexedBufferedImageUsesPaletteOrder() {
+        final Palette palette = new Palette(new int[] { 0xFF000000, 0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0xFFFFFFFF }, ColorSpace.RGB);
+        final Image image = new Image(3, 1, ColorSpace.RGB);
+        image.setArgb(0xFFFFFFFF, 0, 0);
+        image.setArgb(0xFF0000FF, 1, 0);
+        image.setArgb(0xFFFFFFFF, 2, 0);
+
+        final BufferedImage indexed = image.toIndexedBufferedImage(palette);
+        Assertions.assertEquals(4, indexed.getColorModel().getPixelSize());
+        Assertions.assertEquals(4, indexed.getRaster().getSample(0, 0, 0));
+        Assertions.assertEquals(3, indexed.getRaster().getSample(1, 0, 0));
+        Assertions.assertEquals(0xFFFFFFFF, indexed.getRGB(2, 0));
+
+        image.setArgb(0xFF123456, 1, 0);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> image.toIndexedBufferedImage(palette));
+    }
+
+
+    @Test
+    public void testIndexedBufferedImageRejectsTooManyColors() {
+        final Image image = new Image(257, 1, ColorSpace.RGB);
+        for (int x = 0; x < image.getWidth(); x++) {
+            image.setArgb(0xFF000000 | x, x, 0);
+        }
+        Assertions.assertThrows(IllegalStateException.class, image::toIndexedBufferedImage);
+
+        final int[] colors = new int[257];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = 0xFF000000 | i;
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> image.toIndexedBufferedImage(new Palette(colors, ColorSpace.RGB)));
+    }
+
+}
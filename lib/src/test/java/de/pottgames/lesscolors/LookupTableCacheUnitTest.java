@@ -0,0 +1,29 @@
+package de.pottgames.lesscolors;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LookupTableCacheUnitTest {
+
+    @Test
+    public void testStoreAndLoad(@TempDir Path directory) throws IOException {
+        final LookupTableCache cache = new LookupTableCache(directory);
+        final Palette palette = new Palette(new int[] { 0xFF000000, 0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0xFFFFFFFF }, ColorSpace.LAB);
+        Assertions.assertNull(cache.load(palette, 5));
+
+        final PaletteLookupTable built = cache.getOrBuild(palette, 5);
+        final PaletteLookupTable loaded = cache.load(palette, 5);
+        Assertions.assertNotNull(loaded);
+        for (int argb = 0; argb < 0x01000000; argb += 0x010203) {
+            Assertions.assertEquals(built.findClosestIndex(argb), loaded.findClosestIndex(argb));
+        }
+
+        // a different color space must not hit the same file
+        Assertions.assertNull(cache.load(new Palette(palette.toArgbArray(), ColorSpace.OKLAB), 5));
+    }
+
+}
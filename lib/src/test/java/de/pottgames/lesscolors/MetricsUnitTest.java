@@ -0,0 +1,115 @@
+package de.pottgames.lesscolors;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MetricsUnitTest {
+
+    @Test
+    public void testRecordsStages() throws IOException {
+        final Image image = TestImages.createImage(new Random(11L), 40, 30, ColorSpace.RGB, 64);
+        final File file = File.createTempFile("metrics", ".png");
+        file.deleteOnExit();
+        final List<ProcessingStage> completed = new ArrayList<>();
+        final Metrics metrics = new Metrics().addListener((source, stage, nanos, pixels) -> {
+            Assertions.assertTrue(nanos >= 0L);
+            Assertions.assertEquals(1200L, pixels);
+            synchronized (completed) {
+                completed.add(stage);
+            }
+        });
+
+        Metrics.activate(metrics);
+        try {
+            image.saveToFile(file, "png");
+            final Image loaded = Image.fromFile(file, ColorSpace.RGB);
+            new ImageModifier(loaded).reduceColors(MetricsUnitTest.createPalette(ColorSpace.RGB));
+        } finally {
+            Metrics.activate(null);
+        }
+
+        for (final ProcessingStage stage : ProcessingStage.values()) {
+            Assertions.assertEquals(1L, metrics.getStageCount(stage), stage.name());
+            Assertions.assertEquals(1200L, metrics.getStagePixels(stage), stage.name());
+            Assertions.assertTrue(metrics.getPixelsPerSecond(stage) > 0.0, stage.name());
+        }
+        Assertions.assertEquals(4, completed.size());
+        Assertions.assertTrue(metrics.getDistanceEvaluations() >= 1200L);
+        Assertions.assertTrue(metrics.toJson().startsWith("{\"stages\":{\"decode\":{\"count\":1,"));
+
+        metrics.reset();
+        Assertions.assertEquals(0L, metrics.getStageCount(ProcessingStage.MATCH));
+        Assertions.assertEquals(0L, metrics.getDistanceEvaluations());
+        Files.delete(file.toPath());
+    }
+
+
+    @Test
+    public void testCountsDistanceEvaluations() {
+        final Image image = TestImages.createImage(new Random(11L), 20, 10, ColorSpace.RGB, 200);
+        for (final ColorSpace colorSpace : ColorSpace.values()) {
+            final Palette palette = MetricsUnitTest.createPalette(colorSpace);
+            final Metrics metrics = new Metrics();
+            Metrics.activate(metrics);
+            try {
+                for (int i = 0; i < 200; i++) {
+                    palette.findClosestIndex(image.getArgb(i % 20, i / 20));
+                }
+            } finally {
+                Metrics.activate(null);
+            }
+
+            // every search evaluates at least one and at most all palette colors
+            Assertions.assertTrue(metrics.getDistanceEvaluations() >= 200L, colorSpace.name());
+            Assertions.assertTrue(metrics.getDistanceEvaluations() <= 200L * palette.size(), colorSpace.name());
+        }
+    }
+
+
+    @Test
+    public void testCountsHistogramHits() {
+        final Image image = TestImages.createImage(new Random(11L), 50, 20, ColorSpace.RGB, 10);
+        final Metrics metrics = new Metrics();
+        Metrics.activate(metrics);
+        try {
+            new ImageModifier(image).reduceColorsByHistogram(MetricsUnitTest.createPalette(ColorSpace.OKLAB));
+        } finally {
+            Metrics.activate(null);
+        }
+
+        Assertions.assertEquals(990L, metrics.getCacheHits());
+        Assertions.assertEquals(10L, metrics.getCacheMisses());
+        Assertions.assertEquals(1L, metrics.getStageCount(ProcessingStage.MATCH));
+    }
+
+
+    @Test
+    public void testInactiveMetricsRecordNothing() {
+        final Metrics metrics = new Metrics();
+        Metrics.activate(metrics);
+        Metrics.activate(null);
+        Assertions.assertNull(Metrics.getActive());
+
+        new ImageModifier(TestImages.createImage(new Random(11L), 8, 8, ColorSpace.RGB, 16)).reduceColors(MetricsUnitTest.createPalette(ColorSpace.LAB));
+        Assertions.assertEquals(0L, metrics.getStageCount(ProcessingStage.MATCH));
+        Assertions.assertEquals(0L, metrics.getDistanceEvaluations());
+    }
+
+
+    private static Palette createPalette(ColorSpace colorSpace) {
+        final Random random = new Random(13L);
+        final int[] colors = new int[100];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = 0xFF000000 | random.nextInt();
+        }
+        return new Palette(colors, colorSpace);
+    }
+
+}
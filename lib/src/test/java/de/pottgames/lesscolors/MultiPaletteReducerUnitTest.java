@@ -0,0 +1,74 @@
+package de.pottgames.lesscolors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MultiPaletteReducerUnitTest {
+
+    @Test
+    public void testMatchesSingleReductions() {
+        final Random random = new Random(8L);
+        final Image source = TestImages.createImage(random, 40, 30, ColorSpace.OKLAB, 64);
+        final List<PaletteMatcher> matchers = new ArrayList<>();
+        for (final ColorSpace colorSpace : ColorSpace.values()) {
+            matchers.add(MultiPaletteReducerUnitTest.createPalette(random, colorSpace, 24));
+        }
+        matchers.add(new PaletteLookupTable(MultiPaletteReducerUnitTest.createPalette(random, ColorSpace.OKLAB, 12), 5));
+
+        final MultiPaletteReducer reducer = new MultiPaletteReducer(source).setParallelism(3);
+        final List<Image> results = reducer.reduceAll(matchers);
+        Assertions.assertEquals(matchers.size(), results.size());
+        for (int i = 0; i < matchers.size(); i++) {
+            final Image expected = source.copy();
+            new ImageModifier(expected).reduceColors(matchers.get(i));
+            Assertions.assertArrayEquals(expected.getPixels(), results.get(i).getPixels());
+            Assertions.assertArrayEquals(expected.getPixels(), reducer.reduce(matchers.get(i)).getPixels());
+        }
+        Assertions.assertArrayEquals(TestImages.createImage(new Random(8L), 40, 30, ColorSpace.OKLAB, 64).getPixels(), source.getPixels());
+    }
+
+
+    @Test
+    public void testConcurrentReductions() throws InterruptedException {
+        final Random random = new Random(9L);
+        final Image source = TestImages.createImage(random, 40, 30, ColorSpace.RGB, 64);
+        final MultiPaletteReducer reducer = new MultiPaletteReducer(source);
+        final Palette[] palettes = new Palette[6];
+        final Image[] results = new Image[palettes.length];
+        final Thread[] threads = new Thread[palettes.length];
+        for (int i = 0; i < palettes.length; i++) {
+            palettes[i] = MultiPaletteReducerUnitTest.createPalette(random, ColorSpace.RGB, 8 + i);
+            final int index = i;
+            threads[i] = new Thread(() -> results[index] = reducer.reduce(palettes[index]));
+            threads[i].start();
+        }
+        for (int i = 0; i < palettes.length; i++) {
+            threads[i].join();
+            final Image expected = source.copy();
+            new ImageModifier(expected).reduceColors(palettes[i]);
+            Assertions.assertArrayEquals(expected.getPixels(), results[i].getPixels());
+        }
+        Assertions.assertTrue(reducer.getDistinctColorCount() > 0);
+    }
+
+
+    @Test
+    public void testEmptyPalette() {
+        final MultiPaletteReducer reducer = new MultiPaletteReducer(new Image(2, 2, ColorSpace.RGB));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> reducer.reduce(new Palette(new int[0], ColorSpace.RGB)));
+    }
+
+
+    private static Palette createPalette(Random random, ColorSpace colorSpace, int size) {
+        final int[] colors = new int[size];
+        for (int i = 0; i < size; i++) {
+            colors[i] = random.nextInt() | 0xFF000000;
+        }
+        return new Palette(colors, colorSpace);
+    }
+
+}
@@ -0,0 +1,119 @@
+package de.pottgames.lesscolors;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PaletteGeneratorUnitTest {
+    private static final int WIDTH  = 96;
+    private static final int HEIGHT = 64;
+
+
+    @Test
+    public void testFewColorsAreKept() {
+        final Image image = new Image(4, 1, ColorSpace.OKLAB);
+        image.setArgb(0xFFFF0000, 0, 0);
+        image.setArgb(0xFF00FF00, 1, 0);
+        image.setArgb(0xFFFF0000, 2, 0);
+        image.setArgb(0x00123456, 3, 0);
+
+        final Palette palette = new PaletteGenerator(8, ColorSpace.OKLAB).addImage(image).generate();
+        final int[] colors = palette.toArgbArray();
+        Arrays.sort(colors);
+        Assertions.assertArrayEquals(new int[] { 0xFF00FF00, 0xFFFF0000 }, colors);
+    }
+
+
+    @Test
+    public void testColorCount() {
+        for (final QuantizationMethod method : QuantizationMethod.values()) {
+            for (final ColorSpace colorSpace : new ColorSpace[] { ColorSpace.RGB, ColorSpace.OKLAB }) {
+                final PaletteGenerator generator = new PaletteGenerator(16, colorSpace).setMethod(method);
+                generator.addImage(PaletteGeneratorUnitTest.createImage(new Random(3L)));
+                final Palette palette = generator.generate();
+                Assertions.assertTrue(palette.size() <= 16, method + " " + colorSpace + ": " + palette.size());
+                Assertions.assertTrue(palette.size() >= 8, method + " " + colorSpace + ": " + palette.size());
+                for (int i = 0; i < palette.size(); i++) {
+                    Assertions.assertEquals(0xFF, palette.getArgb(i) >>> 24);
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testParallelismDoesNotChangeResult() {
+        for (final QuantizationMethod method : QuantizationMethod.values()) {
+            final Image image = PaletteGeneratorUnitTest.createImage(new Random(5L));
+            final Palette sequential = new PaletteGenerator(12, ColorSpace.OKLAB).setMethod(method).addImage(image).generate();
+            final Palette parallel = new PaletteGenerator(12, ColorSpace.OKLAB).setMethod(method).setParallelism(3).addImage(image).generate();
+            Assertions.assertArrayEquals(sequential.toArgbArray(), parallel.toArgbArray());
+        }
+    }
+
+
+    @Test
+    public void testRefinementLowersError() {
+        final Image image = PaletteGeneratorUnitTest.createImage(new Random(7L));
+        for (final QuantizationMethod method : QuantizationMethod.values()) {
+            final PaletteGenerator initial = new PaletteGenerator(8, ColorSpace.RGB).setMethod(method).setRefinementIterations(0).addImage(image);
+            final PaletteGenerator refined = new PaletteGenerator(8, ColorSpace.RGB).setMethod(method).setRefinementIterations(20).addImage(image);
+            final double initialError = PaletteGeneratorUnitTest.error(image, initial.generate());
+            final double refinedError = PaletteGeneratorUnitTest.error(image, refined.generate());
+            Assertions.assertTrue(refinedError <= initialError, method + ": " + refinedError + " > " + initialError);
+        }
+    }
+
+
+    @Test
+    public void testToImage() {
+        final Palette palette = new Palette(new int[] { 0xFF102030, 0xFF405060, 0xFF708090 }, ColorSpace.RGB);
+        final Image image = palette.toImage();
+        Assertions.assertEquals(3, image.getWidth());
+        Assertions.assertEquals(1, image.getHeight());
+        Assertions.assertArrayEquals(palette.toArgbArray(), Palette.fromImage(image).toArgbArray());
+    }
+
+
+    private static double error(Image image, Palette palette) {
+        double error = 0.0;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                final int argb = image.getArgb(x, y);
+                final int closest = palette.getArgb(palette.findClosestIndex(argb));
+                for (int shift = 0; shift < 24; shift += 8) {
+                    final int difference = (argb >>> shift & 0xFF) - (closest >>> shift & 0xFF);
+                    error += difference * difference;
+                }
+            }
+        }
+        return error;
+    }
+
+
+    /**
+     * Creates an image of noisy clusters around a few base colors.
+     */
+    private static Image createImage(Random random) {
+        final int[] bases = new int[10];
+        for (int i = 0; i < bases.length; i++) {
+            bases[i] = random.nextInt(0x1000000);
+        }
+        final Image image = new Image(PaletteGeneratorUnitTest.WIDTH, PaletteGeneratorUnitTest.HEIGHT, ColorSpace.RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                final int base = bases[random.nextInt(bases.length)];
+                int argb = 0xFF000000;
+                for (int shift = 0; shift < 24; shift += 8) {
+                    final int channel = Math.max(0, Math.min(255, (base >>> shift & 0xFF) + random.nextInt(41) - 20));
+                    argb |= channel << shift;
+                }
+                image.setArgb(argb, x, y);
+            }
+        }
+        return image;
+    }
+
+}
@@ -0,0 +1,89 @@
+package de.pottgames.lesscolors;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PaletteLookupTableUnitTest {
+
+    @Test
+    public void testApproximateUsesCellCenter() {
+        final Random random = new Random(7L);
+        final int[] colors = new int[24];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextInt() | 0xFF000000;
+        }
+        final Palette palette = new Palette(colors, ColorSpace.OKLAB);
+        final PaletteLookupTable lookupTable = PaletteLookupTable.approximate(palette, 4);
+        Assertions.assertFalse(lookupTable.isExact());
+
+        for (int i = 0; i < 1000; i++) {
+            final int argb = random.nextInt();
+            final int center = 0xFF000000 | argb & 0x00F0F0F0 | 0x00080808;
+            Assertions.assertEquals(palette.findClosestIndex(center), lookupTable.findClosestIndex(argb));
+        }
+    }
+
+
+    @Test
+    public void testExactMatchesPalette() {
+        final Random random = new Random(11L);
+        final int[] colors = new int[16];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextInt() | 0xFF000000;
+        }
+        final Palette palette = new Palette(colors, ColorSpace.OKLAB);
+        final PaletteLookupTable lookupTable = PaletteLookupTable.exact(palette);
+        Assertions.assertTrue(lookupTable.isExact());
+
+        // the edges of the RGB cube and both sides of the cell boundaries of the coarser tables
+        final int[] channels = { 0, 1, 15, 16, 31, 32, 63, 64, 127, 128, 191, 192, 254, 255 };
+        for (final int red : channels) {
+            for (final int green : channels) {
+                for (final int blue : channels) {
+                    final int argb = 0xFF000000 | red << 16 | green << 8 | blue;
+                    Assertions.assertEquals(palette.findClosestIndex(argb), lookupTable.findClosestIndex(argb));
+                }
+            }
+        }
+        for (int i = 0; i < 10000; i++) {
+            final int argb = random.nextInt() | 0xFF000000;
+            Assertions.assertEquals(palette.findClosestIndex(argb), lookupTable.findClosestIndex(argb));
+        }
+    }
+
+
+    @Test
+    public void testParallelFillMatchesSerialFill() {
+        final Random random = new Random(13L);
+        final int[] colors = new int[300];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextInt() | 0xFF000000;
+        }
+        final Palette palette = new Palette(colors, ColorSpace.LAB);
+        final PaletteLookupTable serial = new PaletteLookupTable(palette, 5, 1, null);
+
+        for (final int parallelism : new int[] { 2, 3, 7 }) {
+            Assertions.assertEquals(serial.getEntries(), new PaletteLookupTable(palette, 5, parallelism, null).getEntries());
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Assertions.assertEquals(serial.getEntries(), new PaletteLookupTable(palette, 5, 5, executor).getEntries());
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new PaletteLookupTable(palette, 5, 0, null));
+    }
+
+
+    @Test
+    public void testInvalidResolution() {
+        final Palette palette = new Palette(new int[] { 0xFF000000 }, ColorSpace.RGB);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PaletteLookupTable.approximate(palette, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PaletteLookupTable.approximate(palette, 9));
+    }
+
+}
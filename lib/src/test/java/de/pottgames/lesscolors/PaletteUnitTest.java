@@ -0,0 +1,176 @@
+package de.pottgames.lesscolors;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PaletteUnitTest {
+
+    @Test
+    public void testMatchesLinearScan() {
+        final Random random = new Random(42L);
+        for (final ColorSpace colorSpace : ColorSpace.values()) {
+            final int[] colors = new int[40];
+            for (int i = 0; i < colors.length; i++) {
+                colors[i] = random.nextInt() | 0xFF000000;
+            }
+            final Palette palette = new Palette(colors, colorSpace);
+
+            final float[] components = new float[6];
+            for (int i = 0; i < 1000; i++) {
+                final int argb = random.nextInt();
+                ColorMath.argbToComponents(argb, colorSpace, components, 0);
+                int expected = -1;
+                float closestDistance = Float.MAX_VALUE;
+                for (int j = 0; j < palette.size(); j++) {
+                    palette.getComponents(j, components, 3);
+                    final float distance = colorSpace == ColorSpace.LAB
+                            ? ColorMath.ciede2000(components[0], components[1], components[2], components[3], components[4], components[5])
+                            : ColorMath.squaredDistance(components[0], components[1], components[2], components[3], components[4], components[5]);
+                    if (distance < closestDistance) {
+                        closestDistance = distance;
+                        expected = j;
+                    }
+                }
+                // component queries are ranked by the kernels alone
+                Assertions.assertEquals(expected, palette.findClosestIndex(components[0], components[1], components[2]), colorSpace.toString());
+            }
+        }
+    }
+
+
+    @Test
+    public void testSettlesTiesLikeFindClosestColor() {
+        // the queries lie halfway between palette colors or close to it, so the kernels often tie or rank differently than colormath
+        final int[] levels = { 0x00, 0x40, 0x80, 0xC0, 0xFF };
+        for (final ColorSpace colorSpace : ColorSpace.values()) {
+            final Image image = new Image(levels.length * levels.length, levels.length, colorSpace);
+            for (int r = 0; r < levels.length; r++) {
+                for (int g = 0; g < levels.length; g++) {
+                    for (int b = 0; b < levels.length; b++) {
+                        image.setArgb(0xFF000000 | levels[r] << 16 | levels[g] << 8 | levels[b], r * levels.length + g, b);
+                    }
+                }
+            }
+            final Palette palette = Palette.fromImage(image);
+            final float[] scratch = new float[3];
+            for (int r = 0; r < 0x100; r += 0x10) {
+                for (int g = 0; g < 0x100; g += 0x10) {
+                    for (int b = 0; b < 0x100; b += 0x10) {
+                        final int argb = 0xFF000000 | r << 16 | g << 8 | b;
+                        final Color expected = image.findClosestColor(Color.fromARGBInt(argb));
+                        final int actual = palette.getArgb(palette.findClosestIndex(argb, scratch));
+                        Assertions.assertEquals(expected.toArgbInt(), actual, colorSpace + ": " + Integer.toHexString(argb));
+                    }
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testSettlesNearTiesLikeFindClosestColor() {
+        // queries whose two palette colors are ranked in opposite order by the kernels and colormath, found by a random search, each listed as the color
+        // space, the query and both palette colors
+        final Object[][] nearTies = { { ColorSpace.LAB, 0xFFB6D8C6, 0xFFB3D4C7, 0xFFB4DCC6 }, { ColorSpace.OKLAB, 0xFFE39594, 0xFFEB9391, 0xFFEA9690 },
+                { ColorSpace.OKLAB, 0xFFE07B7F, 0xFFE57072, 0xFFED7775 }, { ColorSpace.OKLAB, 0xFFA7D376, 0xFFA2D678, 0xFFA6D37E },
+                { ColorSpace.XYZ, 0xFFE7CAEB, 0xFFE7C8EA, 0xFFE7CBE9 } };
+        for (final Object[] nearTie : nearTies) {
+            final ColorSpace colorSpace = (ColorSpace) nearTie[0];
+            final int argb = (Integer) nearTie[1];
+            for (int first = 2; first <= 3; first++) {
+                final Image image = new Image(2, 1, colorSpace);
+                image.setArgb((Integer) nearTie[first], 0, 0);
+                image.setArgb((Integer) nearTie[5 - first], 1, 0);
+                final Palette palette = Palette.fromImage(image);
+                final Color expected = image.findClosestColor(Color.fromARGBInt(argb));
+                Assertions.assertEquals(expected, palette.findClosestColor(Color.fromARGBInt(argb)), colorSpace.toString());
+                Assertions.assertEquals(expected.toArgbInt(), palette.getArgb(palette.findClosestIndex(argb)), colorSpace.toString());
+            }
+        }
+    }
+
+
+    @Test
+    public void testAgreesWithFindClosestColor() {
+        final Random random = new Random(42L);
+        for (final ColorSpace colorSpace : ColorSpace.values()) {
+            final Image image = new Image(7, 5, colorSpace);
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    // every color shows up twice, so the palette has to keep the first one to resolve ties like the linear scan
+                    final int argb = x < 4 ? random.nextInt() | 0xFF000000 : image.getArgb(x - 4, y);
+                    image.setPixel(Color.fromARGBInt(argb), x, y);
+                }
+            }
+
+            final Palette palette = Palette.fromImage(image);
+            for (int i = 0; i < 500; i++) {
+                final int argb = random.nextInt() | 0xFF000000;
+                final Color color = Color.fromARGBInt(argb).toColorSpace(colorSpace);
+                final Color expected = image.findClosestColor(color);
+                Assertions.assertEquals(expected, palette.findClosestColor(color), colorSpace.toString());
+                Assertions.assertEquals(expected.toArgbInt(), palette.getArgb(palette.findClosestIndex(argb)), colorSpace.toString());
+            }
+        }
+    }
+
+
+    @Test
+    public void testToleranceBoundsLabError() {
+        final Random random = new Random(11L);
+        final int[] colors = new int[500];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextInt() | 0xFF000000;
+        }
+        final Palette exact = new Palette(colors, ColorSpace.LAB);
+        final float tolerance = 1f;
+        final Palette approximate = exact.withTolerance(tolerance);
+        Assertions.assertEquals(tolerance, approximate.getTolerance());
+        Assertions.assertSame(exact, exact.withTolerance(0f));
+
+        final Metrics exactMetrics = new Metrics();
+        final Metrics approximateMetrics = new Metrics();
+        final float[] components = new float[9];
+        try {
+            for (int i = 0; i < 2000; i++) {
+                final int argb = random.nextInt();
+                Metrics.activate(exactMetrics);
+                final int expected = exact.findClosestIndex(argb);
+                Metrics.activate(approximateMetrics);
+                final int actual = approximate.findClosestIndex(argb);
+                Metrics.activate(null);
+
+                ColorMath.argbToComponents(argb, ColorSpace.LAB, components, 0);
+                exact.getComponents(expected, components, 3);
+                approximate.getComponents(actual, components, 6);
+                final float expectedDistance = ColorMath.ciede2000(components[0], components[1], components[2], components[3], components[4], components[5]);
+                final float actualDistance = ColorMath.ciede2000(components[0], components[1], components[2], components[6], components[7], components[8]);
+                Assertions.assertTrue(actualDistance <= expectedDistance + tolerance + 1e-4f, actualDistance + " > " + expectedDistance + " + " + tolerance);
+            }
+        } finally {
+            Metrics.activate(null);
+        }
+        Assertions.assertTrue(approximateMetrics.getDistanceEvaluations() < exactMetrics.getDistanceEvaluations());
+    }
+
+
+    @Test
+    public void testDuplicatesAreRemoved() {
+        final Palette palette = new Palette(new int[] { 0xFF000000, 0xFFFFFFFF, 0xFF000000, 0xFF00FF00, 0xFFFFFFFF }, ColorSpace.OKLAB);
+        Assertions.assertEquals(3, palette.size());
+        Assertions.assertEquals(0xFF000000, palette.getArgb(0));
+        Assertions.assertEquals(0xFFFFFFFF, palette.getArgb(1));
+        Assertions.assertEquals(0xFF00FF00, palette.getArgb(2));
+    }
+
+
+    @Test
+    public void testEmptyPalette() {
+        final Palette palette = new Palette(new int[0], ColorSpace.OKLAB);
+        Assertions.assertEquals(-1, palette.findClosestIndex(Color.fromARGBInt(0xFF00FF00)));
+        Assertions.assertNull(palette.findClosestColor(Color.fromARGBInt(0xFF00FF00)));
+    }
+
+}
@@ -0,0 +1,80 @@
+package de.pottgames.lesscolors;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class RawImageUnitTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final Image image = TestImages.createImage(new Random(4L), 37, 21, ColorSpace.LAB, 64);
+        final File file = File.createTempFile("image", "." + RawImage.FORMAT_NAME);
+        file.deleteOnExit();
+        image.saveToFile(file, RawImage.FORMAT_NAME);
+
+        Assertions.assertEquals(32L + 37 * 21 * 4, file.length());
+        final Image loaded = Image.fromFile(file, ColorSpace.OKLAB);
+        Assertions.assertEquals(ColorSpace.OKLAB, loaded.getColorSpace());
+        Assertions.assertEquals(image.getWidth(), loaded.getWidth());
+        Assertions.assertArrayEquals(image.getPixels(), loaded.getPixels());
+        try (RawImage rawImage = RawImage.open(file.toPath(), false)) {
+            Assertions.assertEquals(ColorSpace.LAB, rawImage.getColorSpace());
+            Assertions.assertFalse(rawImage.isWritable());
+            Assertions.assertEquals(image.getArgb(36, 20), rawImage.getArgb(36, 20));
+            Assertions.assertThrows(IllegalStateException.class, () -> rawImage.setArgb(0, 0, 0));
+        }
+        Files.delete(file.toPath());
+    }
+
+
+    @Test
+    public void testReduceInPlace() throws IOException {
+        final Random random = new Random(5L);
+        final Image image = TestImages.createImage(random, 50, 40, ColorSpace.OKLAB, 64);
+        final int[] colors = new int[12];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextInt() | 0xFF000000;
+        }
+        final Palette palette = new Palette(colors, ColorSpace.OKLAB);
+
+        final Path file = Files.createTempFile("image", "." + RawImage.FORMAT_NAME);
+        // small chunks, so that rows are spread over several mappings
+        try (RawImage rawImage = RawImage.create(file, image.getWidth(), image.getHeight(), ColorSpace.OKLAB, 50 * 4 * 7)) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    rawImage.setArgb(image.getArgb(x, y), x, y);
+                }
+            }
+            rawImage.setParallelism(3).reduceColors(palette);
+            rawImage.force();
+        }
+
+        new ImageModifier(image).reduceColors(palette);
+        try (RawImage rawImage = RawImage.open(file, false, 50 * 4 * 3)) {
+            Assertions.assertArrayEquals(image.getPixels(), rawImage.toImage().getPixels());
+        }
+        Files.delete(file);
+    }
+
+
+    @Test
+    public void testInvalidFiles() throws IOException {
+        final Path file = Files.createTempFile("image", "." + RawImage.FORMAT_NAME);
+        Files.write(file, new byte[] { 1, 2, 3 });
+        Assertions.assertThrows(IOException.class, () -> RawImage.open(file, false));
+
+        RawImage.write(TestImages.createImage(new Random(6L), 4, 4, ColorSpace.RGB, 64), file);
+        final byte[] truncated = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(truncated, truncated.length - 4));
+        Assertions.assertThrows(IOException.class, () -> RawImage.open(file, false));
+        Files.delete(file);
+    }
+
+}
@@ -0,0 +1,70 @@
+package de.pottgames.lesscolors;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class StreamingReducerUnitTest {
+
+    @Test
+    public void testMatchesInMemoryReduction() throws IOException {
+        final Random random = new Random(13L);
+        final BufferedImage source = new BufferedImage(123, 77, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                source.setRGB(x, y, random.nextInt());
+            }
+        }
+        final int[] paletteColors = new int[16];
+        for (int i = 0; i < paletteColors.length; i++) {
+            paletteColors[i] = random.nextInt() | 0xFF000000;
+        }
+        final Palette palette = new Palette(paletteColors, ColorSpace.OKLAB);
+
+        final Path directory = Files.createTempDirectory("lesscolors-streaming");
+        final File input = directory.resolve("input.png").toFile();
+        final File output = directory.resolve("output.png").toFile();
+        try {
+            ImageIO.write(source, "png", input);
+            // 77 rows don't divide evenly into strips of 10
+            new StreamingReducer(palette).setStripHeight(10).setParallelism(2).reduce(input, output);
+
+            final Image expected = Image.fromBufferedImage(source, ColorSpace.OKLAB);
+            new ImageModifier(expected).reduceColors(palette);
+            final BufferedImage actual = ImageIO.read(output);
+            Assertions.assertEquals(expected.getWidth(), actual.getWidth());
+            Assertions.assertEquals(expected.getHeight(), actual.getHeight());
+            for (int y = 0; y < actual.getHeight(); y++) {
+                for (int x = 0; x < actual.getWidth(); x++) {
+                    Assertions.assertEquals(expected.getArgb(x, y), actual.getRGB(x, y));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(input.toPath());
+            Files.deleteIfExists(output.toPath());
+            Files.deleteIfExists(directory);
+        }
+    }
+
+
+    @Test
+    public void testRejectsUnsupportedInput() throws IOException {
+        final Path file = Files.createTempFile("lesscolors-streaming", ".txt");
+        try {
+            Files.write(file, new byte[] { 1, 2, 3 });
+            final Palette palette = new Palette(new int[] { 0xFF000000 }, ColorSpace.RGB);
+            Assertions.assertThrows(IOException.class, () -> new StreamingReducer(palette).reduce(file.toFile(), file.resolveSibling("out.png").toFile()));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
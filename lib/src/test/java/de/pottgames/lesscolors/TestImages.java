@@ -0,0 +1,31 @@
+package de.pottgames.lesscolors;
+
+import java.util.Random;
+
+/**
+ * Creates the images the unit tests work on.
+ */
+final class TestImages {
+
+    private TestImages() {
+    }
+
+
+    /**
+     * Creates an image whose pixels are picked at random from a number of random ARGB colors, so colors repeat and alpha varies.
+     */
+    static Image createImage(Random random, int width, int height, ColorSpace colorSpace, int colorCount) {
+        final int[] colors = new int[colorCount];
+        for (int i = 0; i < colorCount; i++) {
+            colors[i] = random.nextInt();
+        }
+        final Image image = new Image(width, height, colorSpace);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setArgb(colors[random.nextInt(colorCount)], x, y);
+            }
+        }
+        return image;
+    }
+
+}
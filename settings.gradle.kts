@@ -4,4 +4,4 @@ plugins {
 }
 
 rootProject.name = "lesscolors"
-include("lib", "app")
+include("lib", "app", "benchmarks", "simd")
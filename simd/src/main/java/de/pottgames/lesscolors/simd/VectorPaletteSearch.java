@@ -0,0 +1,96 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors.simd;
+
+import java.util.Arrays;
+
+import de.pottgames.lesscolors.PaletteSearch;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A linear nearest color search that compares a color against as many palette colors at once as the vector registers of the CPU hold, e.g. 8 with AVX2 or
+ * 16 with AVX-512.
+ * <p>
+ * The palette is stored as three arrays, one per component, padded to a multiple of the vector length with infinitely distant colors. Each lane keeps track
+ * of the closest color it has seen, and the lanes are only combined at the end. The distances are computed with the same operations in the same order as
+ * the scalar search, so both always agree, including on ties, which go to the lowest index.
+ */
+public class VectorPaletteSearch implements PaletteSearch {
+    private static final VectorSpecies<Float>   FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS   = VectorSpecies.of(int.class, VectorPaletteSearch.FLOATS.vectorShape());
+
+    private final float[]   first;
+    private final float[]   second;
+    private final float[]   third;
+    private final IntVector laneIndices;
+
+
+    /**
+     * Creates a search over the specified palette colors.
+     *
+     * @param components The components of the palette colors, three per color.
+     * @param size The number of palette colors.
+     */
+    public VectorPaletteSearch(float[] components, int size) {
+        if (size < 1 || components.length < size * 3) {
+            throw new IllegalArgumentException("invalid palette size: " + size);
+        }
+
+        final int paddedSize = VectorPaletteSearch.FLOATS.loopBound(size + VectorPaletteSearch.FLOATS.length() - 1);
+        this.first = new float[paddedSize];
+        this.second = new float[paddedSize];
+        this.third = new float[paddedSize];
+        Arrays.fill(this.first, size, paddedSize, Float.POSITIVE_INFINITY);
+        Arrays.fill(this.second, size, paddedSize, Float.POSITIVE_INFINITY);
+        Arrays.fill(this.third, size, paddedSize, Float.POSITIVE_INFINITY);
+        for (int i = 0; i < size; i++) {
+            this.first[i] = components[i * 3];
+            this.second[i] = components[i * 3 + 1];
+            this.third[i] = components[i * 3 + 2];
+        }
+        this.laneIndices = IntVector.zero(VectorPaletteSearch.INTS).addIndex(1);
+    }
+
+
+    @Override
+    public int findClosestIndex(float c1, float c2, float c3) {
+        final VectorSpecies<Float> species = VectorPaletteSearch.FLOATS;
+        final FloatVector query1 = FloatVector.broadcast(species, c1);
+        final FloatVector query2 = FloatVector.broadcast(species, c2);
+        final FloatVector query3 = FloatVector.broadcast(species, c3);
+        FloatVector bestDistances = FloatVector.broadcast(species, Float.POSITIVE_INFINITY);
+        IntVector bestIndices = IntVector.zero(VectorPaletteSearch.INTS);
+        for (int i = 0; i < this.first.length; i += species.length()) {
+            final FloatVector delta1 = query1.sub(FloatVector.fromArray(species, this.first, i));
+            final FloatVector delta2 = query2.sub(FloatVector.fromArray(species, this.second, i));
+            final FloatVector delta3 = query3.sub(FloatVector.fromArray(species, this.third, i));
+            final FloatVector distances = delta1.mul(delta1).add(delta2.mul(delta2)).add(delta3.mul(delta3));
+
+            // strictly closer only, so that each lane keeps the lowest index among equal distances
+            final VectorMask<Float> closer = distances.lt(bestDistances);
+            bestDistances = bestDistances.blend(distances, closer);
+            bestIndices = bestIndices.blend(this.laneIndices.add(i), closer.cast(VectorPaletteSearch.INTS));
+        }
+
+        final float bestDistance = bestDistances.reduceLanes(VectorOperators.MIN);
+        final VectorMask<Integer> best = bestDistances.eq(bestDistance).cast(VectorPaletteSearch.INTS);
+        return bestIndices.reduceLanes(VectorOperators.MIN, best);
+    }
+
+}
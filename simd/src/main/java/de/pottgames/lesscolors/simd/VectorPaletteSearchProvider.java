@@ -0,0 +1,40 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2023 Matthias Finke
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.pottgames.lesscolors.simd;
+
+import de.pottgames.lesscolors.PaletteSearch;
+import de.pottgames.lesscolors.PaletteSearchProvider;
+import jdk.incubator.vector.FloatVector;
+
+/**
+ * Provides {@link VectorPaletteSearch}es to the palettes of the lesscolors library. The provider is registered as a service, so it is picked up as soon as
+ * this module is on the class path and the JVM runs with {@code --add-modules jdk.incubator.vector}.
+ */
+public class VectorPaletteSearchProvider implements PaletteSearchProvider {
+    /**
+     * The minimum number of lanes for which a vectorized search pays off.
+     */
+    private static final int MIN_LANES = 4;
+
+
+    @Override
+    public PaletteSearch create(float[] components, int size) {
+        if (FloatVector.SPECIES_PREFERRED.length() < VectorPaletteSearchProvider.MIN_LANES) {
+            return null;
+        }
+        return new VectorPaletteSearch(components, size);
+    }
+
+}
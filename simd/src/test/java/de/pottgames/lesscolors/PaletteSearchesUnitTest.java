@@ -0,0 +1,22 @@
+package de.pottgames.lesscolors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.pottgames.lesscolors.simd.VectorPaletteSearch;
+import de.pottgames.lesscolors.simd.VectorPaletteSearchProvider;
+
+public class PaletteSearchesUnitTest {
+
+    @Test
+    public void testProviderIsDiscovered() {
+        Assertions.assertTrue(PaletteSearches.getProvider() instanceof VectorPaletteSearchProvider);
+
+        final float[] components = new float[64 * 3];
+        for (int i = 0; i < components.length; i++) {
+            components[i] = i % 7 / 7f;
+        }
+        Assertions.assertTrue(PaletteSearches.create(components, 64) instanceof VectorPaletteSearch);
+    }
+
+}
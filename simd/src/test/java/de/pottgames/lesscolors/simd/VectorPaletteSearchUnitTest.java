@@ -0,0 +1,71 @@
+package de.pottgames.lesscolors.simd;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.pottgames.lesscolors.ColorMath;
+import de.pottgames.lesscolors.ColorSpace;
+import de.pottgames.lesscolors.Palette;
+
+public class VectorPaletteSearchUnitTest {
+
+    @Test
+    public void testMatchesLinearScan() {
+        final Random random = new Random(17L);
+        for (int size = 1; size <= 300; size += 7) {
+            final float[] components = new float[size * 3];
+            for (int i = 0; i < components.length; i++) {
+                // a coarse grid produces plenty of ties
+                components[i] = random.nextInt(8) / 8f;
+            }
+            final VectorPaletteSearch search = new VectorPaletteSearch(components, size);
+            for (int query = 0; query < 200; query++) {
+                final float c1 = random.nextInt(16) / 16f;
+                final float c2 = random.nextInt(16) / 16f;
+                final float c3 = random.nextInt(16) / 16f;
+                Assertions.assertEquals(VectorPaletteSearchUnitTest.linearScan(components, size, c1, c2, c3), search.findClosestIndex(c1, c2, c3));
+            }
+        }
+    }
+
+
+    @Test
+    public void testPaletteMatchesLinearScan() {
+        final Random random = new Random(23L);
+        final int[] colors = new int[64];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextInt() | 0xFF000000;
+        }
+        final Palette palette = new Palette(colors, ColorSpace.OKLAB);
+        final float[] components = new float[palette.size() * 3];
+        for (int i = 0; i < palette.size(); i++) {
+            palette.getComponents(i, components, i * 3);
+        }
+
+        final float[] query = new float[3];
+        for (int i = 0; i < 1000; i++) {
+            final int argb = random.nextInt();
+            ColorMath.argbToComponents(argb, ColorSpace.OKLAB, query, 0);
+            Assertions.assertEquals(VectorPaletteSearchUnitTest.linearScan(components, palette.size(), query[0], query[1], query[2]),
+                    palette.findClosestIndex(argb));
+        }
+        Assertions.assertNotNull(new VectorPaletteSearchProvider().create(components, palette.size()));
+    }
+
+
+    private static int linearScan(float[] components, int size, float c1, float c2, float c3) {
+        int closest = -1;
+        float closestDistance = Float.POSITIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            final float distance = ColorMath.squaredDistance(c1, c2, c3, components[i * 3], components[i * 3 + 1], components[i * 3 + 2]);
+            if (distance < closestDistance) {
+                closest = i;
+                closestDistance = distance;
+            }
+        }
+        return closest;
+    }
+
+}